@@ -1,18 +1,28 @@
 package base;
 
 import utilities.AndroidElementInspector;
+import utilities.CachingAndroidDriver;
+import utilities.CaptureProfile;
+import utilities.PageSourceCache;
+import utilities.PageSourcePrefetcher;
+import utilities.SnapshotArchive;
 import io.appium.java_client.android.AndroidDriver;
 import io.appium.java_client.android.options.UiAutomator2Options;
 import org.openqa.selenium.By;
 import org.openqa.selenium.NoSuchElementException;
 import org.openqa.selenium.WebElement;
+import org.openqa.selenium.support.ui.ExpectedCondition;
 import org.openqa.selenium.support.ui.ExpectedConditions;
 import org.openqa.selenium.support.ui.WebDriverWait;
 import org.testng.annotations.AfterMethod;
+import org.testng.annotations.AfterSuite;
 import org.testng.annotations.BeforeMethod;
 
+import java.io.IOException;
+import java.lang.reflect.Method;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.time.Duration;
 import java.util.List;
 
@@ -21,6 +31,10 @@ import java.util.List;
  *
  * Provides:
  * - AndroidDriver setup and teardown
+ * - Page source cache shared by tests and the Inspector on an unchanged screen
+ * - Inspector captures with a fast first pass, full dump only when needed (opt-in)
+ * - waitAndFind can prefetch the page source shortly before its timeout (opt-in)
+ * - Inspected page sources archived with -Dinspector.archive=<file>
  * - Element finding methods with automatic Inspector integration
  * - Helper methods for common operations
  */
@@ -31,8 +45,24 @@ public class BaseTest {
 
     private static final String APPIUM_SERVER_URL = "http://127.0.0.1:4723/wd/hub";
 
+    private static final Duration WAIT_TIMEOUT = Duration.ofSeconds(10);
+
+    // waitAndFind starts the inspector's page source dump at 80% of the timeout
+    private static final double PREFETCH_AT = 0.8;
+    private static final Duration PREFETCH_MAX_WAIT = Duration.ofSeconds(30);
+
+    // Set to CaptureProfile.fastFirst() for a cheap first pass. Its setSettings calls invalidate the
+    // page source cache, so a staged inspection never reuses the test's own dump
+    protected CaptureProfile captureProfile = CaptureProfile.FULL;
+
+    // Set to true to prefetch the inspector's page source before a waitAndFind times out
+    protected boolean prefetchOnTimeout = false;
+
+    // Archive of inspected page sources, enabled with -Dinspector.archive=<file>
+    private static SnapshotArchive archive;
+
     @BeforeMethod
-    public void setUp() throws MalformedURLException {
+    public void setUp(Method method) throws MalformedURLException {
         UiAutomator2Options options = new UiAutomator2Options()
                 .setPlatformName("Android")
                 .setAutomationName("UiAutomator2")
@@ -41,8 +71,10 @@ public class BaseTest {
                 .setNoReset(true)
                 .setNewCommandTimeout(Duration.ofSeconds(300));
 
-        driver = new AndroidDriver(new URL(APPIUM_SERVER_URL), options);
-        wait = new WebDriverWait(driver, Duration.ofSeconds(10));
+        driver = new CachingAndroidDriver(new URL(APPIUM_SERVER_URL), options);
+        wait = new WebDriverWait(driver, WAIT_TIMEOUT);
+        AndroidElementInspector.setCaptureProfile(captureProfile);
+        openArchive(getClass().getSimpleName() + "." + method.getName());
 
         System.out.println("\n[INFO] Driver started - ApiDemos app launched");
     }
@@ -50,11 +82,38 @@ public class BaseTest {
     @AfterMethod
     public void tearDown() {
         if (driver != null) {
+            PageSourceCache cache = ((CachingAndroidDriver) driver).getPageSourceCache();
+            System.out.println("[INFO] Page source cache: " + cache.getHits() + " hits, " + cache.getMisses() + " dumps");
+            AndroidElementInspector.forgetInspections(driver);
             driver.quit();
             System.out.println("[INFO] Driver closed\n");
         }
     }
 
+    @AfterSuite(alwaysRun = true)
+    public void closeArchive() throws IOException {
+        if (archive != null) {
+            AndroidElementInspector.setArchive(null);
+            System.out.println("[INFO] Snapshot archive: " + archive.entries().size() + " page sources");
+            archive.close();
+            archive = null;
+        }
+    }
+
+    private static synchronized void openArchive(String testName) {
+        String file = System.getProperty("inspector.archive");
+        if (file == null || file.isEmpty()) return;
+        try {
+            if (archive == null) {
+                archive = SnapshotArchive.open(Paths.get(file));
+                AndroidElementInspector.setArchive(archive);
+            }
+            archive.setCurrentTest(testName);
+        } catch (IOException e) {
+            System.out.println("[INFO] Snapshot archive disabled: " + e.getMessage());
+        }
+    }
+
     // ═══════════════════════════════════════════════════════════════════════════════
     // ELEMENT FINDING - NoSuchElementException triggers Inspector
     // ═══════════════════════════════════════════════════════════════════════════════
@@ -85,14 +144,32 @@ public class BaseTest {
 
     /**
      * Wait for element and find. If timeout, Inspector is triggered.
+     * With prefetchOnTimeout, the page source is prefetched in the background near
+     * the end of the wait, so the Inspector can start scoring as soon as the timeout
+     * hits; polling pauses while the dump runs (PageSourcePrefetcher.guard).
      */
     protected WebElement waitAndFind(By locator) {
+        PageSourcePrefetcher prefetch = null;
+        if (prefetchOnTimeout && AndroidElementInspector.isEnabled()) {
+            prefetch = PageSourcePrefetcher.schedule(driver,
+                Duration.ofMillis((long) (WAIT_TIMEOUT.toMillis() * PREFETCH_AT)));
+        }
         try {
-            return wait.until(ExpectedConditions.presenceOfElementLocated(locator));
+            ExpectedCondition<WebElement> present = ExpectedConditions.presenceOfElementLocated(locator);
+            return prefetch != null ? wait.until(prefetch.guard(present)) : wait.until(present);
         } catch (org.openqa.selenium.TimeoutException e) {
-            AndroidElementInspector.inspect(driver, locator.toString(),
-                new NoSuchElementException("Timeout waiting for: " + locator));
+            String pageSource = prefetch != null ? prefetch.await(PREFETCH_MAX_WAIT) : null;
+            if (pageSource != null) {
+                System.out.println("[INFO] Inspecting page source prefetched " + prefetch.getAgeMillis() + " ms ago");
+                AndroidElementInspector.inspect(driver, locator.toString(),
+                    new NoSuchElementException("Timeout waiting for: " + locator), pageSource);
+            } else {
+                AndroidElementInspector.inspect(driver, locator.toString(),
+                    new NoSuchElementException("Timeout waiting for: " + locator));
+            }
             throw e;
+        } finally {
+            if (prefetch != null) prefetch.close();
         }
     }
 
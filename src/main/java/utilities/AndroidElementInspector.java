@@ -3,37 +3,86 @@ package utilities;
 import io.appium.java_client.AppiumDriver;
 import io.appium.java_client.android.AndroidDriver;
 import org.openqa.selenium.NoSuchElementException;
-import org.w3c.dom.*;
+import org.w3c.dom.Document;
 
 import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import java.io.ByteArrayInputStream;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.IntUnaryOperator;
 
 /**
  * AndroidElementInspector - Runtime Element Inspector for Appium Android Tests
  *
  * When a NoSuchElementException occurs, this inspector automatically:
  * 1. Captures the current page source (XML hierarchy)
- * 2. Finds the closest matching element using a scoring algorithm
+ * 2. Finds the closest matching elements using a scoring algorithm
  * 3. Displays locator suggestions (accessibility id, id, uiautomator, xpath)
  * 4. Shows all element attributes in a formatted table
  * 5. Prints the parent XML block for context
+ * 6. Shows what changed on the screen since the previous inspection through the same driver
  *
  * Usage:
  *   - Inspector is enabled by default
  *   - Disable: AndroidElementInspector.setEnabled(false)
  *   - Enable:  AndroidElementInspector.setEnabled(true)
  *   - Check:   AndroidElementInspector.isEnabled()
+ *   - Engine:  AndroidElementInspector.setMode(InspectionMode.STREAMING)
+ *   - Capture: AndroidElementInspector.setCaptureProfile(CaptureProfile.fastFirst())
+ *   - Archive: AndroidElementInspector.setArchive(SnapshotArchive.open(path))
+ *   - Threads: AndroidElementInspector.setParallelScoring(false)
+ *   - Early:   AndroidElementInspector.setEarlyTermination(true)
+ *   - Scoring: AndroidElementInspector.setScoringStrategy(WeightedScoring.DEFAULT.without(...))
  */
 public class AndroidElementInspector {
 
+    /**
+     * Inspection engines
+     * SNAPSHOT  - parses the page source into a compact columnar HierarchySnapshot (default)
+     * LAZY      - like SNAPSHOT, but only the scoring attributes are decoded up front;
+     *             the others are read from the raw page source when needed
+     * DOM       - parses with the JAXP DOM parser, then converts to a HierarchySnapshot
+     * STREAMING - scores elements during a single StAX pass and keeps only a light skeleton
+     */
+    public enum InspectionMode {
+        SNAPSHOT,
+        LAZY,
+        DOM,
+        STREAMING
+    }
+
     // Enable/Disable inspector output (default: true)
     private static boolean enabled = true;
 
+    // Engine used to parse and score the page source (default: SNAPSHOT)
+    private static InspectionMode mode = InspectionMode.SNAPSHOT;
+
+    // How the page source is captured from the driver (default: one full dump)
+    private static CaptureProfile captureProfile = CaptureProfile.FULL;
+
+    // Keeps every page source captured from a driver for offline analysis (default: none)
+    private static volatile SnapshotArchive snapshotArchive;
+
+    // Best match plus runner-up candidates shown in the output
+    private static final int TOP_CANDIDATES = 5;
+
+    // Score large snapshots on the common fork/join pool (default: true)
+    private static volatile boolean parallelScoring = true;
+
+    // Stop scoring once the best match provably cannot be beaten (default: false)
+    private static volatile boolean earlyTermination;
+
+    // How elements are scored against the search term (default: WeightedScoring.DEFAULT)
+    private static volatile ScoringStrategy scoringStrategy = WeightedScoring.DEFAULT;
+
+    // Searches of one page source from which a trigram index (SnapshotIndex) pays for itself
+    private static final int INDEX_MIN_SEARCHES = 3;
+
+    // Last inspected snapshot and its scores per driver, diffed against that driver's next one;
+    // weak keys, so a quit driver's snapshot goes with it
+    private static final Map<AppiumDriver, ScoredSnapshot> LAST_INSPECTIONS =
+            Collections.synchronizedMap(new WeakHashMap<>());
+
     // ANSI Color Codes for terminal output
     private static final String RESET = "\u001B[0m";
     private static final String RED = "\u001B[31m";
@@ -58,185 +107,556 @@ public class AndroidElementInspector {
         if (driver == null || !(driver instanceof AndroidDriver)) return;
 
         try {
+            CaptureProfile profile = captureProfile;
+            if (profile.isStaged()) {
+                inspectStaged((AndroidDriver) driver, profile, locator);
+                return;
+            }
+
             String pageSource = driver.getPageSource();
             if (pageSource == null || pageSource.isEmpty()) return;
 
-            Document doc = parseXml(pageSource);
-            if (doc == null) return;
+            inspectSource(XmlInput.of(pageSource), locator, driver);
+            archivePageSource(locator, pageSource);
 
-            String searchTerm = extractSearchTerm(locator);
-            ElementMatch bestMatch = findBestMatch(doc.getDocumentElement(), searchTerm);
+        } catch (Exception e) {
+            System.err.println("[Inspector Error] " + e.getMessage());
+        }
+    }
 
-            printInspectorOutput(locator, bestMatch);
+    /**
+     * Inspects a page source that was captured from the driver beforehand (e.g. prefetched)
+     *
+     * @param driver     The AndroidDriver instance the page source came from
+     * @param locator    The locator string that failed
+     * @param exception  The NoSuchElementException that was thrown
+     * @param pageSource The page source XML
+     */
+    public static void inspect(AppiumDriver driver, String locator, NoSuchElementException exception,
+                               String pageSource) {
+        if (!enabled) return;
+        if (driver == null || !(driver instanceof AndroidDriver)) return;
+        if (pageSource == null || pageSource.isEmpty()) return;
 
+        try {
+            inspectSource(XmlInput.of(pageSource), locator, driver);
+            archivePageSource(locator, pageSource);
         } catch (Exception e) {
             System.err.println("[Inspector Error] " + e.getMessage());
         }
     }
 
-    // ═══════════════════════════════════════════════════════════════════════════════
-    // ELEMENT MATCH - Stores matched element data
-    // ═══════════════════════════════════════════════════════════════════════════════
+    /**
+     * Cheap dump with the profile's settings first; full dump only if no good candidate was found
+     */
+    private static void inspectStaged(AndroidDriver driver, CaptureProfile profile, String locator) throws Exception {
+        long start = System.nanoTime();
+        String pageSource;
+        try {
+            pageSource = captureWithSettings(driver, profile.getFirstPassSettings());
+        } catch (RuntimeException e) {
+            // e.g. a setting the server does not know: fall through to the full dump
+            System.err.println("[Inspector Error] " + e.getMessage());
+            pageSource = null;
+        }
+        long dumped = System.nanoTime();
+        Evaluation fast = pageSource != null && !pageSource.isEmpty()
+                ? evaluate(XmlInput.of(pageSource), locator, null) : null;
+        long evaluated = System.nanoTime();
+
+        boolean escalate = fast == null || fast.bestMatch == null
+                || fast.bestMatch.score < profile.escalationScore(scoringStrategy);
+        logPass(1, profile.getFirstPassSettings().toString(), dumped - start, evaluated - dumped, fast,
+                escalate ? "escalating to full dump" : "accepted");
+
+        Evaluation result = fast;
+        if (escalate) {
+            start = System.nanoTime();
+            pageSource = driver.getPageSource();
+            dumped = System.nanoTime();
+            if (pageSource == null || pageSource.isEmpty()) return;
+            result = evaluate(XmlInput.of(pageSource), locator, LAST_INSPECTIONS.get(driver));
+            evaluated = System.nanoTime();
+            logPass(2, "session settings", dumped - start, evaluated - dumped, result, "done");
+            if (result == null) return;
+            remember(driver, result);
+        }
 
-    private static class ElementMatch {
-        Element element;
-        int score;
-        String className;
-        String text;
-        String resourceId;
-        String contentDesc;
-        String enabled;
-        String index;
-        String packageName;
-        String bounds;
-        String displayed;
-
-        ElementMatch(Element e, int score) {
-            this.element = e;
-            this.score = score;
-            this.className = e.getTagName();
-            this.text = getAttr(e, "text");
-            this.resourceId = getAttr(e, "resource-id");
-            this.contentDesc = getAttr(e, "content-desc");
-            this.enabled = getAttr(e, "enabled");
-            this.index = getAttr(e, "index");
-            this.packageName = getAttr(e, "package");
-            this.bounds = getAttr(e, "bounds");
-            this.displayed = getAttr(e, "displayed");
-        }
-
-        private String getAttr(Element e, String name) {
-            String val = e.getAttribute(name);
-            return val != null ? val : "";
+        // An accepted first pass dumped a reduced tree, not the one findElement searches
+        printInspectorOutput(locator, result, !escalate);
+        archivePageSource(locator, pageSource);
+    }
+
+    /**
+     * Dumps the page source with the given Appium settings, then restores the session's values
+     */
+    private static String captureWithSettings(AndroidDriver driver, Map<String, Object> settings) {
+        Map<String, Object> current = driver.getSettings();
+        Map<String, Object> restore = new LinkedHashMap<>();
+        for (String name : settings.keySet()) {
+            if (current.get(name) != null) restore.put(name, current.get(name));
+        }
+
+        driver.setSettings(settings);
+        try {
+            return driver.getPageSource();
+        } finally {
+            if (!restore.isEmpty()) driver.setSettings(restore);
         }
     }
 
-    // ═══════════════════════════════════════════════════════════════════════════════
-    // FIND BEST MATCHING ELEMENT
-    // ═══════════════════════════════════════════════════════════════════════════════
+    private static void archivePageSource(String locator, String pageSource) {
+        SnapshotArchive archive = snapshotArchive;
+        if (archive == null) return;
+        try {
+            archive.append(locator, pageSource);
+        } catch (IOException e) {
+            System.err.println("[Inspector Error] Snapshot archive: " + e.getMessage());
+        }
+    }
+
+    private static void logPass(int pass, String settings, long dumpNanos, long inspectNanos,
+                                Evaluation evaluation, String outcome) {
+        String score = evaluation == null ? "parse failed"
+                : evaluation.bestMatch == null ? "no candidate"
+                : "best score " + evaluation.bestMatch.score;
+        System.out.println("[Inspector] Capture pass " + pass + " (" + settings + "): dump "
+                + dumpNanos / 1_000_000 + " ms, inspect " + inspectNanos / 1_000_000 + " ms, "
+                + score + " -> " + outcome);
+    }
+
+    /**
+     * Inspects a page source that was already captured (no driver round-trip).
+     * The characters are parsed in place, without copying them into a byte[].
+     *
+     * @param pageSource The page source XML, e.g. a String or StringBuilder
+     * @param locator    The locator string that failed
+     */
+    public static void inspectPageSource(CharSequence pageSource, String locator) {
+        if (pageSource == null || pageSource.length() == 0) return;
+        inspectSafely(XmlInput.of(pageSource), locator);
+    }
 
-    private static ElementMatch findBestMatch(Node node, String searchTerm) {
-        List<ElementMatch> matches = new ArrayList<>();
-        collectMatches(node, searchTerm, matches);
+    /**
+     * Inspects a page source read from a Reader (e.g. a file), without buffering it first
+     *
+     * @param pageSource Reader over the page source XML; the caller closes it
+     * @param locator    The locator string that failed
+     */
+    public static void inspectPageSource(Reader pageSource, String locator) {
+        if (pageSource == null) return;
+        inspectSafely(XmlInput.of(pageSource), locator);
+    }
 
-        if (matches.isEmpty()) return null;
+    /**
+     * Inspects a page source given as raw bytes (encoding from the XML declaration, UTF-8 by default)
+     *
+     * @param pageSource The page source XML bytes; parsed in place, never decoded into a String
+     * @param locator    The locator string that failed
+     */
+    public static void inspectPageSource(byte[] pageSource, String locator) {
+        if (pageSource == null || pageSource.length == 0) return;
+        inspectSafely(XmlInput.of(pageSource), locator);
+    }
 
-        // Sort by score descending and return the best match
-        matches.sort((a, b) -> b.score - a.score);
-        return matches.get(0);
+    /**
+     * Inspects one page source for several locators (e.g. offline analysis of an
+     * archived dump). The page source is parsed once; from INDEX_MIN_SEARCHES
+     * locators on, a trigram index is built so each one only scores its candidates.
+     *
+     * @param pageSource The page source XML, e.g. a String or StringBuilder
+     * @param locators   The locator strings to inspect, in order
+     */
+    public static void inspectPageSource(CharSequence pageSource, List<String> locators) {
+        if (pageSource == null || pageSource.length() == 0 || locators == null) return;
+        inspectAllSafely(XmlInput.of(pageSource), locators);
     }
 
-    private static void collectMatches(Node node, String searchTerm, List<ElementMatch> matches) {
-        if (node.getNodeType() == Node.ELEMENT_NODE) {
-            Element e = (Element) node;
-            int score = calculateScore(e, searchTerm);
-            if (score > 0) {
-                matches.add(new ElementMatch(e, score));
+    /**
+     * Inspects one page source, given as raw bytes, for several locators
+     *
+     * @param pageSource The page source XML bytes
+     * @param locators   The locator strings to inspect, in order
+     */
+    public static void inspectPageSource(byte[] pageSource, List<String> locators) {
+        if (pageSource == null || pageSource.length == 0 || locators == null) return;
+        inspectAllSafely(XmlInput.of(pageSource), locators);
+    }
+
+    private static void inspectAllSafely(XmlInput.Source source, List<String> locators) {
+        if (!enabled) return;
+        try {
+            if (mode == InspectionMode.STREAMING) {
+                // Nothing is kept between passes, so every locator streams the page source again
+                for (String locator : locators) {
+                    inspectSource(source, locator, null);
+                }
+                return;
             }
+
+            HierarchySnapshot snapshot = parseSnapshot(source);
+            if (snapshot == null) return;
+            if (locators.size() >= INDEX_MIN_SEARCHES) {
+                snapshot.searchIndex();
+            }
+            for (String locator : locators) {
+                // Offline: no previous screen of the same session to diff against
+                Evaluation result = evaluate(snapshot, locator, null);
+                printInspectorOutput(locator, result, false);
+            }
+        } catch (Exception e) {
+            System.err.println("[Inspector Error] " + e.getMessage());
+        }
+    }
+
+    private static void inspectSafely(XmlInput.Source source, String locator) {
+        if (!enabled) return;
+        try {
+            inspectSource(source, locator, null);
+        } catch (Exception e) {
+            System.err.println("[Inspector Error] " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param driver The driver the page source came from, or null offline (nothing to diff against)
+     */
+    private static void inspectSource(XmlInput.Source source, String locator, AppiumDriver driver) throws Exception {
+        Evaluation result = evaluate(source, locator, driver != null ? LAST_INSPECTIONS.get(driver) : null);
+        if (result == null) return;
+        if (driver != null) remember(driver, result);
+        printInspectorOutput(locator, result, false);
+    }
+
+    /**
+     * Parses and scores one page source
+     *
+     * @param previous The last inspection to diff against and reuse scores from, or null
+     * @return the result, or null when the page source could not be parsed
+     */
+    private static Evaluation evaluate(XmlInput.Source source, String locator, ScoredSnapshot previous)
+            throws Exception {
+        if (mode == InspectionMode.STREAMING) {
+            // No full snapshot is kept, so there is nothing to diff against
+            Locator parsed = Locator.parse(locator);
+            return new Evaluation(StreamingInspector.findTopMatches(source,
+                    scoringStrategy.forSearchTerm(parsed.searchTerm), parsed.predicates,
+                    TOP_CANDIDATES), List.of(), null, null);
         }
-        NodeList children = node.getChildNodes();
-        for (int i = 0; i < children.getLength(); i++) {
-            collectMatches(children.item(i), searchTerm, matches);
+
+        HierarchySnapshot snapshot = parseSnapshot(source);
+        return snapshot != null ? evaluate(snapshot, locator, previous) : null;
+    }
+
+    private static Evaluation evaluate(HierarchySnapshot snapshot, String locator, ScoredSnapshot previous) {
+        SnapshotDiff changes = previous != null ? SnapshotDiff.compare(previous.snapshot, snapshot) : null;
+        Locator parsed = Locator.parse(locator);
+        ScoredSnapshot scored = scoreNodes(snapshot, parsed.searchTerm, parsed.predicates, changes, previous);
+        if (scored.skipped > 0) {
+            System.out.println("[Inspector] Early termination: best match proven, " + scored.skipped + " of "
+                    + snapshot.size() + " elements skipped");
         }
+        return new Evaluation(findTopMatches(snapshot, scored.top), suggestResourceIds(snapshot, parsed),
+                changes, scored);
     }
 
-    private static int calculateScore(Element e, String searchTerm) {
-        if (searchTerm == null || searchTerm.isEmpty()) return 0;
+    private static void remember(AppiumDriver driver, Evaluation result) {
+        if (result.scored != null) {
+            LAST_INSPECTIONS.put(driver, result.scored);
+        }
+    }
 
-        String search = searchTerm.toLowerCase().trim();
-        String text = e.getAttribute("text");
-        String resourceId = e.getAttribute("resource-id");
-        String contentDesc = e.getAttribute("content-desc");
-        String className = e.getTagName();
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // ELEMENT MATCH - Stores matched element data
+    // ═══════════════════════════════════════════════════════════════════════════════
 
-        if (text == null) text = "";
-        if (resourceId == null) resourceId = "";
-        if (contentDesc == null) contentDesc = "";
-        if (className == null) className = "";
+    static class ElementMatch {
+        final HierarchySnapshot snapshot;
+        final int node;
+        final int score;
 
-        int score = 0;
+        ElementMatch(HierarchySnapshot snapshot, int node, int score) {
+            this.snapshot = snapshot;
+            this.node = node;
+            this.score = score;
+        }
 
-        // Exact match: highest priority (1000 points)
-        if (text.equalsIgnoreCase(searchTerm)) score += 1000;
-        if (contentDesc.equalsIgnoreCase(searchTerm)) score += 1000;
-        if (resourceId.equalsIgnoreCase(searchTerm)) score += 1000;
-        if (resourceId.toLowerCase().endsWith(":id/" + search)) score += 900;
-        if (resourceId.toLowerCase().endsWith("/" + search)) score += 800;
+        String className() {
+            return snapshot.tag(node);
+        }
 
-        // Contains match: medium priority (500 points)
-        if (text.toLowerCase().contains(search)) score += 500;
-        if (contentDesc.toLowerCase().contains(search)) score += 500;
-        if (resourceId.toLowerCase().contains(search)) score += 400;
-        if (className.toLowerCase().contains(search)) score += 300;
+        String text() {
+            return snapshot.text(node);
+        }
 
-        // Prefix similarity: lower priority
-        score += prefixMatch(text.toLowerCase(), search) * 5;
-        score += prefixMatch(contentDesc.toLowerCase(), search) * 5;
-        score += prefixMatch(resourceId.toLowerCase(), search) * 3;
+        String resourceId() {
+            return snapshot.resourceId(node);
+        }
+
+        String contentDesc() {
+            return snapshot.contentDesc(node);
+        }
 
-        return score;
+        String getAttr(String name) {
+            String val = snapshot.attribute(node, name);
+            return val != null ? val : "";
+        }
+    }
+
+    /**
+     * A snapshot with the score of every node for one search term
+     */
+    private static final class ScoredSnapshot {
+        final HierarchySnapshot snapshot;
+        final ScoringStrategy strategy;
+        final String searchTerm;
+        // Search term scores (without the locator's other predicates)
+        final int[] scores;
+        // The scores include Scorer.fallbackScore()
+        final boolean fuzzy;
+        final TopCandidates top;
+        // Nodes left unscored (score 0) by early termination
+        final int skipped;
+
+        ScoredSnapshot(HierarchySnapshot snapshot, ScoringStrategy strategy, String searchTerm, int[] scores,
+                       boolean fuzzy, TopCandidates top, int skipped) {
+            this.snapshot = snapshot;
+            this.strategy = strategy;
+            this.searchTerm = searchTerm;
+            this.scores = scores;
+            this.fuzzy = fuzzy;
+            this.top = top;
+            this.skipped = skipped;
+        }
     }
 
-    private static int prefixMatch(String s1, String s2) {
-        if (s1.isEmpty() || s2.isEmpty()) return 0;
-        int count = 0;
-        int len = Math.min(s1.length(), s2.length());
-        for (int i = 0; i < len; i++) {
-            if (s1.charAt(i) == s2.charAt(i)) count++;
-            else break;
+    /**
+     * Outcome of one evaluate() call
+     */
+    private static final class Evaluation {
+        final List<ElementMatch> candidates;
+        final ElementMatch bestMatch;
+        // Resource-ids close to the one the locator asked for (id locators only)
+        final List<ResourceIdTrie.Suggestion> suggestions;
+        final SnapshotDiff changes;
+        final ScoredSnapshot scored;
+
+        Evaluation(List<ElementMatch> candidates, List<ResourceIdTrie.Suggestion> suggestions,
+                   SnapshotDiff changes, ScoredSnapshot scored) {
+            this.candidates = candidates;
+            this.bestMatch = candidates.isEmpty() ? null : candidates.get(0);
+            this.suggestions = suggestions;
+            this.changes = changes;
+            this.scored = scored;
         }
-        return count;
     }
 
     // ═══════════════════════════════════════════════════════════════════════════════
-    // EXTRACT SEARCH TERM FROM LOCATOR
+    // FIND BEST MATCHING ELEMENT
     // ═══════════════════════════════════════════════════════════════════════════════
 
-    private static String extractSearchTerm(String locator) {
-        if (locator == null || locator.isEmpty()) return "";
+    /**
+     * The TOP_CANDIDATES best scoring nodes, best first; ElementMatch is created only for those
+     */
+    private static List<ElementMatch> findTopMatches(HierarchySnapshot snapshot, TopCandidates top) {
+        List<ElementMatch> matches = new ArrayList<>(top.size());
+        for (long candidate : top.bestFirst()) {
+            matches.add(new ElementMatch(snapshot, TopCandidates.node(candidate), TopCandidates.score(candidate)));
+        }
+        return matches;
+    }
 
-        // By.id: io.appium.android.apis:id/button_id -> button_id
-        if (locator.contains("By.id:")) {
-            String id = locator.replace("By.id:", "").trim();
-            if (id.contains(":id/")) {
-                return id.substring(id.lastIndexOf("/") + 1);
+    /**
+     * Scores every node; nodes in a subtree that is unchanged since the previous
+     * inspection of the same search term take their score from there. When the
+     * snapshot has a trigram index, only its candidates are scored; the other
+     * nodes cannot score above 0. Large snapshots are scored in parallel
+     * (NodeScoring) unless setParallelScoring(false).
+     *
+     * The locator's other predicates (LocatorPredicates) are added in a last
+     * pass over all nodes; they do not change whether the fuzzy tier is used.
+     */
+    private static ScoredSnapshot scoreNodes(HierarchySnapshot snapshot, String searchTerm,
+                                             LocatorPredicates predicates, SnapshotDiff changes,
+                                             ScoredSnapshot previous) {
+        ScoringStrategy strategy = scoringStrategy;
+        // Scores that include the fallback tier, or skipped nodes, are not comparable to the first pass below
+        boolean reuse = changes != null && previous.strategy == strategy
+                && previous.searchTerm.equals(searchTerm) && !previous.fuzzy && previous.skipped == 0;
+        ScoringStrategy.Scorer scorer = strategy.forSearchTerm(searchTerm);
+        int[] scores = new int[snapshot.size()];
+        // The index only knows which nodes the weighted components can score
+        int[] candidates = null;
+        if (snapshot.hasSearchIndex() && scorer instanceof WeightedScoring.TermScorer) {
+            WeightedScoring.TermScorer weighted = (WeightedScoring.TermScorer) scorer;
+            candidates = snapshot.searchIndex().candidates(weighted.term, weighted.scoresPrefix());
+        }
+        int count = candidates != null ? candidates.length : snapshot.size();
+        IntUnaryOperator scoreNode = scoreFunction(snapshot, scorer);
+        IntUnaryOperator termScore = node -> {
+            int previousNode = reuse ? changes.previousNode(node) : HierarchySnapshot.NONE;
+            return previousNode != HierarchySnapshot.NONE ? previous.scores[previousNode] : scoreNode.applyAsInt(node);
+        };
+
+        TopCandidates top;
+        int bestTermScore;
+        // Whether top already includes the predicates
+        boolean withPredicates = false;
+        if (earlyTermination && scorer instanceof WeightedScoring.TermScorer) {
+            // Predicates can score nodes that are not index candidates
+            EarlyScan scan = scanUntilProven(snapshot, (WeightedScoring.TermScorer) scorer, predicates,
+                    predicates.isEmpty() ? candidates : null, termScore, scores);
+            if (scan.skipped > 0) {
+                return new ScoredSnapshot(snapshot, strategy, searchTerm, scores, false, scan.top, scan.skipped);
             }
-            return id;
+            top = scan.top;
+            bestTermScore = scan.bestTermScore;
+            withPredicates = true;
+        } else {
+            top = NodeScoring.score(candidates, count, termScore, scores, TOP_CANDIDATES, parallelScoring);
+            bestTermScore = top.bestScore();
         }
 
-        // By.xpath: ... [@text='xxx'] -> xxx
-        Pattern textPattern = Pattern.compile("@text\\s*=\\s*['\"]([^'\"]+)['\"]");
-        Matcher textMatcher = textPattern.matcher(locator);
-        if (textMatcher.find()) {
-            return textMatcher.group(1);
+        // Nothing even contains the term: look for near misses (typos) everywhere
+        boolean fuzzy = scorer.usesFallback(bestTermScore);
+        if (fuzzy) {
+            IntUnaryOperator fallback = fallbackFunction(snapshot, scorer);
+            top = NodeScoring.score(null, snapshot.size(), node -> scores[node] + fallback.applyAsInt(node),
+                    scores, TOP_CANDIDATES, parallelScoring);
+            withPredicates = false;
+        }
+        if (!predicates.isEmpty() && !withPredicates) {
+            top = NodeScoring.score(null, snapshot.size(), node -> scores[node] + predicates.score(snapshot, node),
+                    new int[snapshot.size()], TOP_CANDIDATES, parallelScoring);
+        }
+        return new ScoredSnapshot(snapshot, strategy, searchTerm, scores, fuzzy, top, 0);
+    }
+
+    /**
+     * Result of scanUntilProven()
+     */
+    private static final class EarlyScan {
+        final TopCandidates top;
+        final int bestTermScore;
+        final int skipped;
+
+        EarlyScan(TopCandidates top, int bestTermScore, int skipped) {
+            this.top = top;
+            this.bestTermScore = bestTermScore;
+            this.skipped = skipped;
+        }
+    }
+
+    /**
+     * Scores nodes (or the index candidates) in document order, search term and
+     * predicates together, on the calling thread. Every block (BlockBounds) gets
+     * an upper bound of the scores in it; once the best score so far reaches the
+     * highest bound still ahead (an equal score loses to the earlier node) and
+     * the fuzzy tier is ruled out, the rest is skipped. The best match is then
+     * the same as after a full scan; the runner-ups come from the scanned part.
+     */
+    private static EarlyScan scanUntilProven(HierarchySnapshot snapshot, WeightedScoring.TermScorer scorer,
+                                             LocatorPredicates predicates, int[] candidates,
+                                             IntUnaryOperator termScore, int[] scores) {
+        BlockBounds bounds = snapshot.blockBounds();
+        int predicateBound = LocatorPredicates.POINTS * predicates.size();
+        // Highest bound of any block from this one to the end
+        int[] boundFrom = new int[bounds.blocks() + 1];
+        for (int block = bounds.blocks() - 1; block >= 0; block--) {
+            boundFrom[block] = Math.max(boundFrom[block + 1], scorer.upperBound(bounds, block) + predicateBound);
         }
 
-        // By.xpath: ... [@resource-id='xxx'] -> xxx
-        Pattern idPattern = Pattern.compile("@resource-id\\s*=\\s*['\"]([^'\"]+)['\"]");
-        Matcher idMatcher = idPattern.matcher(locator);
-        if (idMatcher.find()) {
-            String id = idMatcher.group(1);
-            if (id.contains(":id/")) {
-                return id.substring(id.lastIndexOf("/") + 1);
+        int count = candidates != null ? candidates.length : snapshot.size();
+        TopCandidates top = new TopCandidates(TOP_CANDIDATES);
+        int best = 0;
+        int bestTermScore = 0;
+        int nextBlockStart = 0;
+        for (int i = 0; i < count; i++) {
+            int node = candidates != null ? candidates[i] : i;
+            if (node >= nextBlockStart) {
+                int block = BlockBounds.blockOf(node);
+                if (best >= boundFrom[block] && !scorer.usesFallback(bestTermScore)) {
+                    return new EarlyScan(top, bestTermScore, count - i);
+                }
+                nextBlockStart = (block + 1) << BlockBounds.BLOCK_SHIFT;
+            }
+            int score = termScore.applyAsInt(node);
+            scores[node] = score;
+            bestTermScore = Math.max(bestTermScore, score);
+            if (!predicates.isEmpty()) score += predicates.score(snapshot, node);
+            if (score > 0) {
+                top.offer(node, score);
+                best = Math.max(best, score);
             }
-            return id;
         }
+        return new EarlyScan(top, bestTermScore, 0);
+    }
 
-        // By.xpath: ... [@content-desc='xxx'] -> xxx
-        Pattern descPattern = Pattern.compile("@content-desc\\s*=\\s*['\"]([^'\"]+)['\"]");
-        Matcher descMatcher = descPattern.matcher(locator);
-        if (descMatcher.find()) {
-            return descMatcher.group(1);
+    /**
+     * node -> Scorer.score(); the built-in scorer gets the snapshot's cached
+     * case-folded strings, which it scores exactly like the originals
+     */
+    static IntUnaryOperator scoreFunction(HierarchySnapshot snapshot, ScoringStrategy.Scorer scorer) {
+        if (scorer instanceof WeightedScoring.TermScorer) {
+            return node -> scorer.score(snapshot.foldedTag(node), snapshot.foldedText(node),
+                    snapshot.foldedResourceId(node), snapshot.foldedContentDesc(node));
         }
+        return node -> scorer.score(snapshot.tag(node), snapshot.text(node),
+                snapshot.resourceId(node), snapshot.contentDesc(node));
+    }
 
-        return locator;
+    /**
+     * node -> Scorer.fallbackScore(), with the same strings as scoreFunction()
+     */
+    static IntUnaryOperator fallbackFunction(HierarchySnapshot snapshot, ScoringStrategy.Scorer scorer) {
+        if (scorer instanceof WeightedScoring.TermScorer) {
+            return node -> scorer.fallbackScore(snapshot.foldedTag(node), snapshot.foldedText(node),
+                    snapshot.foldedResourceId(node), snapshot.foldedContentDesc(node));
+        }
+        return node -> scorer.fallbackScore(snapshot.tag(node), snapshot.text(node),
+                snapshot.resourceId(node), snapshot.contentDesc(node));
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // DID YOU MEAN - Resource-ids close to the one an id locator asked for
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final int MAX_SUGGESTIONS = 5;
+
+    /**
+     * Ids with the same name in another package first, then names within one
+     * edit per three characters (at least one), looked up in the snapshot's
+     * ResourceIdTrie; empty unless the locator asks for a resource-id.
+     * The id itself is left out: it is on screen, the element just did not match.
+     */
+    private static List<ResourceIdTrie.Suggestion> suggestResourceIds(HierarchySnapshot snapshot, Locator locator) {
+        String id = locator.resourceId;
+        if (id == null) return List.of();
+        String name = CaseFolding.fold(id.substring(id.lastIndexOf('/') + 1));
+        if (name.isEmpty()) return List.of();
+        List<ResourceIdTrie.Suggestion> suggestions = snapshot.resourceIdTrie()
+                .suggest(name, Math.max(1, name.length() / 3), MAX_SUGGESTIONS + 1);
+        suggestions.removeIf(suggestion -> CaseFolding.equalsIgnoreCase(suggestion.resourceId, id));
+        return suggestions.size() > MAX_SUGGESTIONS ? suggestions.subList(0, MAX_SUGGESTIONS) : suggestions;
     }
 
     // ═══════════════════════════════════════════════════════════════════════════════
     // PRINT INSPECTOR OUTPUT
     // ═══════════════════════════════════════════════════════════════════════════════
 
-    private static void printInspectorOutput(String locator, ElementMatch match) {
+    // Match count of a suggested selector that could not be counted
+    private static final int UNCOUNTED = -1;
+
+    /**
+     * @param firstPass the page source is a staged profile's reduced dump (CaptureProfile)
+     */
+    private static void printInspectorOutput(String locator, Evaluation result, boolean firstPass) {
+        List<ElementMatch> candidates = result.candidates;
+        SnapshotDiff changes = result.changes;
+        ElementMatch match = result.bestMatch;
+        // The whole screen, for local checks and match counts; STREAMING keeps only a skeleton,
+        // and a first pass may lack deep or unimportant views, so neither is searched
+        HierarchySnapshot screen = result.scored != null && !firstPass ? result.scored.snapshot : null;
         StringBuilder sb = new StringBuilder();
 
         // Header
@@ -248,9 +668,16 @@ public class AndroidElementInspector {
         // Exception and Target
         sb.append(YELLOW).append("⚠️  EXCEPTION: ").append(RESET).append(RED).append("NoSuchElementException").append(RESET).append("\n");
         sb.append(YELLOW).append("📍 TARGET LOCATOR: ").append(RESET).append(WHITE).append(locator).append(RESET).append("\n");
+        if (firstPass) {
+            sb.append(DIM).append("ℹ️  First-pass dump (reduced hierarchy): local checks and match counts skipped")
+                    .append(RESET).append("\n");
+        }
+        appendLocalCheck(sb, Locator.parse(locator), screen);
 
         if (match == null) {
             sb.append(RED).append("\n❌ NO SIMILAR ELEMENT FOUND ON PAGE!").append(RESET).append("\n\n");
+            appendSuggestions(sb, result.suggestions);
+            appendChanges(sb, changes);
             System.out.println(sb);
             return;
         }
@@ -263,20 +690,25 @@ public class AndroidElementInspector {
         sb.append(CYAN).append("│ ").append(BOLD).append("Find By                              Selector").append(RESET).append("                             ").append(CYAN).append("│").append(RESET).append("\n");
         sb.append(CYAN).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
 
-        if (!match.contentDesc.isEmpty()) {
-            appendTableRow(sb, CYAN, "accessibility id", match.contentDesc);
+        // Match counts need the whole screen; STREAMING matches live in a skeleton
+        boolean counted = screen != null && match.snapshot == screen;
+        if (!match.contentDesc().isEmpty()) {
+            appendTableRow(sb, CYAN, "accessibility id", match.contentDesc(),
+                    counted ? screen.sameContentDescCount(match.node) : UNCOUNTED);
         }
-        if (!match.resourceId.isEmpty()) {
-            appendTableRow(sb, CYAN, "id", match.resourceId);
-            appendTableRow(sb, CYAN, "-android uiautomator", "new UiSelector().resourceId(\"" + match.resourceId + "\")");
+        if (!match.resourceId().isEmpty()) {
+            int count = counted ? screen.sameResourceIdCount(match.node) : UNCOUNTED;
+            appendTableRow(sb, CYAN, "id", match.resourceId(), count);
+            appendTableRow(sb, CYAN, "-android uiautomator", "new UiSelector().resourceId(" + javaLiteral(match.resourceId()) + ")", count);
         }
-        if (!match.text.isEmpty()) {
-            appendTableRow(sb, CYAN, "-android uiautomator", "new UiSelector().text(\"" + match.text + "\")");
+        if (!match.text().isEmpty()) {
+            appendTableRow(sb, CYAN, "-android uiautomator", "new UiSelector().text(" + javaLiteral(match.text()) + ")",
+                    counted ? screen.sameTextCount(match.node) : UNCOUNTED);
         }
 
         // XPath
-        String xpath = buildXpath(match);
-        appendTableRow(sb, CYAN, "xpath", xpath);
+        String xpath = buildXpath(match, screen);
+        appendTableRow(sb, CYAN, "xpath", xpath, counted ? xpathCount(xpath, screen) : UNCOUNTED);
 
         sb.append(CYAN).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n");
 
@@ -286,46 +718,179 @@ public class AndroidElementInspector {
         sb.append(MAGENTA).append("│ ").append(BOLD).append("Attribute                            Value").append(RESET).append("                                ").append(MAGENTA).append("│").append(RESET).append("\n");
         sb.append(MAGENTA).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
 
-        appendAttrRow(sb, "index", match.index);
-        appendAttrRow(sb, "package", match.packageName);
-        appendAttrRow(sb, "class", match.className);
-        appendAttrRow(sb, "text", match.text);
-        appendAttrRow(sb, "content-desc", match.contentDesc);
-        appendAttrRow(sb, "resource-id", match.resourceId);
-        appendAttrRow(sb, "enabled", match.enabled);
-        appendAttrRow(sb, "bounds", match.bounds);
-        appendAttrRow(sb, "displayed", match.displayed);
+        appendAttrRow(sb, "index", match.getAttr("index"));
+        appendAttrRow(sb, "package", match.getAttr("package"));
+        appendAttrRow(sb, "class", match.className());
+        appendAttrRow(sb, "text", match.text());
+        appendAttrRow(sb, "content-desc", match.contentDesc());
+        appendAttrRow(sb, "resource-id", match.resourceId());
+        appendAttrRow(sb, "enabled", match.getAttr("enabled"));
+        appendAttrRow(sb, "bounds", match.getAttr("bounds"));
+        appendAttrRow(sb, "displayed", match.getAttr("displayed"));
 
         sb.append(MAGENTA).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n");
 
         // XML Block
-        Element xmlElement = findParentContainer(match.element);
-        if (xmlElement == null) {
-            xmlElement = match.element;
+        HierarchySnapshot snapshot = match.snapshot;
+        int xmlNode = findParentContainer(snapshot, match.node);
+        if (xmlNode == HierarchySnapshot.NONE) {
+            xmlNode = match.node;
         }
 
         sb.append("\n");
         sb.append(BLUE).append("┌──────────────────────────────────────────────────────────────────────────────────────────────────┐").append(RESET).append("\n");
-        sb.append(BLUE).append("│ ").append(BOLD).append("📦 XML Block (Parent: ").append(getShortClassName(xmlElement.getTagName())).append(")").append(RESET).append("\n");
+        sb.append(BLUE).append("│ ").append(BOLD).append("📦 XML Block (Parent: ").append(getShortClassName(snapshot.tag(xmlNode))).append(")").append(RESET).append("\n");
         sb.append(BLUE).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
 
-        String xmlOutput = buildXmlBlock(xmlElement, 0, 4);
-        for (String line : xmlOutput.split("\n")) {
-            if (!line.trim().isEmpty()) {
-                sb.append(BLUE).append("│ ").append(RESET).append(DIM).append(line).append(RESET).append("\n");
-            }
-        }
+        appendXmlBlock(sb, snapshot, xmlNode, 4);
 
         sb.append(BLUE).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n\n");
 
+        appendRunnerUps(sb, candidates);
+        appendSuggestions(sb, result.suggestions);
+        appendChanges(sb, changes);
         System.out.println(sb);
     }
 
-    private static void appendTableRow(StringBuilder sb, String color, String findBy, String selector) {
+    /**
+     * How many elements of the screen a failed XPath or UiAutomator locator
+     * selects, evaluated locally (CompiledXPath, CompiledUiSelector)
+     */
+    private static void appendLocalCheck(StringBuilder sb, Locator locator, HierarchySnapshot screen) {
+        if (screen == null) return;
+        int count;
+        String label;
+        if (locator.compiledXPath != null) {
+            count = locator.compiledXPath.select(screen).length;
+            label = "XPATH";
+        } else if (locator.compiledUiSelector != null) {
+            count = locator.compiledUiSelector.select(screen).length;
+            label = "UIAUTOMATOR";
+        } else {
+            return;
+        }
+        sb.append(YELLOW).append("🧪 LOCAL ").append(label).append(" CHECK: ").append(RESET);
+        if (count == 0) {
+            sb.append(WHITE).append("matches no element on this screen").append(RESET).append("\n");
+        } else {
+            // The element is there now: it appeared late, or the lookup ran against another window
+            sb.append(GREEN).append("matches ").append(count).append(count == 1 ? " element" : " elements")
+                    .append(" on this screen (timing?)").append(RESET).append("\n");
+        }
+    }
+
+    private static void appendRunnerUps(StringBuilder sb, List<ElementMatch> candidates) {
+        if (candidates.size() < 2) return;
+
+        sb.append(GREEN).append("┌──────────────────────────────────────────────────────────────────────────────────────────────────┐").append(RESET).append("\n");
+        sb.append(GREEN).append("│ ").append(BOLD).append("🥈 Other Candidates").append(RESET).append("\n");
+        sb.append(GREEN).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
+
+        for (int i = 1; i < candidates.size(); i++) {
+            ElementMatch candidate = candidates.get(i);
+            StringBuilder line = new StringBuilder("<").append(getShortClassName(candidate.className()));
+            appendXmlAttr(line, "text", candidate.text());
+            appendXmlAttr(line, "resource-id", candidate.resourceId());
+            appendXmlAttr(line, "content-desc", candidate.contentDesc());
+            line.append("/>");
+            sb.append(GREEN).append("│ ").append(RESET);
+            sb.append(String.format("%-36s", "#" + (i + 1) + " (score " + candidate.score + ")"));
+            sb.append(WHITE).append(line).append(RESET).append("\n");
+        }
+
+        sb.append(GREEN).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n\n");
+    }
+
+    private static void appendSuggestions(StringBuilder sb, List<ResourceIdTrie.Suggestion> suggestions) {
+        if (suggestions.isEmpty()) return;
+
+        sb.append(CYAN).append("┌──────────────────────────────────────────────────────────────────────────────────────────────────┐").append(RESET).append("\n");
+        sb.append(CYAN).append("│ ").append(BOLD).append("💡 Did You Mean (resource-id)").append(RESET).append("\n");
+        sb.append(CYAN).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
+
+        for (ResourceIdTrie.Suggestion suggestion : suggestions) {
+            String distance = suggestion.edits == 0 ? "same name"
+                    : suggestion.edits + (suggestion.edits == 1 ? " edit" : " edits");
+            sb.append(CYAN).append("│ ").append(RESET);
+            sb.append(String.format("%-36s", distance));
+            sb.append(WHITE).append(suggestion.resourceId).append(RESET).append("\n");
+        }
+
+        sb.append(CYAN).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n\n");
+    }
+
+    private static final int MAX_CHANGES_SHOWN = 5;
+
+    private static void appendChanges(StringBuilder sb, SnapshotDiff changes) {
+        if (changes == null) return;
+
+        sb.append(YELLOW).append("┌──────────────────────────────────────────────────────────────────────────────────────────────────┐").append(RESET).append("\n");
+        sb.append(YELLOW).append("│ ").append(BOLD).append("🔄 Changes Since Last Inspection").append(RESET).append("\n");
+        sb.append(YELLOW).append("├──────────────────────────────────────────────────────────────────────────────────────────────────┤").append(RESET).append("\n");
+
+        if (changes.isUnchanged()) {
+            appendChangeRow(sb, "screen", "unchanged (" + nodes(changes.current.size()) + ")");
+        } else {
+            appendChangeRow(sb, "unchanged", changes.unchangedNodes() + " of " + nodes(changes.current.size()));
+            appendChangeRow(sb, "added", nodes(changes.addedNodes()));
+            appendChangedNodes(sb, "+ ", changes.current, changes.addedRoots());
+            appendChangeRow(sb, "removed", nodes(changes.removedNodes()));
+            appendChangedNodes(sb, "- ", changes.previous, changes.removedRoots());
+        }
+
+        sb.append(YELLOW).append("└──────────────────────────────────────────────────────────────────────────────────────────────────┘").append(RESET).append("\n\n");
+    }
+
+    private static String nodes(int count) {
+        return count + (count == 1 ? " node" : " nodes");
+    }
+
+    private static void appendChangeRow(StringBuilder sb, String label, String value) {
+        sb.append(YELLOW).append("│ ").append(RESET);
+        sb.append(String.format("%-36s", label));
+        sb.append(WHITE).append(value).append(RESET).append("\n");
+    }
+
+    private static void appendChangedNodes(StringBuilder sb, String prefix, HierarchySnapshot snapshot, List<Integer> nodes) {
+        for (int i = 0; i < nodes.size() && i < MAX_CHANGES_SHOWN; i++) {
+            int node = nodes.get(i);
+            StringBuilder line = new StringBuilder("<").append(getShortClassName(snapshot.tag(node)));
+            appendXmlAttr(line, "text", snapshot.text(node));
+            appendXmlAttr(line, "resource-id", snapshot.resourceId(node));
+            appendXmlAttr(line, "content-desc", snapshot.contentDesc(node));
+            line.append(snapshot.firstChild(node) != HierarchySnapshot.NONE ? ">" : "/>");
+            sb.append(YELLOW).append("│ ").append(RESET).append("  ").append(DIM).append(prefix).append(line).append(RESET).append("\n");
+        }
+        if (nodes.size() > MAX_CHANGES_SHOWN) {
+            sb.append(YELLOW).append("│ ").append(RESET).append("  ").append(DIM).append("... ")
+              .append(nodes.size() - MAX_CHANGES_SHOWN).append(" more").append(RESET).append("\n");
+        }
+    }
+
+    /**
+     * Selector row, marked with how many elements of the screen it matches (UNCOUNTED: not known)
+     */
+    private static void appendTableRow(StringBuilder sb, String color, String findBy, String selector, int count) {
         String selectorShort = selector.length() > 55 ? selector.substring(0, 52) + "..." : selector;
         sb.append(color).append("│ ").append(RESET);
         sb.append(String.format("%-36s", findBy));
-        sb.append(GREEN).append(selectorShort).append(RESET).append("\n");
+        sb.append(GREEN).append(selectorShort).append(RESET);
+        if (count == 1) {
+            sb.append(DIM).append("  ✓ unique").append(RESET);
+        } else if (count > 1) {
+            sb.append(YELLOW).append("  ⚠ ").append(count).append(" matches").append(RESET);
+        } else if (count == 0) {
+            sb.append(RED).append("  ✗ no match").append(RESET);
+        }
+        sb.append("\n");
+    }
+
+    /**
+     * Elements the suggested xpath selects on the screen, UNCOUNTED when it cannot be evaluated locally
+     */
+    private static int xpathCount(String xpath, HierarchySnapshot screen) {
+        CompiledXPath compiled = Locator.parse("By.xpath: " + xpath).compiledXPath;
+        return compiled != null ? compiled.select(screen).length : UNCOUNTED;
     }
 
     private static void appendAttrRow(StringBuilder sb, String attr, String value) {
@@ -340,76 +905,145 @@ public class AndroidElementInspector {
         sb.append("\n");
     }
 
-    private static String buildXpath(ElementMatch match) {
-        String shortClass = getShortClassName(match.className);
-        if (!match.contentDesc.isEmpty()) {
-            return "//" + shortClass + "[@content-desc=\"" + match.contentDesc + "\"]";
-        } else if (!match.resourceId.isEmpty()) {
-            return "//*[@resource-id=\"" + match.resourceId + "\"]";
-        } else if (!match.text.isEmpty()) {
-            return "//" + shortClass + "[@text=\"" + match.text + "\"]";
+    /**
+     * XPath of the match; element names in the page source are full class names.
+     * Checked against the screen when there is one: if it selects other elements
+     * as well, the match's position among them is added, e.g. (//...)[2].
+     */
+    private static String buildXpath(ElementMatch match, HierarchySnapshot screen) {
+        String className = match.className();
+        String xpath;
+        if (!match.contentDesc().isEmpty()) {
+            xpath = "//" + className + "[@content-desc=" + xpathLiteral(match.contentDesc()) + "]";
+        } else if (!match.resourceId().isEmpty()) {
+            xpath = "//*[@resource-id=" + xpathLiteral(match.resourceId()) + "]";
+        } else if (!match.text().isEmpty()) {
+            xpath = "//" + className + "[@text=" + xpathLiteral(match.text()) + "]";
+        } else {
+            xpath = "//" + className;
         }
-        return "//" + shortClass;
+
+        CompiledXPath compiled = screen != null ? Locator.parse("By.xpath: " + xpath).compiledXPath : null;
+        if (compiled == null) return xpath;
+        int[] selected = compiled.select(screen);
+        if (selected.length <= 1) return xpath;
+        int position = Arrays.binarySearch(selected, match.node);
+        return position >= 0 ? "(" + xpath + ")[" + (position + 1) + "]" : xpath;
+    }
+
+    /**
+     * value as a Java string literal, as UiSelector arguments are written
+     */
+    private static String javaLiteral(String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    /**
+     * value as an XPath string literal; XPath 1.0 has no escapes, so a value with both quotes needs concat()
+     */
+    private static String xpathLiteral(String value) {
+        if (value.indexOf('"') < 0) return "\"" + value + "\"";
+        if (value.indexOf('\'') < 0) return "'" + value + "'";
+        return "concat(\"" + value.replace("\"", "\", '\"', \"") + "\")";
     }
 
     // ═══════════════════════════════════════════════════════════════════════════════
     // XML BLOCK BUILDER
     // ═══════════════════════════════════════════════════════════════════════════════
 
-    private static Element findParentContainer(Element e) {
-        Node parent = e.getParentNode();
-        while (parent != null && parent.getNodeType() == Node.ELEMENT_NODE) {
-            String tag = ((Element) parent).getTagName().toLowerCase();
-            if (tag.contains("layout") || tag.contains("viewgroup") || tag.contains("view") ||
-                tag.contains("scroll") || tag.contains("list") || tag.contains("recycler") ||
-                tag.contains("frame") || tag.contains("linear") || tag.contains("relative") ||
-                tag.contains("constraint")) {
-                return (Element) parent;
+    private static int findParentContainer(HierarchySnapshot snapshot, int node) {
+        int parent = snapshot.parent(node);
+        while (parent != HierarchySnapshot.NONE) {
+            if (isContainerTag(snapshot.tag(parent))) {
+                return parent;
             }
-            parent = parent.getParentNode();
+            parent = snapshot.parent(parent);
         }
-        return null;
+        return HierarchySnapshot.NONE;
     }
 
-    private static String buildXmlBlock(Element element, int indent, int maxDepth) {
-        if (maxDepth < 0) return spaces(indent) + "...\n";
-
-        StringBuilder sb = new StringBuilder();
-        String tag = getShortClassName(element.getTagName());
-        sb.append(spaces(indent)).append("<").append(tag);
+    static boolean isContainerTag(String tag) {
+        return CaseFolding.contains(tag, "layout") || CaseFolding.contains(tag, "viewgroup") ||
+               CaseFolding.contains(tag, "view") || CaseFolding.contains(tag, "scroll") ||
+               CaseFolding.contains(tag, "list") || CaseFolding.contains(tag, "recycler") ||
+               CaseFolding.contains(tag, "frame") || CaseFolding.contains(tag, "linear") ||
+               CaseFolding.contains(tag, "relative") || CaseFolding.contains(tag, "constraint");
+    }
 
-        appendXmlAttr(sb, element, "text");
-        appendXmlAttr(sb, element, "resource-id");
-        appendXmlAttr(sb, element, "content-desc");
+    /**
+     * Appends the subtree of root, maxDepth levels deep ("..." below that), one
+     * output line per tag. Walks the snapshot's parent / sibling links instead
+     * of recursing, so deep hierarchies cannot overflow the stack.
+     */
+    private static void appendXmlBlock(StringBuilder sb, HierarchySnapshot snapshot, int root, int maxDepth) {
+        StringBuilder line = new StringBuilder();
+        int node = root;
+        int depth = 0;
+        while (true) {
+            line.setLength(0);
+            indent(line, depth);
+            if (depth > maxDepth) {
+                appendXmlLine(sb, line.append("..."));
+            } else {
+                line.append("<").append(getShortClassName(snapshot.tag(node)));
+                appendXmlAttr(line, "text", snapshot.text(node));
+                appendXmlAttr(line, "resource-id", snapshot.resourceId(node));
+                appendXmlAttr(line, "content-desc", snapshot.contentDesc(node));
+
+                int child = snapshot.firstChild(node);
+                if (child != HierarchySnapshot.NONE) {
+                    appendXmlLine(sb, line.append(">"));
+                    node = child;
+                    depth++;
+                    continue;
+                }
+                appendXmlLine(sb, line.append("/>"));
+            }
 
-        List<Element> children = getChildElements(element);
+            // Close every ancestor whose children are all printed
+            while (node != root && snapshot.nextSibling(node) == HierarchySnapshot.NONE) {
+                node = snapshot.parent(node);
+                depth--;
+                line.setLength(0);
+                indent(line, depth);
+                appendXmlLine(sb, line.append("</").append(getShortClassName(snapshot.tag(node))).append(">"));
+            }
+            if (node == root) return;
+            node = snapshot.nextSibling(node);
+        }
+    }
 
-        if (children.isEmpty()) {
-            sb.append("/>\n");
-        } else {
-            sb.append(">\n");
-            for (Element child : children) {
-                sb.append(buildXmlBlock(child, indent + 2, maxDepth - 1));
+    /**
+     * Appends a line of the XML block; line breaks inside attribute values start a new line, blank ones are skipped
+     */
+    private static void appendXmlLine(StringBuilder sb, CharSequence line) {
+        int start = 0;
+        while (start <= line.length()) {
+            int end = start;
+            while (end < line.length() && line.charAt(end) != '\n') {
+                end++;
+            }
+            if (!isBlank(line, start, end)) {
+                sb.append(BLUE).append("│ ").append(RESET).append(DIM).append(line, start, end).append(RESET).append("\n");
             }
-            sb.append(spaces(indent)).append("</").append(tag).append(">\n");
+            start = end + 1;
         }
+    }
 
-        return sb.toString();
+    private static boolean isBlank(CharSequence s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) > ' ') return false;
+        }
+        return true;
     }
 
-    private static List<Element> getChildElements(Element parent) {
-        List<Element> children = new ArrayList<>();
-        NodeList nodes = parent.getChildNodes();
-        for (int i = 0; i < nodes.getLength(); i++) {
-            if (nodes.item(i).getNodeType() == Node.ELEMENT_NODE) {
-                children.add((Element) nodes.item(i));
-            }
+    private static void indent(StringBuilder sb, int depth) {
+        for (int i = 0; i < depth * 2; i++) {
+            sb.append(' ');
         }
-        return children;
     }
 
-    private static void appendXmlAttr(StringBuilder sb, Element e, String attrName) {
-        String value = e.getAttribute(attrName);
+    private static void appendXmlAttr(StringBuilder sb, String attrName, String value) {
         if (value != null && !value.isEmpty()) {
             String shortValue = value.length() > 35 ? value.substring(0, 32) + "..." : value;
             if (attrName.equals("resource-id") && shortValue.contains(":id/")) {
@@ -427,23 +1061,35 @@ public class AndroidElementInspector {
         return className;
     }
 
-    private static String spaces(int count) {
-        return " ".repeat(Math.max(0, count));
-    }
-
     // ═══════════════════════════════════════════════════════════════════════════════
     // XML PARSER
     // ═══════════════════════════════════════════════════════════════════════════════
 
-    private static Document parseXml(String xml) {
+    private static HierarchySnapshot parseSnapshot(XmlInput.Source source) {
+        if (mode == InspectionMode.DOM) {
+            Document doc = parseXml(source);
+            return doc != null ? HierarchySnapshot.fromDocument(doc) : null;
+        }
+        try {
+            // Lazy decoding needs random access to the characters; Reader / byte sources parse eagerly
+            if (mode == InspectionMode.LAZY && source.chars() != null) {
+                return PageSourceScanner.scan(source.chars());
+            }
+            return HierarchySnapshot.parse(source);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static Document parseXml(XmlInput.Source source) {
+        DocumentBuilder builder = null;
         try {
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
-            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            return builder.parse(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+            builder = DocumentBuilderPool.acquire();
+            return builder.parse(source.openSax());
         } catch (Exception e) {
             return null;
+        } finally {
+            DocumentBuilderPool.release(builder);
         }
     }
 
@@ -466,4 +1112,111 @@ public class AndroidElementInspector {
     public static boolean isEnabled() {
         return enabled;
     }
+
+    /**
+     * Drops the driver's last inspection, so the next one is not diffed against it
+     * (e.g. at the end of a test that keeps its driver)
+     */
+    public static void forgetInspections(AppiumDriver driver) {
+        if (driver != null) LAST_INSPECTIONS.remove(driver);
+    }
+
+    /**
+     * Number of XML parses that reused a pooled DocumentBuilder instead of creating one
+     * @return reuse hits since JVM start
+     */
+    public static long getParserReuseHits() {
+        return DocumentBuilderPool.reuseHits();
+    }
+
+    /**
+     * Select the engine used to parse and score the page source
+     * @param inspectionMode SNAPSHOT (default), LAZY, DOM or STREAMING
+     */
+    public static void setMode(InspectionMode inspectionMode) {
+        mode = inspectionMode != null ? inspectionMode : InspectionMode.SNAPSHOT;
+    }
+
+    /**
+     * Get the engine currently used to parse and score the page source
+     * @return the current inspection mode
+     */
+    public static InspectionMode getMode() {
+        return mode;
+    }
+
+    /**
+     * Select how the page source is captured from the driver
+     * @param profile CaptureProfile.FULL (default) or a staged profile such as CaptureProfile.fastFirst()
+     */
+    public static void setCaptureProfile(CaptureProfile profile) {
+        captureProfile = profile != null ? profile : CaptureProfile.FULL;
+    }
+
+    /**
+     * Keep every page source captured from a driver in an archive (null to stop)
+     * @param archive archive opened with SnapshotArchive.open(path); the caller closes it
+     */
+    public static void setArchive(SnapshotArchive archive) {
+        snapshotArchive = archive;
+    }
+
+    /**
+     * Get the current capture profile
+     * @return the capture profile
+     */
+    public static CaptureProfile getCaptureProfile() {
+        return captureProfile;
+    }
+
+    /**
+     * Enable or disable parallel scoring of large snapshots (NodeScoring.PARALLEL_MIN_NODES
+     * nodes and more, on the common fork/join pool); smaller ones are always scored sequentially
+     * @param parallel true (default) to allow parallel scoring
+     */
+    public static void setParallelScoring(boolean parallel) {
+        parallelScoring = parallel;
+    }
+
+    /**
+     * Check if large snapshots are scored in parallel
+     * @return true if parallel scoring is enabled
+     */
+    public static boolean isParallelScoring() {
+        return parallelScoring;
+    }
+
+    /**
+     * Enable or disable early termination: scoring stops as soon as no remaining element
+     * can beat the best match so far (SNAPSHOT, LAZY and DOM modes). The best match is the
+     * same as without it; the other candidates only come from the elements scored
+     * @param early true to stop early (default: false)
+     */
+    public static void setEarlyTermination(boolean early) {
+        earlyTermination = early;
+    }
+
+    /**
+     * Check if scoring stops once the best match is proven
+     * @return true if early termination is enabled
+     */
+    public static boolean isEarlyTermination() {
+        return earlyTermination;
+    }
+
+    /**
+     * Set how elements are scored against the failed locator's search term
+     * @param strategy e.g. WeightedScoring.DEFAULT with other weights (default: WeightedScoring.DEFAULT)
+     */
+    public static void setScoringStrategy(ScoringStrategy strategy) {
+        scoringStrategy = strategy != null ? strategy : WeightedScoring.DEFAULT;
+    }
+
+    /**
+     * Get the current scoring strategy
+     * @return the scoring strategy
+     */
+    public static ScoringStrategy getScoringStrategy() {
+        return scoringStrategy;
+    }
 }
@@ -0,0 +1,136 @@
+package utilities;
+
+/**
+ * BlockBounds - What the strings in each block of a snapshot can match
+ *
+ * Nodes are grouped into blocks of BLOCK_SIZE in document order. For every
+ * block and scoring attribute (class, text, resource-id, content-desc) it
+ * keeps the longest string length and three signatures, OR-ed over the
+ * block's strings: of all characters, of first characters (one bit per
+ * case-folded character, see bit()) and of string lengths (lengthBit()).
+ *
+ * A missing search term character proves that no node of the block contains
+ * the term in that attribute, and that no common prefix reaches past that
+ * character; a missing first character rules out any common prefix, a
+ * missing length an exact match.
+ * WeightedScoring turns this into an upper bound of every score in the block,
+ * so scoring can stop as soon as the best match so far beats every block
+ * still ahead (AndroidElementInspector.setEarlyTermination).
+ *
+ * Independent of the search term: built once per snapshot
+ * (HierarchySnapshot.blockBounds) from one signature per distinct string.
+ */
+final class BlockBounds {
+
+    static final int BLOCK_SHIFT = 4;
+    static final int BLOCK_SIZE = 1 << BLOCK_SHIFT;
+
+    /**
+     * One scoring attribute, per block
+     */
+    static final class Column {
+        private final long[] characters;
+        private final long[] firstCharacters;
+        private final long[] lengths;
+        private final int[] maxLength;
+
+        private Column(String[] strings, long[] signatures, int[] column, int size, int blocks) {
+            characters = new long[blocks];
+            firstCharacters = new long[blocks];
+            lengths = new long[blocks];
+            maxLength = new int[blocks];
+            for (int node = 0; node < size; node++) {
+                int block = node >>> BLOCK_SHIFT;
+                int id = column[node];
+                if (id == 0 || strings[id].isEmpty()) continue;
+                characters[block] |= signatures[id];
+                firstCharacters[block] |= bit(CaseFolding.fold(strings[id].charAt(0)));
+                lengths[block] |= lengthBit(strings[id].length());
+                maxLength[block] = Math.max(maxLength[block], strings[id].length());
+            }
+        }
+
+        long characters(int block) {
+            return characters[block];
+        }
+
+        long firstCharacters(int block) {
+            return firstCharacters[block];
+        }
+
+        long lengths(int block) {
+            return lengths[block];
+        }
+
+        int maxLength(int block) {
+            return maxLength[block];
+        }
+    }
+
+    private final int blocks;
+    private final Column classes;
+    private final Column texts;
+    private final Column resourceIds;
+    private final Column contentDescs;
+
+    BlockBounds(String[] strings, int size, int[] tag, int[] text, int[] resourceId, int[] contentDesc) {
+        long[] signatures = new long[strings.length];
+        for (int id = 1; id < strings.length; id++) {
+            signatures[id] = signature(strings[id]);
+        }
+        blocks = (size + BLOCK_SIZE - 1) >>> BLOCK_SHIFT;
+        classes = new Column(strings, signatures, tag, size, blocks);
+        texts = new Column(strings, signatures, text, size, blocks);
+        resourceIds = new Column(strings, signatures, resourceId, size, blocks);
+        contentDescs = new Column(strings, signatures, contentDesc, size, blocks);
+    }
+
+    static long signature(CharSequence value) {
+        long bits = 0L;
+        for (int i = 0; i < value.length(); i++) {
+            bits |= bit(CaseFolding.fold(value.charAt(i)));
+        }
+        return bits;
+    }
+
+    /**
+     * Letters and digits get a bit of their own; other characters share the rest
+     */
+    static long bit(char folded) {
+        if (folded >= 'a' && folded <= 'z') return 1L << (folded - 'a');
+        if (folded >= '0' && folded <= '9') return 1L << (26 + folded - '0');
+        if (folded < 128) return 1L << (36 + folded % 27);
+        return 1L << 63;
+    }
+
+    /**
+     * One bit per length up to 62; longer strings share bit 63
+     */
+    static long lengthBit(int length) {
+        return 1L << Math.min(length, 63);
+    }
+
+    static int blockOf(int node) {
+        return node >>> BLOCK_SHIFT;
+    }
+
+    int blocks() {
+        return blocks;
+    }
+
+    Column classes() {
+        return classes;
+    }
+
+    Column texts() {
+        return texts;
+    }
+
+    Column resourceIds() {
+        return resourceIds;
+    }
+
+    Column contentDescs() {
+        return contentDescs;
+    }
+}
@@ -0,0 +1,50 @@
+package utilities;
+
+import io.appium.java_client.android.AndroidDriver;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.remote.CommandPayload;
+import org.openqa.selenium.remote.Response;
+
+import java.net.URL;
+
+/**
+ * CachingAndroidDriver - AndroidDriver that shares page source dumps on an unchanged screen
+ *
+ * Every driver and element command passes through execute(): UI-mutating
+ * commands (click, sendKeys, back, gestures, app/activity commands, ...)
+ * invalidate the PageSourceCache, read-only ones (find, attributes, page
+ * source, screenshots) do not. getPageSource() is served from the cache while
+ * the activity is unchanged, so test assertions and the inspector share one
+ * UiAutomator2 hierarchy dump.
+ */
+public class CachingAndroidDriver extends AndroidDriver {
+
+    private final PageSourceCache pageSourceCache = new PageSourceCache();
+
+    public CachingAndroidDriver(URL remoteAddress, Capabilities capabilities) {
+        super(remoteAddress, capabilities);
+    }
+
+    @Override
+    public String getPageSource() {
+        return pageSourceCache.get(this::currentActivity, super::getPageSource);
+    }
+
+    @Override
+    protected Response execute(CommandPayload payload) {
+        // null while the super constructor starts the session
+        if (pageSourceCache == null) return super.execute(payload);
+
+        pageSourceCache.onCommand(payload.getName(), payload.getParameters());
+        try {
+            return super.execute(payload);
+        } finally {
+            // The screen changes when a mutating command completes, not when it is sent
+            pageSourceCache.onCommand(payload.getName(), payload.getParameters());
+        }
+    }
+
+    public PageSourceCache getPageSourceCache() {
+        return pageSourceCache;
+    }
+}
@@ -0,0 +1,109 @@
+package utilities;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CaptureProfile - How the inspector captures the page source
+ *
+ * FULL dumps the hierarchy once with the session's own settings. A staged
+ * profile first applies Appium settings that make UiAutomator2 dump less
+ * (shallower snapshot, unimportant and invisible views skipped) and only
+ * escalates to a full dump when that cheap pass found no candidate scoring at
+ * least the escalation score. The session's settings are restored right after
+ * the first pass.
+ *
+ * Unless set with withEscalationScore(), the escalation score comes from the
+ * inspector's ScoringStrategy (WeightedScoring: a text or content-desc
+ * "contains" match, 500 with the default weights). A custom strategy that does
+ * not override ScoringStrategy.escalationScore() always escalates, so give its
+ * profile an explicit score on that strategy's scale.
+ *
+ * Usage:
+ *   AndroidElementInspector.setCaptureProfile(CaptureProfile.fastFirst());
+ *   AndroidElementInspector.setCaptureProfile(CaptureProfile.fastFirst()
+ *           .withSetting("snapshotMaxDepth", 40)
+ *           .withEscalationScore(800));
+ */
+public final class CaptureProfile {
+
+    // UiAutomator2 setting names
+    public static final String SNAPSHOT_MAX_DEPTH = "snapshotMaxDepth";
+    public static final String IGNORE_UNIMPORTANT_VIEWS = "ignoreUnimportantViews";
+    public static final String ALLOW_INVISIBLE_ELEMENTS = "allowInvisibleElements";
+
+    // Escalation score taken from the scoring strategy
+    private static final int FROM_STRATEGY = -1;
+
+    /**
+     * Single full dump with the session's settings (default)
+     */
+    public static final CaptureProfile FULL = new CaptureProfile(Collections.emptyMap(), FROM_STRATEGY);
+
+    private final Map<String, Object> firstPassSettings;
+    private final int escalationScore;
+
+    private CaptureProfile(Map<String, Object> firstPassSettings, int escalationScore) {
+        this.firstPassSettings = Collections.unmodifiableMap(firstPassSettings);
+        this.escalationScore = escalationScore;
+    }
+
+    /**
+     * Fast first pass: snapshotMaxDepth 30, unimportant and invisible views skipped
+     */
+    public static CaptureProfile fastFirst() {
+        Map<String, Object> settings = new LinkedHashMap<>();
+        settings.put(SNAPSHOT_MAX_DEPTH, 30);
+        settings.put(IGNORE_UNIMPORTANT_VIEWS, true);
+        settings.put(ALLOW_INVISIBLE_ELEMENTS, false);
+        return new CaptureProfile(settings, FROM_STRATEGY);
+    }
+
+    /**
+     * Copy of this profile that also applies the given Appium setting in the first pass
+     */
+    public CaptureProfile withSetting(String name, Object value) {
+        Map<String, Object> settings = new LinkedHashMap<>(firstPassSettings);
+        settings.put(name, value);
+        return new CaptureProfile(settings, escalationScore);
+    }
+
+    /**
+     * Copy of this profile that escalates when the first pass scores below minScore
+     */
+    public CaptureProfile withEscalationScore(int minScore) {
+        if (minScore < 0) throw new IllegalArgumentException("Negative escalation score: " + minScore);
+        return new CaptureProfile(new LinkedHashMap<>(firstPassSettings), minScore);
+    }
+
+    /**
+     * Appium settings applied during the first pass (empty for FULL)
+     */
+    public Map<String, Object> getFirstPassSettings() {
+        return firstPassSettings;
+    }
+
+    /**
+     * A first-pass candidate scoring below this triggers the full dump
+     * @return the score set with withEscalationScore(), or -1 when it comes from the scoring strategy
+     */
+    public int getEscalationScore() {
+        return escalationScore;
+    }
+
+    int escalationScore(ScoringStrategy strategy) {
+        return escalationScore != FROM_STRATEGY ? escalationScore : strategy.escalationScore();
+    }
+
+    boolean isStaged() {
+        return !firstPassSettings.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if (!isStaged()) return "full";
+        return firstPassSettings + " then full, escalating below "
+                + (escalationScore != FROM_STRATEGY ? String.valueOf(escalationScore) : "the strategy's score");
+    }
+}
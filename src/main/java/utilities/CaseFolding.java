@@ -0,0 +1,106 @@
+package utilities;
+
+/**
+ * CaseFolding - Locale-independent, allocation-free case-insensitive matching
+ *
+ * String.toLowerCase() follows the default locale: on a Turkish JVM "I"
+ * becomes the dotless "ı", so "ACCESSIBILITY" no longer contains
+ * "accessibility". Here every character is folded on its own, the same way
+ * String.equalsIgnoreCase does it (toUpperCase, then toLowerCase), which does
+ * not depend on the locale:
+ * - ASCII (nearly every page source character) goes through a 128-entry table
+ * - anything else falls back to java.lang.Character
+ *
+ * The matching methods fold the text while comparing, so no lower-cased copy
+ * is made. The pattern must already be folded (see fold(String)).
+ */
+final class CaseFolding {
+
+    private static final char[] ASCII = new char[128];
+
+    static {
+        for (char c = 0; c < 128; c++) {
+            ASCII[c] = (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+        }
+    }
+
+    private CaseFolding() {
+    }
+
+    static char fold(char c) {
+        return c < 128 ? ASCII[c] : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Folded copy of value, or value itself when it is already folded
+     */
+    static String fold(String value) {
+        int i = 0;
+        while (i < value.length() && fold(value.charAt(i)) == value.charAt(i)) {
+            i++;
+        }
+        if (i == value.length()) return value;
+
+        char[] folded = value.toCharArray();
+        for (; i < folded.length; i++) {
+            folded[i] = fold(folded[i]);
+        }
+        return new String(folded);
+    }
+
+    static boolean equalsIgnoreCase(CharSequence a, CharSequence b) {
+        if (a.length() != b.length()) return false;
+        for (int i = 0; i < a.length(); i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y && fold(x) != fold(y)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Index of the folded pattern in text (compared folded), or -1
+     */
+    static int indexOf(CharSequence text, String folded, int from) {
+        int last = text.length() - folded.length();
+        if (folded.isEmpty()) return from <= text.length() ? Math.max(from, 0) : -1;
+        char first = folded.charAt(0);
+        for (int i = Math.max(from, 0); i <= last; i++) {
+            if (fold(text.charAt(i)) != first) continue;
+            if (regionMatches(text, i, folded)) return i;
+        }
+        return -1;
+    }
+
+    static boolean contains(CharSequence text, String folded) {
+        return indexOf(text, folded, 0) >= 0;
+    }
+
+    static boolean endsWith(CharSequence text, String folded) {
+        int start = text.length() - folded.length();
+        return start >= 0 && regionMatches(text, start, folded);
+    }
+
+    static boolean startsWith(CharSequence text, String folded) {
+        return text.length() >= folded.length() && regionMatches(text, 0, folded);
+    }
+
+    /**
+     * Number of leading characters text and the folded pattern have in common
+     */
+    static int commonPrefix(CharSequence text, String folded) {
+        int length = Math.min(text.length(), folded.length());
+        int i = 0;
+        while (i < length && fold(text.charAt(i)) == folded.charAt(i)) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset, String folded) {
+        for (int j = 0; j < folded.length(); j++) {
+            if (fold(text.charAt(offset + j)) != folded.charAt(j)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,238 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * CompiledUiSelector - A UiSelector chain compiled for evaluation against a HierarchySnapshot
+ *
+ * The syntax tree (UiSelectorExpression) is compiled once into a list of
+ * attribute conditions plus instance() and childSelector(); select() then
+ * runs it against any snapshot without a device round-trip. Semantics follow
+ * UiAutomator's QueryController:
+ * - text / description / resourceId / className / packageName and their
+ *   Contains / StartsWith / Matches forms compare the attribute ("" when
+ *   absent), case-sensitively; *Matches() must match the whole value
+ * - index(n) is the element's position among its siblings
+ * - instance(n) keeps only the n-th (0-based) element matching the rest
+ * - childSelector(s) looks for s below each element the selector matches;
+ *   an instance() inside s counts per parent
+ * - checked(true), clickable(false), ... compare the boolean attributes
+ * A UiScrollable is evaluated as the selector it targets
+ * (UiSelectorExpression.target()): the element it scrolls to.
+ * Any other method makes compile() throw IllegalArgumentException.
+ */
+final class CompiledUiSelector {
+
+    private static final int[] NO_NODES = new int[0];
+    // No instance(): every match counts (instance(-1) matches nothing, as on a device)
+    private static final int ANY_INSTANCE = Integer.MIN_VALUE;
+
+    /**
+     * One attribute condition of the selector
+     */
+    private interface Condition {
+        boolean test(HierarchySnapshot snapshot, int node);
+    }
+
+    private final String source;
+    private final Condition[] conditions;
+    private final int instance;
+    private final CompiledUiSelector child;
+
+    private CompiledUiSelector(String source, Condition[] conditions, int instance, CompiledUiSelector child) {
+        this.source = source;
+        this.conditions = conditions;
+        this.instance = instance;
+        this.child = child;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the chain calls a method this evaluator does not support
+     */
+    static CompiledUiSelector compile(UiSelectorExpression expression) {
+        UiSelectorExpression target = expression.target();
+        if (target.isScrollable()) throw unsupported("UiScrollable without a UiSelector", expression);
+        List<Condition> conditions = new ArrayList<>();
+        int instance = ANY_INSTANCE;
+        CompiledUiSelector child = null;
+        for (UiSelectorExpression.Call call : target.calls) {
+            switch (call.method) {
+                case "text": conditions.add(equals(TEXT, string(call, expression))); break;
+                case "textContains": conditions.add(contains(TEXT, string(call, expression))); break;
+                case "textStartsWith": conditions.add(startsWith(TEXT, string(call, expression))); break;
+                case "textMatches": conditions.add(matches(TEXT, string(call, expression))); break;
+                case "description": conditions.add(equals(CONTENT_DESC, string(call, expression))); break;
+                case "descriptionContains": conditions.add(contains(CONTENT_DESC, string(call, expression))); break;
+                case "descriptionStartsWith": conditions.add(startsWith(CONTENT_DESC, string(call, expression))); break;
+                case "descriptionMatches": conditions.add(matches(CONTENT_DESC, string(call, expression))); break;
+                case "resourceId": conditions.add(equals(RESOURCE_ID, string(call, expression))); break;
+                case "resourceIdMatches": conditions.add(matches(RESOURCE_ID, string(call, expression))); break;
+                case "className": conditions.add(equals(CLASS_NAME, string(call, expression))); break;
+                case "classNameMatches": conditions.add(matches(CLASS_NAME, string(call, expression))); break;
+                case "packageName": conditions.add(equals(PACKAGE_NAME, string(call, expression))); break;
+                case "packageNameMatches": conditions.add(matches(PACKAGE_NAME, string(call, expression))); break;
+                case "index": {
+                    String index = String.valueOf(integer(call, expression));
+                    conditions.add((snapshot, node) -> index.equals(snapshot.attribute(node, "index")));
+                    break;
+                }
+                case "instance":
+                    instance = integer(call, expression);
+                    break;
+                case "childSelector":
+                    if (call.arguments.size() != 1 || !(call.arguments.get(0) instanceof UiSelectorExpression)) {
+                        throw unsupported(call.toString(), expression);
+                    }
+                    CompiledUiSelector selector = compile((UiSelectorExpression) call.arguments.get(0));
+                    // childSelector() of a selector that already has one applies to the innermost
+                    child = child == null ? selector : child.withInnermostChild(selector);
+                    break;
+                default:
+                    String attribute = Locator.BOOLEAN_PROPERTIES.get(call.method);
+                    if (attribute == null) throw unsupported(call.toString(), expression);
+                    String value = String.valueOf(bool(call, expression));
+                    conditions.add((snapshot, node) -> value.equals(snapshot.attribute(node, attribute)));
+                    break;
+            }
+        }
+        return new CompiledUiSelector(target.toString(), conditions.toArray(new Condition[0]), instance, child);
+    }
+
+    private CompiledUiSelector withInnermostChild(CompiledUiSelector innermost) {
+        return new CompiledUiSelector(source, conditions, instance,
+                child == null ? innermost : child.withInnermostChild(innermost));
+    }
+
+    /**
+     * Elements the selector matches, in document order
+     */
+    int[] select(HierarchySnapshot snapshot) {
+        int size = snapshot.size();
+        if (size == 0) return NO_NODES;
+        // The <hierarchy> wrapper is not a view; UiAutomator never matches it
+        int first = snapshot.tag(0).equals("hierarchy") ? 1 : 0;
+        return select(snapshot, first, size);
+    }
+
+    /**
+     * Matches among the nodes from .. to - 1 (a subtree range or the whole document)
+     */
+    private int[] select(HierarchySnapshot snapshot, int from, int to) {
+        int[] matches = new int[16];
+        int count = 0;
+        int seen = 0;
+        for (int node = from; node < to; node++) {
+            if (!test(snapshot, node)) continue;
+            if (instance != ANY_INSTANCE && seen++ != instance) continue;
+            if (count == matches.length) matches = Arrays.copyOf(matches, count * 2);
+            matches[count++] = node;
+            if (instance != ANY_INSTANCE) break;
+        }
+        if (child == null) return Arrays.copyOf(matches, count);
+
+        // Children of every match; nested matches can find the same child twice
+        int[] found = NO_NODES;
+        int total = 0;
+        for (int i = 0; i < count; i++) {
+            int parent = matches[i];
+            int[] children = child.select(snapshot, parent + 1, parent + snapshot.subtreeSize(parent));
+            if (total + children.length > found.length) {
+                found = Arrays.copyOf(found, Math.max(total + children.length, found.length * 2));
+            }
+            System.arraycopy(children, 0, found, total, children.length);
+            total += children.length;
+        }
+        Arrays.sort(found, 0, total);
+        int unique = 0;
+        for (int i = 0; i < total; i++) {
+            if (unique == 0 || found[unique - 1] != found[i]) found[unique++] = found[i];
+        }
+        return Arrays.copyOf(found, unique);
+    }
+
+    private boolean test(HierarchySnapshot snapshot, int node) {
+        for (Condition condition : conditions) {
+            if (!condition.test(snapshot, node)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // CONDITIONS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * An attribute of a node as UiAutomator sees it, "" when absent
+     */
+    private interface Attribute {
+        String of(HierarchySnapshot snapshot, int node);
+    }
+
+    private static final Attribute TEXT = HierarchySnapshot::text;
+    private static final Attribute CONTENT_DESC = HierarchySnapshot::contentDesc;
+    private static final Attribute RESOURCE_ID = HierarchySnapshot::resourceId;
+    private static final Attribute CLASS_NAME = (snapshot, node) -> {
+        String value = snapshot.attribute(node, "class");
+        return value != null ? value : snapshot.tag(node);
+    };
+    private static final Attribute PACKAGE_NAME = (snapshot, node) -> {
+        String value = snapshot.attribute(node, "package");
+        return value != null ? value : "";
+    };
+
+    private static Condition equals(Attribute attribute, String value) {
+        return (snapshot, node) -> attribute.of(snapshot, node).equals(value);
+    }
+
+    private static Condition contains(Attribute attribute, String value) {
+        return (snapshot, node) -> attribute.of(snapshot, node).contains(value);
+    }
+
+    private static Condition startsWith(Attribute attribute, String value) {
+        return (snapshot, node) -> attribute.of(snapshot, node).startsWith(value);
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException (an IllegalArgumentException) for an invalid regex
+     */
+    private static Condition matches(Attribute attribute, String regex) {
+        Pattern pattern = Pattern.compile(regex);
+        return (snapshot, node) -> pattern.matcher(attribute.of(snapshot, node)).matches();
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // ARGUMENTS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static String string(UiSelectorExpression.Call call, UiSelectorExpression expression) {
+        String value = call.stringArgument();
+        if (value == null) throw unsupported(call.toString(), expression);
+        return value;
+    }
+
+    private static int integer(UiSelectorExpression.Call call, UiSelectorExpression expression) {
+        if (call.arguments.size() != 1 || !(call.arguments.get(0) instanceof Integer)) {
+            throw unsupported(call.toString(), expression);
+        }
+        return (Integer) call.arguments.get(0);
+    }
+
+    private static boolean bool(UiSelectorExpression.Call call, UiSelectorExpression expression) {
+        if (call.arguments.size() != 1 || !(call.arguments.get(0) instanceof Boolean)) {
+            throw unsupported(call.toString(), expression);
+        }
+        return (Boolean) call.arguments.get(0);
+    }
+
+    private static IllegalArgumentException unsupported(String what, UiSelectorExpression expression) {
+        return new IllegalArgumentException("Unsupported in local UiSelector evaluation (" + what + "): " + expression);
+    }
+}
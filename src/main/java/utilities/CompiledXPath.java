@@ -0,0 +1,764 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * CompiledXPath - An XPath 1.0 expression compiled for evaluation against a HierarchySnapshot
+ *
+ * The syntax tree (XPathExpression) is compiled once into a tree of
+ * evaluators; select() then runs it against any snapshot without another
+ * driver round-trip. Node-sets are sorted int arrays of snapshot nodes
+ * (document order); DOCUMENT stands for the document node above the root
+ * element. Attribute nodes are their owner elements plus the attribute name.
+ *
+ * Semantics follow XPath 1.0 (comparisons, conversions, positions on reverse
+ * axes, core functions), with the page source's shape in mind:
+ * - UiAutomator2 dumps have no text nodes, so text() selects nothing and the
+ *   string value of an element is ""
+ * - //name[predicate] with non-positional predicates runs as a single
+ *   descendant scan instead of one child step per node
+ * Not supported (compile() throws IllegalArgumentException): variables,
+ * namespace / processing-instruction / comment tests, steps after an
+ * attribute step, @* and functions outside the XPath 1.0 core library.
+ */
+final class CompiledXPath {
+
+    // Document node: the parent of the root element
+    static final int DOCUMENT = HierarchySnapshot.NONE;
+
+    private static final int[] NO_NODES = new int[0];
+
+    // XPath numbers: optional '-', digits and at most one '.'; no exponent, no '+'
+    private static final Pattern NUMBER = Pattern.compile("-?(\\d+(\\.\\d*)?|\\.\\d+)");
+
+    /**
+     * A compiled (sub)expression; the result is a NodeSet, String, Double or Boolean
+     */
+    private interface Evaluator {
+        Object evaluate(HierarchySnapshot snapshot, int node, int position, int size);
+    }
+
+    /**
+     * Node-set value: elements (attribute == null) or the named attribute of each node
+     */
+    private static final class NodeSet {
+        final int[] nodes;
+        final String attribute;
+
+        NodeSet(int[] nodes, String attribute) {
+            this.nodes = nodes;
+            this.attribute = attribute;
+        }
+
+        String stringValue(HierarchySnapshot snapshot, int i) {
+            if (attribute == null || nodes[i] == DOCUMENT) return "";
+            String value = snapshot.attribute(nodes[i], attribute);
+            return value != null ? value : "";
+        }
+    }
+
+    private final String source;
+    private final Evaluator root;
+
+    private CompiledXPath(String source, Evaluator root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the expression uses something this evaluator does not support
+     */
+    static CompiledXPath compile(XPathExpression expression) {
+        return new CompiledXPath(expression.source, new Compiler(expression.source).compile(expression.root));
+    }
+
+    /**
+     * Elements the expression selects, in document order (empty when it is not an element node-set)
+     */
+    int[] select(HierarchySnapshot snapshot) {
+        if (snapshot.size() == 0) return NO_NODES;
+        Object result = root.evaluate(snapshot, DOCUMENT, 1, 1);
+        if (!(result instanceof NodeSet) || ((NodeSet) result).attribute != null) return NO_NODES;
+        int[] nodes = ((NodeSet) result).nodes;
+        return nodes.length > 0 && nodes[0] == DOCUMENT ? Arrays.copyOfRange(nodes, 1, nodes.length) : nodes;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // COMPILER
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class Compiler {
+        private final String source;
+
+        Compiler(String source) {
+            this.source = source;
+        }
+
+        Evaluator compile(XPathExpression.Expr expr) {
+            if (expr instanceof XPathExpression.Literal) {
+                String value = ((XPathExpression.Literal) expr).value;
+                return (snapshot, node, position, size) -> value;
+            }
+            if (expr instanceof XPathExpression.NumberLiteral) {
+                Double value = ((XPathExpression.NumberLiteral) expr).value;
+                return (snapshot, node, position, size) -> value;
+            }
+            if (expr instanceof XPathExpression.Negation) {
+                Evaluator operand = compile(((XPathExpression.Negation) expr).operand);
+                return (snapshot, node, position, size) -> -toNumber(snapshot, operand.evaluate(snapshot, node, position, size));
+            }
+            if (expr instanceof XPathExpression.Binary) return binary((XPathExpression.Binary) expr);
+            if (expr instanceof XPathExpression.FunctionCall) return function((XPathExpression.FunctionCall) expr);
+            if (expr instanceof XPathExpression.Filter) {
+                XPathExpression.Filter filter = (XPathExpression.Filter) expr;
+                Evaluator primary = compile(filter.primary);
+                Evaluator[] predicates = compileAll(filter.predicates);
+                return (snapshot, node, position, size) -> {
+                    NodeSet set = nodeSet(primary.evaluate(snapshot, node, position, size));
+                    return new NodeSet(filter(snapshot, set.nodes, predicates), set.attribute);
+                };
+            }
+            return path((XPathExpression.Path) expr);
+        }
+
+        private Evaluator[] compileAll(List<XPathExpression.Expr> exprs) {
+            Evaluator[] compiled = new Evaluator[exprs.size()];
+            for (int i = 0; i < compiled.length; i++) {
+                compiled[i] = compile(exprs.get(i));
+            }
+            return compiled;
+        }
+
+        private IllegalArgumentException unsupported(String what) {
+            return new IllegalArgumentException("Unsupported in local XPath evaluation (" + what + "): " + source);
+        }
+
+        // ─── Operators ───
+
+        private Evaluator binary(XPathExpression.Binary binary) {
+            // @attr = 'value', the bulk of every Appium XPath: one attribute lookup, no node-set
+            if (binary.operator == XPathExpression.Operator.EQUALS || binary.operator == XPathExpression.Operator.NOT_EQUALS) {
+                boolean literalRight = binary.right instanceof XPathExpression.Literal;
+                String attribute = XPathExpression.attributeName(literalRight ? binary.left : binary.right);
+                XPathExpression.Expr other = literalRight ? binary.right : binary.left;
+                if (attribute != null && other instanceof XPathExpression.Literal) {
+                    String literal = ((XPathExpression.Literal) other).value;
+                    boolean equals = binary.operator == XPathExpression.Operator.EQUALS;
+                    return (s, n, p, z) -> {
+                        String value = n != DOCUMENT ? s.attribute(n, attribute) : null;
+                        return value != null && value.equals(literal) == equals;
+                    };
+                }
+            }
+            Evaluator left = compile(binary.left);
+            Evaluator right = compile(binary.right);
+            switch (binary.operator) {
+                case OR:
+                    return (s, n, p, z) -> toBoolean(left.evaluate(s, n, p, z)) || toBoolean(right.evaluate(s, n, p, z));
+                case AND:
+                    return (s, n, p, z) -> toBoolean(left.evaluate(s, n, p, z)) && toBoolean(right.evaluate(s, n, p, z));
+                case UNION:
+                    return (s, n, p, z) -> union(nodeSet(left.evaluate(s, n, p, z)), nodeSet(right.evaluate(s, n, p, z)));
+                case EQUALS:
+                case NOT_EQUALS:
+                case LESS:
+                case LESS_OR_EQUAL:
+                case GREATER:
+                case GREATER_OR_EQUAL:
+                    XPathExpression.Operator operator = binary.operator;
+                    return (s, n, p, z) -> compare(s, operator, left.evaluate(s, n, p, z), right.evaluate(s, n, p, z));
+                default:
+                    XPathExpression.Operator arithmetic = binary.operator;
+                    return (s, n, p, z) -> arithmetic(arithmetic,
+                            toNumber(s, left.evaluate(s, n, p, z)), toNumber(s, right.evaluate(s, n, p, z)));
+            }
+        }
+
+        // ─── Paths ───
+
+        private Evaluator path(XPathExpression.Path path) {
+            Evaluator start = path.start != null ? compile(path.start) : null;
+            List<XPathExpression.Step> steps = fuseDescendantSteps(path.steps);
+            StepPlan[] plans = new StepPlan[steps.size()];
+            for (int i = 0; i < plans.length; i++) {
+                XPathExpression.Step step = steps.get(i);
+                if (i > 0 && plans[i - 1].test.attribute != null) throw unsupported("step after an attribute");
+                plans[i] = new StepPlan(step.axis, nodeTest(step), compileAll(step.predicates));
+            }
+            boolean absolute = path.absolute;
+            return (snapshot, node, position, size) -> {
+                NodeSet set;
+                if (start != null) set = nodeSet(start.evaluate(snapshot, node, position, size));
+                else set = new NodeSet(new int[]{absolute ? DOCUMENT : node}, null);
+                for (StepPlan plan : plans) {
+                    set = plan.apply(snapshot, set.nodes);
+                }
+                return set;
+            };
+        }
+
+        /**
+         * descendant-or-self::node()/child::x[p] -> descendant::x[p] when no predicate depends on the position
+         */
+        private static List<XPathExpression.Step> fuseDescendantSteps(List<XPathExpression.Step> steps) {
+            List<XPathExpression.Step> fused = new ArrayList<>(steps.size());
+            for (int i = 0; i < steps.size(); i++) {
+                XPathExpression.Step step = steps.get(i);
+                if (i + 1 < steps.size() && step.axis == XPathExpression.Axis.DESCENDANT_OR_SELF
+                        && step.test == XPathExpression.NodeTest.NODE && step.predicates.isEmpty()) {
+                    XPathExpression.Step next = steps.get(i + 1);
+                    if (next.axis == XPathExpression.Axis.CHILD && next.predicates.stream().noneMatch(Compiler::positional)) {
+                        fused.add(new XPathExpression.Step(XPathExpression.Axis.DESCENDANT, next.test, next.name,
+                                next.predicates));
+                        i++;
+                        continue;
+                    }
+                }
+                fused.add(step);
+            }
+            return fused;
+        }
+
+        /**
+         * Whether a predicate may depend on the position of the node (a number, position() or last())
+         */
+        private static boolean positional(XPathExpression.Expr expr) {
+            if (expr instanceof XPathExpression.NumberLiteral || expr instanceof XPathExpression.Negation) return true;
+            if (expr instanceof XPathExpression.Binary) {
+                XPathExpression.Binary binary = (XPathExpression.Binary) expr;
+                switch (binary.operator) {
+                    case PLUS: case MINUS: case MULTIPLY: case DIV: case MOD: return true;
+                    default: return positional(binary.left) || positional(binary.right);
+                }
+            }
+            if (expr instanceof XPathExpression.FunctionCall) {
+                XPathExpression.FunctionCall call = (XPathExpression.FunctionCall) expr;
+                switch (call.name) {
+                    case "position": case "last": case "count": case "sum": case "number": case "string-length":
+                    case "floor": case "ceiling": case "round":
+                        return true;
+                    default:
+                        return call.arguments.stream().anyMatch(Compiler::positional);
+                }
+            }
+            // Paths and filters start their own contexts
+            return false;
+        }
+
+        private NodeTest nodeTest(XPathExpression.Step step) {
+            if (step.axis == XPathExpression.Axis.ATTRIBUTE) {
+                if (step.test != XPathExpression.NodeTest.NAME) throw unsupported("@" + step.test);
+                if (!step.predicates.isEmpty()) throw unsupported("predicate on an attribute");
+                return new NodeTest(XPathExpression.NodeTest.NAME, null, step.name);
+            }
+            return new NodeTest(step.test, step.name, null);
+        }
+
+        // ─── Functions ───
+
+        private Evaluator function(XPathExpression.FunctionCall call) {
+            Evaluator[] args = compileAll(call.arguments);
+            int count = args.length;
+            switch (call.name) {
+                case "last":
+                    arguments(call, 0, 0);
+                    return (s, n, p, z) -> (double) z;
+                case "position":
+                    arguments(call, 0, 0);
+                    return (s, n, p, z) -> (double) p;
+                case "count":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> (double) nodeSet(args[0].evaluate(s, n, p, z)).nodes.length;
+                case "true":
+                    arguments(call, 0, 0);
+                    return (s, n, p, z) -> Boolean.TRUE;
+                case "false":
+                    arguments(call, 0, 0);
+                    return (s, n, p, z) -> Boolean.FALSE;
+                case "not":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> !toBoolean(args[0].evaluate(s, n, p, z));
+                case "boolean":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> toBoolean(args[0].evaluate(s, n, p, z));
+                case "string":
+                    arguments(call, 0, 1);
+                    return (s, n, p, z) -> count == 0 ? contextString() : toStr(s, args[0].evaluate(s, n, p, z));
+                case "number":
+                    arguments(call, 0, 1);
+                    return (s, n, p, z) -> toNumber(s, count == 0 ? contextString() : args[0].evaluate(s, n, p, z));
+                case "string-length":
+                    arguments(call, 0, 1);
+                    return (s, n, p, z) -> (double) (count == 0 ? contextString()
+                            : toStr(s, args[0].evaluate(s, n, p, z))).length();
+                case "normalize-space":
+                    arguments(call, 0, 1);
+                    return (s, n, p, z) -> normalizeSpace(count == 0 ? contextString()
+                            : toStr(s, args[0].evaluate(s, n, p, z)));
+                case "concat":
+                    arguments(call, 2, Integer.MAX_VALUE);
+                    return (s, n, p, z) -> {
+                        StringBuilder sb = new StringBuilder();
+                        for (Evaluator arg : args) {
+                            sb.append(toStr(s, arg.evaluate(s, n, p, z)));
+                        }
+                        return sb.toString();
+                    };
+                case "contains":
+                    arguments(call, 2, 2);
+                    return (s, n, p, z) -> toStr(s, args[0].evaluate(s, n, p, z)).contains(toStr(s, args[1].evaluate(s, n, p, z)));
+                case "starts-with":
+                    arguments(call, 2, 2);
+                    return (s, n, p, z) -> toStr(s, args[0].evaluate(s, n, p, z)).startsWith(toStr(s, args[1].evaluate(s, n, p, z)));
+                case "substring-before":
+                    arguments(call, 2, 2);
+                    return (s, n, p, z) -> {
+                        String value = toStr(s, args[0].evaluate(s, n, p, z));
+                        int at = value.indexOf(toStr(s, args[1].evaluate(s, n, p, z)));
+                        return at < 0 ? "" : value.substring(0, at);
+                    };
+                case "substring-after":
+                    arguments(call, 2, 2);
+                    return (s, n, p, z) -> {
+                        String value = toStr(s, args[0].evaluate(s, n, p, z));
+                        String separator = toStr(s, args[1].evaluate(s, n, p, z));
+                        int at = value.indexOf(separator);
+                        return at < 0 ? "" : value.substring(at + separator.length());
+                    };
+                case "substring":
+                    arguments(call, 2, 3);
+                    return (s, n, p, z) -> substring(toStr(s, args[0].evaluate(s, n, p, z)),
+                            toNumber(s, args[1].evaluate(s, n, p, z)),
+                            count == 3 ? toNumber(s, args[2].evaluate(s, n, p, z)) : Double.POSITIVE_INFINITY);
+                case "translate":
+                    arguments(call, 3, 3);
+                    return (s, n, p, z) -> translate(toStr(s, args[0].evaluate(s, n, p, z)),
+                            toStr(s, args[1].evaluate(s, n, p, z)), toStr(s, args[2].evaluate(s, n, p, z)));
+                case "name":
+                case "local-name":
+                    arguments(call, 0, 1);
+                    return (s, n, p, z) -> {
+                        if (count == 0) return n == DOCUMENT ? "" : s.tag(n);
+                        NodeSet set = nodeSet(args[0].evaluate(s, n, p, z));
+                        if (set.nodes.length == 0 || set.nodes[0] == DOCUMENT) return "";
+                        return set.attribute != null ? set.attribute : s.tag(set.nodes[0]);
+                    };
+                case "sum":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> {
+                        NodeSet set = nodeSet(args[0].evaluate(s, n, p, z));
+                        double sum = 0;
+                        for (int i = 0; i < set.nodes.length; i++) {
+                            sum += toNumber(set.stringValue(s, i));
+                        }
+                        return sum;
+                    };
+                case "floor":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> Math.floor(toNumber(s, args[0].evaluate(s, n, p, z)));
+                case "ceiling":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> Math.ceil(toNumber(s, args[0].evaluate(s, n, p, z)));
+                case "round":
+                    arguments(call, 1, 1);
+                    return (s, n, p, z) -> {
+                        double value = toNumber(s, args[0].evaluate(s, n, p, z));
+                        return Double.isNaN(value) || Double.isInfinite(value) ? value : Math.floor(value + 0.5);
+                    };
+                default:
+                    throw unsupported("function " + call.name + "()");
+            }
+        }
+
+        private void arguments(XPathExpression.FunctionCall call, int min, int max) {
+            int count = call.arguments.size();
+            if (count < min || count > max) throw unsupported(call.name + "() with " + count + " arguments");
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // STEPS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class NodeTest {
+        final XPathExpression.NodeTest kind;
+        // Element name for NAME on element axes
+        final String element;
+        // Attribute name on the attribute axis, otherwise null
+        final String attribute;
+
+        NodeTest(XPathExpression.NodeTest kind, String element, String attribute) {
+            this.kind = kind;
+            this.element = element;
+            this.attribute = attribute;
+        }
+
+        boolean matches(HierarchySnapshot snapshot, int node) {
+            switch (kind) {
+                case NODE: return true;
+                case ANY: return node != DOCUMENT;
+                case NAME: return node != DOCUMENT && snapshot.tag(node).equals(element);
+                default: return false;
+            }
+        }
+    }
+
+    private static final class StepPlan {
+        final XPathExpression.Axis axis;
+        final NodeTest test;
+        final Evaluator[] predicates;
+        final boolean reverse;
+
+        StepPlan(XPathExpression.Axis axis, NodeTest test, Evaluator[] predicates) {
+            this.axis = axis;
+            this.test = test;
+            this.predicates = predicates;
+            this.reverse = axis == XPathExpression.Axis.ANCESTOR || axis == XPathExpression.Axis.ANCESTOR_OR_SELF
+                    || axis == XPathExpression.Axis.PRECEDING || axis == XPathExpression.Axis.PRECEDING_SIBLING;
+        }
+
+        NodeSet apply(HierarchySnapshot snapshot, int[] context) {
+            if (test.attribute != null) {
+                IntList owners = new IntList();
+                for (int node : context) {
+                    if (node != DOCUMENT && snapshot.attribute(node, test.attribute) != null) owners.add(node);
+                }
+                return new NodeSet(owners.toArray(), test.attribute);
+            }
+            IntList result = new IntList();
+            IntList selected = new IntList();
+            for (int node : context) {
+                selected.clear();
+                collect(snapshot, node, selected);
+                int[] nodes = selected.toArray();
+                // Predicates count positions in axis order
+                if (reverse) reverse(nodes);
+                nodes = filter(snapshot, nodes, predicates);
+                result.addAll(nodes);
+            }
+            int[] nodes = result.toArray();
+            if (context.length > 1 || reverse) nodes = sortedUnique(nodes);
+            return new NodeSet(nodes, null);
+        }
+
+        /**
+         * The node's subtree without the node itself: one contiguous range in document order
+         */
+        private void addDescendants(HierarchySnapshot snapshot, int node, IntList out) {
+            int first = node == DOCUMENT ? 0 : node + 1;
+            int end = node == DOCUMENT ? snapshot.size() : node + snapshot.subtreeSize(node);
+            for (int descendant = first; descendant < end; descendant++) {
+                add(snapshot, descendant, out);
+            }
+        }
+
+        /**
+         * Nodes on the axis that pass the node test, in document order
+         */
+        private void collect(HierarchySnapshot snapshot, int node, IntList out) {
+            int size = snapshot.size();
+            switch (axis) {
+                case SELF:
+                    add(snapshot, node, out);
+                    break;
+                case CHILD:
+                    if (node == DOCUMENT) {
+                        add(snapshot, 0, out);
+                        break;
+                    }
+                    for (int child = snapshot.firstChild(node); child != HierarchySnapshot.NONE;
+                         child = snapshot.nextSibling(child)) {
+                        add(snapshot, child, out);
+                    }
+                    break;
+                case DESCENDANT_OR_SELF:
+                    add(snapshot, node, out);
+                    addDescendants(snapshot, node, out);
+                    break;
+                case DESCENDANT:
+                    addDescendants(snapshot, node, out);
+                    break;
+                case PARENT:
+                    if (node != DOCUMENT) add(snapshot, snapshot.parent(node), out);
+                    break;
+                case ANCESTOR_OR_SELF:
+                case ANCESTOR: {
+                    IntList chain = new IntList();
+                    if (axis == XPathExpression.Axis.ANCESTOR_OR_SELF) chain.add(node);
+                    for (int up = node; up != DOCUMENT; ) {
+                        up = snapshot.parent(up);
+                        chain.add(up);
+                    }
+                    for (int i = chain.size - 1; i >= 0; i--) {
+                        add(snapshot, chain.values[i], out);
+                    }
+                    break;
+                }
+                case FOLLOWING_SIBLING:
+                    if (node == DOCUMENT) break;
+                    for (int sibling = snapshot.nextSibling(node); sibling != HierarchySnapshot.NONE;
+                         sibling = snapshot.nextSibling(sibling)) {
+                        add(snapshot, sibling, out);
+                    }
+                    break;
+                case PRECEDING_SIBLING:
+                    if (node == DOCUMENT || node == 0) break;
+                    for (int sibling = snapshot.firstChild(snapshot.parent(node)); sibling != node;
+                         sibling = snapshot.nextSibling(sibling)) {
+                        add(snapshot, sibling, out);
+                    }
+                    break;
+                case FOLLOWING:
+                    if (node == DOCUMENT) break;
+                    for (int after = node + snapshot.subtreeSize(node); after < size; after++) {
+                        add(snapshot, after, out);
+                    }
+                    break;
+                case PRECEDING: {
+                    if (node == DOCUMENT) break;
+                    // Earlier nodes except the ancestors
+                    int ancestor = snapshot.parent(node);
+                    for (int before = node - 1; before >= 0; before--) {
+                        if (before == ancestor) {
+                            ancestor = snapshot.parent(ancestor);
+                            continue;
+                        }
+                        out.add(before);
+                    }
+                    // Collected backwards: restore document order, then test
+                    int[] nodes = out.toArray();
+                    out.clear();
+                    for (int i = nodes.length - 1; i >= 0; i--) {
+                        add(snapshot, nodes[i], out);
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+
+        private void add(HierarchySnapshot snapshot, int node, IntList out) {
+            if (test.matches(snapshot, node)) out.add(node);
+        }
+    }
+
+    /**
+     * Keeps the nodes every predicate accepts; a number accepts the node at that position
+     */
+    private static int[] filter(HierarchySnapshot snapshot, int[] nodes, Evaluator[] predicates) {
+        for (Evaluator predicate : predicates) {
+            IntList kept = new IntList();
+            for (int i = 0; i < nodes.length; i++) {
+                Object value = predicate.evaluate(snapshot, nodes[i], i + 1, nodes.length);
+                boolean keep = value instanceof Double ? (Double) value == i + 1 : toBoolean(value);
+                if (keep) kept.add(nodes[i]);
+            }
+            nodes = kept.toArray();
+        }
+        return nodes;
+    }
+
+    private static NodeSet union(NodeSet left, NodeSet right) {
+        if (!Objects.equals(left.attribute, right.attribute)) {
+            throw new IllegalArgumentException("Unsupported in local XPath evaluation (union of different node kinds)");
+        }
+        int[] nodes = Arrays.copyOf(left.nodes, left.nodes.length + right.nodes.length);
+        System.arraycopy(right.nodes, 0, nodes, left.nodes.length, right.nodes.length);
+        return new NodeSet(sortedUnique(nodes), left.attribute);
+    }
+
+    private static int[] sortedUnique(int[] nodes) {
+        Arrays.sort(nodes);
+        int unique = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (i == 0 || nodes[i] != nodes[i - 1]) nodes[unique++] = nodes[i];
+        }
+        return unique == nodes.length ? nodes : Arrays.copyOf(nodes, unique);
+    }
+
+    private static void reverse(int[] nodes) {
+        for (int i = 0, j = nodes.length - 1; i < j; i++, j--) {
+            int t = nodes[i];
+            nodes[i] = nodes[j];
+            nodes[j] = t;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // VALUES - XPath 1.0 conversions and comparisons
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static NodeSet nodeSet(Object value) {
+        if (value instanceof NodeSet) return (NodeSet) value;
+        throw new IllegalArgumentException("Not a node-set: " + value);
+    }
+
+    /**
+     * String value of the context node: elements have no text nodes in a UiAutomator2 dump
+     */
+    private static String contextString() {
+        return "";
+    }
+
+    private static boolean toBoolean(Object value) {
+        if (value instanceof Boolean) return (Boolean) value;
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0 && !Double.isNaN(d);
+        }
+        if (value instanceof String) return !((String) value).isEmpty();
+        return ((NodeSet) value).nodes.length > 0;
+    }
+
+    private static double toNumber(HierarchySnapshot snapshot, Object value) {
+        if (value instanceof Double) return (Double) value;
+        if (value instanceof Boolean) return (Boolean) value ? 1 : 0;
+        return toNumber(toStr(snapshot, value));
+    }
+
+    private static double toNumber(String value) {
+        String trimmed = value.trim();
+        if (trimmed.isEmpty() || !NUMBER.matcher(trimmed).matches()) return Double.NaN;
+        return Double.parseDouble(trimmed);
+    }
+
+    private static String toStr(HierarchySnapshot snapshot, Object value) {
+        if (value instanceof String) return (String) value;
+        if (value instanceof Boolean) return value.toString();
+        if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d)) return "NaN";
+            if (Double.isInfinite(d)) return d > 0 ? "Infinity" : "-Infinity";
+            return d == Math.rint(d) ? Long.toString((long) d) : Double.toString(d);
+        }
+        NodeSet set = (NodeSet) value;
+        return set.nodes.length == 0 ? "" : set.stringValue(snapshot, 0);
+    }
+
+    private static boolean compare(HierarchySnapshot snapshot, XPathExpression.Operator operator,
+                                   Object left, Object right) {
+        if (left instanceof NodeSet && right instanceof NodeSet) {
+            NodeSet a = (NodeSet) left;
+            NodeSet b = (NodeSet) right;
+            for (int i = 0; i < a.nodes.length; i++) {
+                String x = a.stringValue(snapshot, i);
+                for (int j = 0; j < b.nodes.length; j++) {
+                    if (compareAtoms(snapshot, operator, x, b.stringValue(snapshot, j))) return true;
+                }
+            }
+            return false;
+        }
+        if (left instanceof NodeSet || right instanceof NodeSet) {
+            boolean setOnLeft = left instanceof NodeSet;
+            NodeSet set = (NodeSet) (setOnLeft ? left : right);
+            Object other = setOnLeft ? right : left;
+            // A node-set compares to a boolean as a whole, to anything else node by node
+            if (other instanceof Boolean) {
+                return setOnLeft ? compareAtoms(snapshot, operator, toBoolean(set), other)
+                        : compareAtoms(snapshot, operator, other, toBoolean(set));
+            }
+            for (int i = 0; i < set.nodes.length; i++) {
+                String value = set.stringValue(snapshot, i);
+                if (setOnLeft ? compareAtoms(snapshot, operator, value, other)
+                        : compareAtoms(snapshot, operator, other, value)) return true;
+            }
+            return false;
+        }
+        return compareAtoms(snapshot, operator, left, right);
+    }
+
+    private static boolean compareAtoms(HierarchySnapshot snapshot, XPathExpression.Operator operator,
+                                        Object left, Object right) {
+        if (operator == XPathExpression.Operator.EQUALS || operator == XPathExpression.Operator.NOT_EQUALS) {
+            boolean equal;
+            if (left instanceof Boolean || right instanceof Boolean) {
+                equal = toBoolean(left) == toBoolean(right);
+            } else if (left instanceof Double || right instanceof Double) {
+                equal = toNumber(snapshot, left) == toNumber(snapshot, right);
+            } else {
+                equal = toStr(snapshot, left).equals(toStr(snapshot, right));
+            }
+            return operator == XPathExpression.Operator.EQUALS ? equal : !equal;
+        }
+        double a = toNumber(snapshot, left);
+        double b = toNumber(snapshot, right);
+        switch (operator) {
+            case LESS: return a < b;
+            case LESS_OR_EQUAL: return a <= b;
+            case GREATER: return a > b;
+            default: return a >= b;
+        }
+    }
+
+    private static double arithmetic(XPathExpression.Operator operator, double a, double b) {
+        switch (operator) {
+            case PLUS: return a + b;
+            case MINUS: return a - b;
+            case MULTIPLY: return a * b;
+            case DIV: return a / b;
+            default: return a % b;
+        }
+    }
+
+    private static String normalizeSpace(String value) {
+        return value.trim().replaceAll("[ \\t\\r\\n]+", " ");
+    }
+
+    private static String substring(String value, double start, double length) {
+        // XPath positions start at 1 and are rounded; characters at round(start) <= p < round(start) + round(length)
+        double first = Math.floor(start + 0.5);
+        double end = first + Math.floor(length + 0.5);
+        if (Double.isNaN(first) || Double.isNaN(end)) return "";
+        int from = (int) Math.max(first, 1);
+        int to = end > value.length() ? value.length() + 1 : (int) end;
+        return from >= to ? "" : value.substring(from - 1, to - 1);
+    }
+
+    private static String translate(String value, String from, String to) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            int at = from.indexOf(c);
+            if (at < 0) sb.append(c);
+            else if (at < to.length()) sb.append(to.charAt(at));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Growable int array
+     */
+    private static final class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        void addAll(int[] more) {
+            if (size + more.length > values.length) values = Arrays.copyOf(values, Math.max(size * 2, size + more.length));
+            System.arraycopy(more, 0, values, size, more.length);
+            size += more.length;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
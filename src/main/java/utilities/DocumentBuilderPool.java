@@ -0,0 +1,93 @@
+package utilities;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DocumentBuilderPool - Reuses configured DocumentBuilders across inspections
+ *
+ * DocumentBuilderFactory.newInstance() goes through the JAXP service lookup on
+ * every call, so the factory is created and configured only once here.
+ * Builders live in a lock-free idle stack:
+ * - acquire() hands a builder to exactly one thread (thread-confined while borrowed)
+ * - release() resets it and puts it back for the next caller
+ *
+ * Nothing is bound to a ThreadLocal, so virtual threads reuse builders the same
+ * way platform threads do instead of each creating (and leaking) their own.
+ */
+final class DocumentBuilderPool {
+
+    // Upper bound of idle builders kept around between inspections
+    private static final int MAX_IDLE = 8;
+
+    private static final DocumentBuilderFactory FACTORY = createFactory();
+    private static final ConcurrentLinkedDeque<DocumentBuilder> IDLE = new ConcurrentLinkedDeque<>();
+    private static final AtomicInteger IDLE_COUNT = new AtomicInteger();
+
+    private static final LongAdder REUSE_HITS = new LongAdder();
+    private static final LongAdder CREATED = new LongAdder();
+
+    private DocumentBuilderPool() {
+    }
+
+    /**
+     * Borrows a builder; the caller must hand it back with release()
+     */
+    static DocumentBuilder acquire() throws ParserConfigurationException {
+        DocumentBuilder builder = IDLE.pollFirst();
+        if (builder != null) {
+            IDLE_COUNT.decrementAndGet();
+            REUSE_HITS.increment();
+            return builder;
+        }
+        if (FACTORY == null) {
+            throw new ParserConfigurationException("DocumentBuilderFactory could not be configured");
+        }
+        // DocumentBuilderFactory is not thread-safe, only the builders it creates are independent
+        synchronized (FACTORY) {
+            builder = FACTORY.newDocumentBuilder();
+        }
+        CREATED.increment();
+        return builder;
+    }
+
+    /**
+     * Resets the builder and returns it to the pool (null is ignored)
+     */
+    static void release(DocumentBuilder builder) {
+        if (builder == null) return;
+        try {
+            builder.reset();
+        } catch (UnsupportedOperationException e) {
+            return;
+        }
+        if (IDLE_COUNT.incrementAndGet() <= MAX_IDLE) {
+            IDLE.offerFirst(builder);
+        } else {
+            IDLE_COUNT.decrementAndGet();
+        }
+    }
+
+    static long reuseHits() {
+        return REUSE_HITS.sum();
+    }
+
+    static long created() {
+        return CREATED.sum();
+    }
+
+    private static DocumentBuilderFactory createFactory() {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+            factory.setFeature("http://xml.org/sax/features/external-general-entities", false);
+            return factory;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package utilities;
+
+/**
+ * EditDistance - Bit-parallel fuzzy matching of a search term (Myers / Hyyrö)
+ *
+ * Computes the smallest number of edits (insert, delete, substitute, or swap
+ * two adjacent characters) that turn the search term into some substring of
+ * an attribute value, e.g. "Aksesibiliti" is 4 edits from "Accessibility".
+ *
+ * The term is compiled once into one bit mask per character (bit i set when
+ * term[i] is that character), so a whole column of the dynamic programming
+ * matrix fits in one 64-bit word and each character of the value costs a
+ * handful of word operations: O(n) per value, no allocation. Terms longer
+ * than 64 characters are not supported (compile() returns null).
+ *
+ * Based on G. Myers, "A fast bit-vector algorithm for approximate string
+ * matching" (1999), with H. Hyyrö's transposition extension (2003).
+ */
+final class EditDistance {
+
+    static final int MAX_PATTERN_LENGTH = 64;
+
+    // Case-folded term, for characters outside the ASCII table
+    private final String pattern;
+    private final long[] asciiMasks = new long[128];
+    private final long lastBit;
+
+    private EditDistance(String pattern) {
+        this.pattern = pattern;
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c < 128) asciiMasks[c] |= 1L << i;
+        }
+        this.lastBit = 1L << (pattern.length() - 1);
+    }
+
+    /**
+     * @param folded the case-folded search term
+     * @return the compiled term, or null when it is empty or longer than MAX_PATTERN_LENGTH
+     */
+    static EditDistance compile(String folded) {
+        if (folded.isEmpty() || folded.length() > MAX_PATTERN_LENGTH) return null;
+        return new EditDistance(folded);
+    }
+
+    int length() {
+        return pattern.length();
+    }
+
+    /**
+     * Fewest edits between the term and any substring of text (compared case-folded)
+     *
+     * @param cutoff largest distance of interest
+     * @return the distance, or cutoff + 1 when it is larger than cutoff
+     */
+    int distance(CharSequence text, int cutoff) {
+        int m = pattern.length();
+        // Even the best substring needs at least one insertion per missing character
+        if (text.length() + cutoff < m) return cutoff + 1;
+
+        long vp = -1L;      // vertical +1 deltas
+        long vn = 0L;       // vertical -1 deltas
+        long d0 = 0L;       // diagonal zero deltas
+        long previousEq = 0L;
+        int score = m;      // last row; any start position in text is free
+        int best = m;
+
+        for (int j = 0; j < text.length(); j++) {
+            long eq = mask(CaseFolding.fold(text.charAt(j)));
+            // Adjacent transposition: term[i-1..i] matches text[j..j-1] swapped
+            long tr = (((~d0) & eq) << 1) & previousEq;
+            d0 = (((eq & vp) + vp) ^ vp) | eq | vn | tr;
+            long hp = vn | ~(d0 | vp);
+            long hn = d0 & vp;
+            if ((hp & lastBit) != 0) score++;
+            else if ((hn & lastBit) != 0) score--;
+            // No carry into row 0: a match may start anywhere in the text
+            long x = hp << 1;
+            vn = x & d0;
+            vp = (hn << 1) | ~(x | d0);
+            previousEq = eq;
+
+            if (score < best) {
+                best = score;
+                if (best == 0) break;
+            }
+        }
+        return best <= cutoff ? best : cutoff + 1;
+    }
+
+    private long mask(char c) {
+        if (c < 128) return asciiMasks[c];
+        long bits = 0L;
+        for (int i = pattern.indexOf(c); i >= 0; i = pattern.indexOf(c, i + 1)) {
+            bits |= 1L << i;
+        }
+        return bits;
+    }
+}
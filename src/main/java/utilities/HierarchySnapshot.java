@@ -0,0 +1,660 @@
+package utilities;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+
+/**
+ * HierarchySnapshot - Compact columnar model of a UiAutomator2 page source
+ *
+ * Nodes are numbered in document order (0 = root element) and every property
+ * is stored column-wise instead of as one object per node:
+ * - Structure: parent / firstChild / nextSibling in int[] arrays (NONE = -1)
+ * - Strings:   class, text, resource-id, content-desc, package and index as ids
+ *              into a deduplicated string table (0 = attribute absent)
+ * - Booleans:  checkable, checked, clickable, ... packed as bits into one int
+ * - Bounds:    "[l,t][r,b]" parsed into int[4] per node
+ * - Any other attribute goes into a string-id column created on first use
+ *
+ * About 56 bytes per node plus the distinct strings, so a 20k node list screen
+ * takes 1-2 MB here instead of the ~30 MB the equivalent DOM takes.
+ *
+ * A lazy snapshot (PageSourceScanner) only fills the scoring columns and keeps
+ * the raw page source plus the offset of each start tag; every other attribute
+ * is decoded from there when it is read.
+ *
+ * Subtree hashes (Merkle-style, see SnapshotDiff), the trigram search index
+ * (SnapshotIndex), the block signatures (BlockBounds) and the resource-id
+ * trie (ResourceIdTrie) and the value counts are computed on first use.
+ */
+final class HierarchySnapshot {
+
+    static final int NONE = -1;
+
+    // Boolean UiAutomator2 attributes: bit i = attribute present, bit i + 16 = value "true"
+    private static final String[] FLAG_NAMES = {
+        "checkable", "checked", "clickable", "enabled", "focusable", "focused",
+        "long-clickable", "password", "scrollable", "selected", "displayed"
+    };
+    private static final int VALUE_SHIFT = 16;
+    private static final int HAS_BOUNDS = 1 << 14;
+    private static final int CLASS_IS_TAG = 1 << 15;
+
+    private final int size;
+    private final int[] parent;
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final int[] tag;
+    private final int[] text;
+    private final int[] resourceId;
+    private final int[] contentDesc;
+    private final int[] packageName;
+    private final int[] index;
+    private final int[] flags;
+    private final int[] bounds;
+    private final Map<String, int[]> extraColumns;
+    private final String[] strings;
+    private final CharSequence raw;
+    private final int[] sourceOffset;
+
+    // Case-folded string table for scoring, filled per string on first use
+    private String[] foldedStrings;
+
+    // Trigram index over the scoring attributes, built on first use
+    private SnapshotIndex searchIndex;
+
+    // Character signatures for early termination, built on first use
+    private BlockBounds blockBounds;
+
+    // Reversed resource-ids for id suffix lookups and suggestions, built on first use
+    private ResourceIdTrie resourceIdTrie;
+
+    // Nodes per string id in the text, resource-id and content-desc columns, counted on first use
+    private int[][] valueCounts;
+
+    // Computed on first use by computeSubtreeHashes()
+    private long[] stringHashes;
+    private long[] subtreeHash;
+    private int[] subtreeSize;
+
+    private HierarchySnapshot(Builder b, CharSequence raw) {
+        this.size = b.size;
+        this.parent = Arrays.copyOf(b.parent, size);
+        this.firstChild = Arrays.copyOf(b.firstChild, size);
+        this.nextSibling = Arrays.copyOf(b.nextSibling, size);
+        this.tag = Arrays.copyOf(b.tag, size);
+        this.text = Arrays.copyOf(b.text, size);
+        this.resourceId = Arrays.copyOf(b.resourceId, size);
+        this.contentDesc = Arrays.copyOf(b.contentDesc, size);
+        this.packageName = Arrays.copyOf(b.packageName, size);
+        this.index = Arrays.copyOf(b.index, size);
+        this.flags = Arrays.copyOf(b.flags, size);
+        this.bounds = Arrays.copyOf(b.bounds, size * 4);
+        this.extraColumns = new LinkedHashMap<>();
+        for (Map.Entry<String, int[]> column : b.extraColumns.entrySet()) {
+            extraColumns.put(column.getKey(), Arrays.copyOf(column.getValue(), size));
+        }
+        this.strings = b.strings.toArray(new String[0]);
+        this.raw = raw;
+        this.sourceOffset = raw != null ? Arrays.copyOf(b.sourceOffset, size) : null;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // PARSING
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Builds a snapshot straight from the page source with a single StAX pass
+     */
+    static HierarchySnapshot parse(CharSequence xml) throws XMLStreamException {
+        return parse(XmlInput.of(xml));
+    }
+
+    static HierarchySnapshot parse(XmlInput.Source source) throws XMLStreamException {
+        XMLStreamReader reader = source.openStax();
+        try {
+            Builder builder = new Builder();
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    builder.startElement(reader.getLocalName());
+                    for (int i = 0; i < reader.getAttributeCount(); i++) {
+                        builder.attribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    builder.endElement();
+                }
+            }
+            return builder.build();
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Converts an already parsed DOM into a snapshot
+     */
+    static HierarchySnapshot fromDocument(Document doc) {
+        Builder builder = new Builder();
+        // Walks the DOM's own sibling / parent links, so the depth of the hierarchy never reaches the stack
+        Element root = doc.getDocumentElement();
+        Node node = root;
+        while (true) {
+            appendElement(builder, (Element) node);
+            Node child = element(node.getFirstChild());
+            if (child != null) {
+                node = child;
+                continue;
+            }
+            // Close the element and every ancestor whose children are all done
+            Node sibling = null;
+            while (sibling == null) {
+                builder.endElement();
+                if (node == root) return builder.build();
+                sibling = element(node.getNextSibling());
+                if (sibling == null) node = node.getParentNode();
+            }
+            node = sibling;
+        }
+    }
+
+    private static void appendElement(Builder builder, Element e) {
+        builder.startElement(e.getTagName());
+        NamedNodeMap attrs = e.getAttributes();
+        for (int i = 0; i < attrs.getLength(); i++) {
+            Node attr = attrs.item(i);
+            builder.attribute(attr.getNodeName(), attr.getNodeValue());
+        }
+    }
+
+    /**
+     * The first element among node and its following siblings, or null
+     */
+    private static Node element(Node node) {
+        while (node != null && node.getNodeType() != Node.ELEMENT_NODE) {
+            node = node.getNextSibling();
+        }
+        return node;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // STRUCTURE
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    int size() {
+        return size;
+    }
+
+    int parent(int node) {
+        return parent[node];
+    }
+
+    int firstChild(int node) {
+        return firstChild[node];
+    }
+
+    int nextSibling(int node) {
+        return nextSibling[node];
+    }
+
+    /**
+     * Number of nodes in the subtree of node (itself included); they are node..node+size-1
+     */
+    int subtreeSize(int node) {
+        if (subtreeSize == null) computeSubtreeHashes();
+        return subtreeSize[node];
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SUBTREE HASHES
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Hash of the node's class, text, resource-id and content-desc
+     */
+    long nodeHash(int node) {
+        if (stringHashes == null) computeStringHashes();
+        long h = mix(0x27D4EB2F165667C5L, stringHash(tag[node]));
+        h = mix(h, stringHash(text[node]));
+        h = mix(h, stringHash(resourceId[node]));
+        return mix(h, stringHash(contentDesc[node]));
+    }
+
+    /**
+     * Hash of the node and all its descendants in order; equal hashes mean identical subtrees
+     */
+    long subtreeHash(int node) {
+        if (subtreeHash == null) computeSubtreeHashes();
+        return subtreeHash[node];
+    }
+
+    private void computeSubtreeHashes() {
+        long[] hashes = new long[size];
+        int[] sizes = new int[size];
+        // Children always have higher ids than their parent, so a reverse scan is bottom-up
+        for (int node = size - 1; node >= 0; node--) {
+            long h = nodeHash(node);
+            int count = 1;
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                h = mix(h, hashes[child]);
+                count += sizes[child];
+            }
+            hashes[node] = mix(h, count);
+            sizes[node] = count;
+        }
+        subtreeSize = sizes;
+        subtreeHash = hashes;
+    }
+
+    /**
+     * Trigram index over class, text, resource-id and content-desc, built on first use
+     */
+    SnapshotIndex searchIndex() {
+        SnapshotIndex index = searchIndex;
+        if (index == null) {
+            String[] table = new String[strings.length];
+            for (int id = 1; id < strings.length; id++) {
+                table[id] = folded(id);
+            }
+            index = new SnapshotIndex(table, size, tag, text, resourceId, contentDesc);
+            searchIndex = index;
+        }
+        return index;
+    }
+
+    boolean hasSearchIndex() {
+        return searchIndex != null;
+    }
+
+    /**
+     * Per-block character signatures for early termination, built on first use
+     */
+    BlockBounds blockBounds() {
+        BlockBounds bounds = blockBounds;
+        if (bounds == null) {
+            bounds = new BlockBounds(strings, size, tag, text, resourceId, contentDesc);
+            blockBounds = bounds;
+        }
+        return bounds;
+    }
+
+    /**
+     * Trie of the distinct resource-ids, read back to front, built on first use
+     */
+    ResourceIdTrie resourceIdTrie() {
+        ResourceIdTrie trie = resourceIdTrie;
+        if (trie == null) {
+            String[] table = new String[strings.length];
+            for (int id = 1; id < strings.length; id++) {
+                table[id] = folded(id);
+            }
+            trie = new ResourceIdTrie(strings, table, size, resourceId);
+            resourceIdTrie = trie;
+        }
+        return trie;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // VALUE COUNTS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    // How many nodes share the node's exact value: the match count of a selector
+    // such as AppiumBy.id or accessibilityId. 0 when the node has no value.
+
+    int sameTextCount(int node) {
+        return text[node] == 0 ? 0 : valueCounts()[0][text[node]];
+    }
+
+    int sameResourceIdCount(int node) {
+        return resourceId[node] == 0 ? 0 : valueCounts()[1][resourceId[node]];
+    }
+
+    int sameContentDescCount(int node) {
+        return contentDesc[node] == 0 ? 0 : valueCounts()[2][contentDesc[node]];
+    }
+
+    /**
+     * Per column, nodes per string id; one pass on first use, so each count is a lookup
+     * even when thousands of list rows share a resource-id
+     */
+    private int[][] valueCounts() {
+        int[][] counts = valueCounts;
+        if (counts == null) {
+            counts = new int[3][strings.length];
+            for (int node = 0; node < size; node++) {
+                counts[0][text[node]]++;
+                counts[1][resourceId[node]]++;
+                counts[2][contentDesc[node]]++;
+            }
+            valueCounts = counts;
+        }
+        return counts;
+    }
+
+    private long stringHash(int id) {
+        return stringHashes[id];
+    }
+
+    private void computeStringHashes() {
+        long[] hashes = new long[strings.length];
+        // 64-bit FNV-1a per distinct string: String.hashCode() collides too easily for a structural diff
+        for (int id = 1; id < strings.length; id++) {
+            long h = 0xCBF29CE484222325L;
+            for (int i = 0; i < strings[id].length(); i++) {
+                h = (h ^ strings[id].charAt(i)) * 0x100000001B3L;
+            }
+            hashes[id] = h;
+        }
+        stringHashes = hashes;
+    }
+
+    private static long mix(long h, long value) {
+        h = (h ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // ATTRIBUTES
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Element name, e.g. android.widget.TextView
+     */
+    String tag(int node) {
+        return strings[tag[node]];
+    }
+
+    // Scoring attributes: "" when absent, like Element.getAttribute()
+
+    String text(int node) {
+        return valueOrEmpty(text[node]);
+    }
+
+    String resourceId(int node) {
+        return valueOrEmpty(resourceId[node]);
+    }
+
+    String contentDesc(int node) {
+        return valueOrEmpty(contentDesc[node]);
+    }
+
+    // Case-folded scoring attributes, folded once per distinct string: "" when absent
+
+    String foldedTag(int node) {
+        return folded(tag[node]);
+    }
+
+    String foldedText(int node) {
+        return folded(text[node]);
+    }
+
+    String foldedResourceId(int node) {
+        return folded(resourceId[node]);
+    }
+
+    String foldedContentDesc(int node) {
+        return folded(contentDesc[node]);
+    }
+
+    /**
+     * Any attribute by name, or null when the node does not have it
+     */
+    String attribute(int node, String name) {
+        switch (name) {
+            case "text": return strings[text[node]];
+            case "resource-id": return strings[resourceId[node]];
+            case "content-desc": return strings[contentDesc[node]];
+            default: break;
+        }
+        if (raw != null) {
+            return PageSourceScanner.attributeValue(raw, sourceOffset[node], name);
+        }
+        switch (name) {
+            case "package": return strings[packageName[node]];
+            case "index": return strings[index[node]];
+            case "bounds":
+                if ((flags[node] & HAS_BOUNDS) != 0) return boundsString(node);
+                break;
+            case "class":
+                if ((flags[node] & CLASS_IS_TAG) != 0) return tag(node);
+                break;
+            default:
+                int bit = flagBit(name);
+                if (bit >= 0 && (flags[node] & (1 << bit)) != 0) {
+                    return (flags[node] & (1 << (bit + VALUE_SHIFT))) != 0 ? "true" : "false";
+                }
+                break;
+        }
+        int[] column = extraColumns.get(name);
+        return column != null ? strings[column[node]] : null;
+    }
+
+    /**
+     * Bounds as {left, top, right, bottom}, or null when the node has none
+     */
+    int[] bounds(int node) {
+        if (raw != null) {
+            String value = attribute(node, "bounds");
+            int[] parsed = new int[4];
+            return value != null && parseBounds(value, parsed, 0) ? parsed : null;
+        }
+        if ((flags[node] & HAS_BOUNDS) == 0) return null;
+        return Arrays.copyOfRange(bounds, node * 4, node * 4 + 4);
+    }
+
+    private String boundsString(int node) {
+        int b = node * 4;
+        return "[" + bounds[b] + "," + bounds[b + 1] + "][" + bounds[b + 2] + "," + bounds[b + 3] + "]";
+    }
+
+    private String folded(int id) {
+        if (id == 0) return "";
+        // Parallel scoring may race here; the worst case is a string folded twice
+        String[] table = foldedStrings;
+        if (table == null) {
+            table = new String[strings.length];
+            foldedStrings = table;
+        }
+        String value = table[id];
+        if (value == null) {
+            value = CaseFolding.fold(strings[id]);
+            table[id] = value;
+        }
+        return value;
+    }
+
+    private String valueOrEmpty(int id) {
+        String value = strings[id];
+        return value != null ? value : "";
+    }
+
+    /**
+     * Parses canonical "[left,top][right,bottom]" into out[offset..offset+3]
+     * (canonical integers only, so boundsString() gives back the original text)
+     */
+    private static boolean parseBounds(String value, int[] out, int offset) {
+        int[] parsed = new int[4];
+        int pos = 0;
+        for (int i = 0; i < 4; i++) {
+            char expected = (i % 2 == 0) ? '[' : ',';
+            if (pos >= value.length() || value.charAt(pos++) != expected) return false;
+            int start = pos;
+            if (pos < value.length() && value.charAt(pos) == '-') pos++;
+            int digits = pos;
+            while (pos < value.length() && value.charAt(pos) >= '0' && value.charAt(pos) <= '9') pos++;
+            int length = pos - digits;
+            if (length == 0 || length > 9 || (length > 1 && value.charAt(digits) == '0')) return false;
+            parsed[i] = Integer.parseInt(value, start, pos, 10);
+            if (parsed[i] == 0 && digits > start) return false;
+            if (i % 2 == 1 && (pos >= value.length() || value.charAt(pos++) != ']')) return false;
+        }
+        if (pos != value.length()) return false;
+        System.arraycopy(parsed, 0, out, offset, 4);
+        return true;
+    }
+
+    private static int flagBit(String name) {
+        for (int i = 0; i < FLAG_NAMES.length; i++) {
+            if (FLAG_NAMES[i].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // BUILDER - Appends nodes in document order
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    static final class Builder {
+        private int size;
+        private int current = NONE;
+        private int[] parent = new int[64];
+        private int[] firstChild = new int[64];
+        private int[] nextSibling = new int[64];
+        private int[] lastChild = new int[64];
+        private int[] tag = new int[64];
+        private int[] text = new int[64];
+        private int[] resourceId = new int[64];
+        private int[] contentDesc = new int[64];
+        private int[] packageName = new int[64];
+        private int[] index = new int[64];
+        private int[] flags = new int[64];
+        private int[] bounds = new int[64 * 4];
+        private int[] sourceOffset = new int[64];
+        private final Map<String, int[]> extraColumns = new LinkedHashMap<>();
+        private final Map<String, Integer> stringIds = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        Builder() {
+            strings.add(null);
+        }
+
+        /**
+         * Opens a new element as the last child of the currently open one
+         * @return the node id
+         */
+        int startElement(String tagName) {
+            if (size == parent.length) grow();
+            int node = size++;
+            parent[node] = current;
+            firstChild[node] = NONE;
+            nextSibling[node] = NONE;
+            lastChild[node] = NONE;
+            tag[node] = intern(tagName);
+            if (current != NONE) {
+                if (lastChild[current] == NONE) {
+                    firstChild[current] = node;
+                } else {
+                    nextSibling[lastChild[current]] = node;
+                }
+                lastChild[current] = node;
+            }
+            current = node;
+            return node;
+        }
+
+        /**
+         * Sets an attribute on the currently open element
+         */
+        void attribute(String name, String value) {
+            int node = current;
+            switch (name) {
+                case "text": text[node] = intern(value); return;
+                case "resource-id": resourceId[node] = intern(value); return;
+                case "content-desc": contentDesc[node] = intern(value); return;
+                case "package": packageName[node] = intern(value); return;
+                case "index": index[node] = intern(value); return;
+                case "bounds":
+                    if (parseBounds(value, bounds, node * 4)) {
+                        flags[node] |= HAS_BOUNDS;
+                        return;
+                    }
+                    break;
+                case "class":
+                    if (value.equals(strings.get(tag[node]))) {
+                        flags[node] |= CLASS_IS_TAG;
+                        return;
+                    }
+                    break;
+                default:
+                    int bit = flagBit(name);
+                    if (bit >= 0 && ("true".equals(value) || "false".equals(value))) {
+                        flags[node] |= 1 << bit;
+                        if ("true".equals(value)) flags[node] |= 1 << (bit + VALUE_SHIFT);
+                        return;
+                    }
+                    break;
+            }
+            extraColumns.computeIfAbsent(name, k -> new int[parent.length])[node] = intern(value);
+        }
+
+        /**
+         * Records where the currently open element starts in the raw page source
+         */
+        void sourceOffset(int offset) {
+            sourceOffset[current] = offset;
+        }
+
+        void endElement() {
+            current = parent[current];
+        }
+
+        /**
+         * Tag name of the currently open element
+         */
+        String currentTag() {
+            return strings.get(tag[current]);
+        }
+
+        int size() {
+            return size;
+        }
+
+        HierarchySnapshot build() {
+            return new HierarchySnapshot(this, null);
+        }
+
+        /**
+         * Builds a lazy snapshot that decodes non-scoring attributes from raw via the source offsets
+         */
+        HierarchySnapshot build(CharSequence raw) {
+            return new HierarchySnapshot(this, raw);
+        }
+
+        private int intern(String value) {
+            if (value == null) return 0;
+            Integer id = stringIds.get(value);
+            if (id == null) {
+                id = strings.size();
+                strings.add(value);
+                stringIds.put(value, id);
+            }
+            return id;
+        }
+
+        private void grow() {
+            int capacity = parent.length * 2;
+            parent = Arrays.copyOf(parent, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            lastChild = Arrays.copyOf(lastChild, capacity);
+            tag = Arrays.copyOf(tag, capacity);
+            text = Arrays.copyOf(text, capacity);
+            resourceId = Arrays.copyOf(resourceId, capacity);
+            contentDesc = Arrays.copyOf(contentDesc, capacity);
+            packageName = Arrays.copyOf(packageName, capacity);
+            index = Arrays.copyOf(index, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            bounds = Arrays.copyOf(bounds, capacity * 4);
+            sourceOffset = Arrays.copyOf(sourceOffset, capacity);
+            for (Map.Entry<String, int[]> column : extraColumns.entrySet()) {
+                column.setValue(Arrays.copyOf(column.getValue(), capacity));
+            }
+        }
+    }
+}
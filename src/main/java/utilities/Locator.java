@@ -0,0 +1,426 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Locator - A failed locator, parsed once into a typed syntax tree
+ *
+ * The inspector receives locators as By.toString() / AppiumBy.toString(),
+ * e.g. "By.id: io.appium.android.apis:id/button" or
+ * "AppiumBy.accessibilityId: Views". parse() splits off the strategy and
+ * parses the value: XPath into an XPathExpression, UiAutomator into a
+ * UiSelectorExpression. From the tree it derives, once:
+ * - searchTerm: the string elements are scored against
+ *     id                     the id name, e.g. "button" (the whole value without ":id/")
+ *     xpath                  the first non-empty @text='...', else @resource-id (its name), else @content-desc
+ *     androidUIAutomator     text*(), else resourceId(), else description*(), else className()
+ *     className, accessibilityId, androidViewTag, name: the value itself
+ *   and the whole locator when nothing applies; an XPath that does not parse
+ *   still gets its @text / @resource-id / @content-desc literal, read leniently
+ * - predicates: the other conditions of the element asked for
+ *     xpath                  class and [@a='v'] / contains() / starts-with() of the last step
+ *     androidUIAutomator     the other className / text / description / resourceId / boolean calls
+ * - resourceId: the resource-id asked for, if any (for "did you mean" ids)
+ * - compiledXPath / compiledUiSelector: the value compiled for local evaluation
+ *   (CompiledXPath, CompiledUiSelector)
+ *
+ * Parsed locators are memoized per locator string, so a locator that fails
+ * again and again is never parsed (or compiled) twice.
+ */
+final class Locator {
+
+    enum Strategy {
+        ID("By.id", "AppiumBy.id"),
+        XPATH("By.xpath", "AppiumBy.xpath"),
+        CLASS_NAME("By.className", "AppiumBy.className"),
+        NAME("By.name", "AppiumBy.name"),
+        ACCESSIBILITY_ID("AppiumBy.accessibilityId", "By.AccessibilityId"),
+        ANDROID_UIAUTOMATOR("AppiumBy.androidUIAutomator", "By.AndroidUIAutomator"),
+        ANDROID_VIEW_TAG("AppiumBy.androidViewTag"),
+        UNKNOWN;
+
+        // As printed by toString(), before the ':' (the second one is java-client 7's MobileBy)
+        private final String[] prefixes;
+
+        Strategy(String... prefixes) {
+            this.prefixes = prefixes;
+        }
+    }
+
+    // Most distinct locator strings kept; a test run rarely uses more
+    private static final int MAX_CACHED = 512;
+    private static final Map<String, Locator> CACHE = new ConcurrentHashMap<>();
+
+    // UiSelector boolean properties -> page source attribute
+    static final Map<String, String> BOOLEAN_PROPERTIES = Map.of(
+            "checkable", "checkable",
+            "checked", "checked",
+            "clickable", "clickable",
+            "enabled", "enabled",
+            "focusable", "focusable",
+            "focused", "focused",
+            "longClickable", "long-clickable",
+            "scrollable", "scrollable",
+            "selected", "selected");
+
+    // @attr='value' anywhere in an XPath that does not parse, in search term order
+    private static final Pattern LENIENT_TEXT = Pattern.compile("@text\\s*=\\s*['\"]([^'\"]+)['\"]");
+    private static final Pattern LENIENT_RESOURCE_ID = Pattern.compile("@resource-id\\s*=\\s*['\"]([^'\"]+)['\"]");
+    private static final Pattern LENIENT_CONTENT_DESC = Pattern.compile("@content-desc\\s*=\\s*['\"]([^'\"]+)['\"]");
+
+    final String source;
+    final Strategy strategy;
+    // The part after "strategy: ", or the whole locator for UNKNOWN
+    final String value;
+    // The parsed value for XPATH / ANDROID_UIAUTOMATOR, null otherwise or when it does not parse
+    final XPathExpression xpath;
+    final UiSelectorExpression uiSelector;
+    // xpath / uiSelector compiled for local evaluation, null when they use something unsupported
+    final CompiledXPath compiledXPath;
+    final CompiledUiSelector compiledUiSelector;
+
+    final String searchTerm;
+    final LocatorPredicates predicates;
+    final String resourceId;
+
+    private Locator(String source) {
+        this.source = source;
+        Strategy found = Strategy.UNKNOWN;
+        String rest = source;
+        String trimmed = source.trim();
+        for (Strategy candidate : Strategy.values()) {
+            for (String prefix : candidate.prefixes) {
+                if (trimmed.startsWith(prefix + ":")) {
+                    found = candidate;
+                    rest = trimmed.substring(prefix.length() + 1).trim();
+                }
+            }
+        }
+        this.strategy = found;
+        this.value = rest;
+        this.xpath = strategy == Strategy.XPATH ? parseXPath(value) : null;
+        this.uiSelector = strategy == Strategy.ANDROID_UIAUTOMATOR ? parseUiSelector(value) : null;
+        this.compiledXPath = xpath != null ? compileXPath(xpath) : null;
+        this.compiledUiSelector = uiSelector != null ? compileUiSelector(uiSelector) : null;
+
+        String term = null;
+        LocatorPredicates conditions = LocatorPredicates.NONE;
+        String id = null;
+        switch (strategy) {
+            case ID:
+                id = value;
+                term = idName(value);
+                break;
+            case XPATH:
+                if (xpath != null) {
+                    XPathExpression.Binary termSource = termComparison(xpath.root);
+                    if (termSource != null) {
+                        String attribute = comparedAttribute(termSource);
+                        String literal = comparedLiteral(termSource);
+                        term = attribute.equals("resource-id") ? idName(literal) : literal;
+                    }
+                    conditions = xpathConditions(xpath.root, termSource);
+                    id = firstLiteral(comparisons(xpath.root), "resource-id");
+                } else {
+                    // Malformed XPath, a common reason for the failure: read the literals leniently
+                    term = lenientTerm(value);
+                    id = lenientLiteral(value, LENIENT_RESOURCE_ID);
+                }
+                break;
+            case ANDROID_UIAUTOMATOR:
+                if (uiSelector != null) {
+                    UiSelectorExpression target = uiSelector.target();
+                    UiSelectorExpression.Call termSource = termCall(target);
+                    if (termSource != null) {
+                        String argument = termSource.stringArgument();
+                        term = termSource.method.startsWith("resourceId") ? idName(argument) : argument;
+                    }
+                    conditions = uiSelectorConditions(target, termSource);
+                    id = callArgument(target, "resourceId");
+                }
+                break;
+            case CLASS_NAME:
+            case NAME:
+            case ACCESSIBILITY_ID:
+            case ANDROID_VIEW_TAG:
+                term = value;
+                break;
+            default:
+                break;
+        }
+        this.searchTerm = term != null ? term : source;
+        this.predicates = conditions;
+        this.resourceId = id;
+    }
+
+    /**
+     * The parsed locator, from the cache when the same string was parsed before
+     */
+    static Locator parse(String locator) {
+        String key = locator != null ? locator : "";
+        Locator parsed = CACHE.get(key);
+        if (parsed == null) {
+            parsed = new Locator(key);
+            if (CACHE.size() >= MAX_CACHED) CACHE.clear();
+            CACHE.put(key, parsed);
+        }
+        return parsed;
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    /**
+     * io.appium.android.apis:id/button_id -> button_id; ids without ":id/" stay whole
+     */
+    private static String idName(String id) {
+        return id.contains(":id/") ? id.substring(id.lastIndexOf('/') + 1) : id;
+    }
+
+    /**
+     * Search term of an XPath that does not parse: @text, else @resource-id (its name), else @content-desc
+     */
+    private static String lenientTerm(String xpath) {
+        String text = lenientLiteral(xpath, LENIENT_TEXT);
+        if (text != null) return text;
+        String id = lenientLiteral(xpath, LENIENT_RESOURCE_ID);
+        if (id != null) return idName(id);
+        return lenientLiteral(xpath, LENIENT_CONTENT_DESC);
+    }
+
+    private static String lenientLiteral(String xpath, Pattern pattern) {
+        Matcher matcher = pattern.matcher(xpath);
+        return matcher.find() ? matcher.group(1).trim() : null;
+    }
+
+    private static XPathExpression parseXPath(String value) {
+        try {
+            return XPathExpression.parse(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static CompiledXPath compileXPath(XPathExpression xpath) {
+        try {
+            return CompiledXPath.compile(xpath);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static CompiledUiSelector compileUiSelector(UiSelectorExpression uiSelector) {
+        try {
+            return CompiledUiSelector.compile(uiSelector);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static UiSelectorExpression parseUiSelector(String value) {
+        try {
+            return UiSelectorExpression.parse(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // XPATH
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * @attr = 'value' (either way round) with a non-empty value, in the order they appear in the expression
+     */
+    private static List<XPathExpression.Binary> comparisons(XPathExpression.Expr root) {
+        List<XPathExpression.Binary> found = new ArrayList<>();
+        collectComparisons(root, found);
+        return found;
+    }
+
+    private static void collectComparisons(XPathExpression.Expr expr, List<XPathExpression.Binary> found) {
+        if (expr instanceof XPathExpression.Binary) {
+            XPathExpression.Binary binary = (XPathExpression.Binary) expr;
+            if (binary.operator == XPathExpression.Operator.EQUALS && comparedAttribute(binary) != null
+                    && !comparedLiteral(binary).isEmpty()) {
+                found.add(binary);
+                return;
+            }
+            collectComparisons(binary.left, found);
+            collectComparisons(binary.right, found);
+        } else if (expr instanceof XPathExpression.Negation) {
+            collectComparisons(((XPathExpression.Negation) expr).operand, found);
+        } else if (expr instanceof XPathExpression.FunctionCall) {
+            for (XPathExpression.Expr argument : ((XPathExpression.FunctionCall) expr).arguments) {
+                collectComparisons(argument, found);
+            }
+        } else if (expr instanceof XPathExpression.Filter) {
+            XPathExpression.Filter filter = (XPathExpression.Filter) expr;
+            collectComparisons(filter.primary, found);
+            for (XPathExpression.Expr predicate : filter.predicates) {
+                collectComparisons(predicate, found);
+            }
+        } else if (expr instanceof XPathExpression.Path) {
+            XPathExpression.Path path = (XPathExpression.Path) expr;
+            if (path.start != null) collectComparisons(path.start, found);
+            for (XPathExpression.Step step : path.steps) {
+                for (XPathExpression.Expr predicate : step.predicates) {
+                    collectComparisons(predicate, found);
+                }
+            }
+        }
+    }
+
+    /**
+     * Where the search term comes from: @text, else @resource-id, else @content-desc
+     */
+    private static XPathExpression.Binary termComparison(XPathExpression.Expr root) {
+        List<XPathExpression.Binary> comparisons = comparisons(root);
+        for (String attribute : new String[]{"text", "resource-id", "content-desc"}) {
+            for (XPathExpression.Binary comparison : comparisons) {
+                if (attribute.equals(comparedAttribute(comparison))) return comparison;
+            }
+        }
+        return null;
+    }
+
+    private static String firstLiteral(List<XPathExpression.Binary> comparisons, String attribute) {
+        for (XPathExpression.Binary comparison : comparisons) {
+            if (attribute.equals(comparedAttribute(comparison))) return comparedLiteral(comparison).trim();
+        }
+        return null;
+    }
+
+    /**
+     * The attribute of @attr = 'literal' or 'literal' = @attr, otherwise null
+     */
+    private static String comparedAttribute(XPathExpression.Binary binary) {
+        if (binary.right instanceof XPathExpression.Literal) return XPathExpression.attributeName(binary.left);
+        if (binary.left instanceof XPathExpression.Literal) return XPathExpression.attributeName(binary.right);
+        return null;
+    }
+
+    private static String comparedLiteral(XPathExpression.Binary binary) {
+        XPathExpression.Expr literal = binary.right instanceof XPathExpression.Literal ? binary.right : binary.left;
+        return ((XPathExpression.Literal) literal).value;
+    }
+
+    /**
+     * The element class and attribute conditions of the last step; predicates
+     * of earlier steps describe ancestors, and negated ones (not()) are skipped
+     */
+    private static LocatorPredicates xpathConditions(XPathExpression.Expr root, XPathExpression.Binary termSource) {
+        if (!(root instanceof XPathExpression.Path)) return LocatorPredicates.NONE;
+        XPathExpression.Step step = ((XPathExpression.Path) root).lastStep();
+        if (step == null || step.axis == XPathExpression.Axis.ATTRIBUTE) return LocatorPredicates.NONE;
+
+        List<LocatorPredicates.Condition> conditions = new ArrayList<>();
+        if (step.test == XPathExpression.NodeTest.NAME) {
+            conditions.add(LocatorPredicates.Condition.className(step.name));
+        }
+        for (XPathExpression.Expr predicate : step.predicates) {
+            collectConditions(predicate, termSource, conditions);
+        }
+        return LocatorPredicates.of(conditions);
+    }
+
+    private static void collectConditions(XPathExpression.Expr expr, XPathExpression.Binary termSource,
+                                          List<LocatorPredicates.Condition> conditions) {
+        if (expr instanceof XPathExpression.Binary) {
+            XPathExpression.Binary binary = (XPathExpression.Binary) expr;
+            if (binary.operator == XPathExpression.Operator.AND || binary.operator == XPathExpression.Operator.OR) {
+                collectConditions(binary.left, termSource, conditions);
+                collectConditions(binary.right, termSource, conditions);
+            } else if (binary.operator == XPathExpression.Operator.EQUALS && binary != termSource
+                    && comparedAttribute(binary) != null) {
+                conditions.add(new LocatorPredicates.Condition(LocatorPredicates.Kind.EQUALS,
+                        comparedAttribute(binary), comparedLiteral(binary)));
+            }
+        } else if (expr instanceof XPathExpression.FunctionCall) {
+            XPathExpression.FunctionCall call = (XPathExpression.FunctionCall) expr;
+            LocatorPredicates.Kind kind = call.name.equals("contains") ? LocatorPredicates.Kind.CONTAINS
+                    : call.name.equals("starts-with") ? LocatorPredicates.Kind.STARTS_WITH : null;
+            if (kind == null || call.arguments.size() != 2) return;
+            String attribute = XPathExpression.attributeName(call.arguments.get(0));
+            if (attribute != null && call.arguments.get(1) instanceof XPathExpression.Literal) {
+                conditions.add(new LocatorPredicates.Condition(kind, attribute,
+                        ((XPathExpression.Literal) call.arguments.get(1)).value));
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // UIAUTOMATOR
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final String[][] TERM_METHODS = {
+        {"text", "textContains", "textStartsWith"},
+        {"resourceId"},
+        {"description", "descriptionContains", "descriptionStartsWith"},
+        {"className"}
+    };
+
+    /**
+     * The call the search term comes from, in TERM_METHODS order, or null
+     */
+    private static UiSelectorExpression.Call termCall(UiSelectorExpression selector) {
+        for (String[] methods : TERM_METHODS) {
+            for (UiSelectorExpression.Call call : selector.calls) {
+                String argument = call.stringArgument();
+                if (argument != null && !argument.isEmpty() && List.of(methods).contains(call.method)) return call;
+            }
+        }
+        return null;
+    }
+
+    private static String callArgument(UiSelectorExpression selector, String method) {
+        for (UiSelectorExpression.Call call : selector.calls) {
+            if (call.method.equals(method) && call.stringArgument() != null) return call.stringArgument();
+        }
+        return null;
+    }
+
+    private static LocatorPredicates uiSelectorConditions(UiSelectorExpression selector,
+                                                          UiSelectorExpression.Call termSource) {
+        List<LocatorPredicates.Condition> conditions = new ArrayList<>();
+        for (UiSelectorExpression.Call call : selector.calls) {
+            if (call == termSource) continue;
+            String argument = call.stringArgument();
+            if (argument != null) {
+                LocatorPredicates.Condition condition = stringCondition(call.method, argument);
+                if (condition != null) conditions.add(condition);
+            } else if (call.arguments.size() == 1 && call.arguments.get(0) instanceof Boolean
+                    && BOOLEAN_PROPERTIES.containsKey(call.method)) {
+                conditions.add(new LocatorPredicates.Condition(LocatorPredicates.Kind.EQUALS,
+                        BOOLEAN_PROPERTIES.get(call.method), call.arguments.get(0).toString()));
+            }
+        }
+        return LocatorPredicates.of(conditions);
+    }
+
+    private static LocatorPredicates.Condition stringCondition(String method, String argument) {
+        switch (method) {
+            case "className": return LocatorPredicates.Condition.className(argument);
+            case "text": return equalsCondition("text", argument);
+            case "textContains": return new LocatorPredicates.Condition(LocatorPredicates.Kind.CONTAINS, "text", argument);
+            case "textStartsWith": return new LocatorPredicates.Condition(LocatorPredicates.Kind.STARTS_WITH, "text", argument);
+            case "description": return equalsCondition("content-desc", argument);
+            case "descriptionContains": return new LocatorPredicates.Condition(LocatorPredicates.Kind.CONTAINS, "content-desc", argument);
+            case "descriptionStartsWith": return new LocatorPredicates.Condition(LocatorPredicates.Kind.STARTS_WITH, "content-desc", argument);
+            case "resourceId": return equalsCondition("resource-id", argument);
+            case "packageName": return equalsCondition("package", argument);
+            default: return null;
+        }
+    }
+
+    private static LocatorPredicates.Condition equalsCondition(String attribute, String value) {
+        return new LocatorPredicates.Condition(LocatorPredicates.Kind.EQUALS, attribute, value);
+    }
+}
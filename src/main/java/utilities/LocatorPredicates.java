@@ -0,0 +1,129 @@
+package utilities;
+
+import java.util.List;
+import java.util.function.UnaryOperator;
+
+/**
+ * LocatorPredicates - The conditions of a locator besides its search term
+ *
+ * The search term reduces a locator to one string, e.g. "OK" for
+ * //android.widget.Button[@text='OK' and @enabled='true']. The rest of the
+ * locator is kept here (see Locator for where the conditions come from): an
+ * element class and any number of attribute equals / contains / starts-with
+ * conditions.
+ *
+ * Every element gets POINTS per condition it meets on top of its search term
+ * score, in the same pass, so the best match reflects the whole locator.
+ * Values compare like the search term: case-insensitive, locale-independent.
+ */
+final class LocatorPredicates {
+
+    static final LocatorPredicates NONE = new LocatorPredicates(new Condition[0]);
+
+    // Below a contains match of the search term: the term ranks first, the conditions next
+    static final int POINTS = 200;
+
+    enum Kind { CLASS, EQUALS, CONTAINS, STARTS_WITH }
+
+    static final class Condition {
+        final Kind kind;
+        final String attribute;
+        final String value;
+        final String folded;
+
+        Condition(Kind kind, String attribute, String value) {
+            this.kind = kind;
+            this.attribute = attribute;
+            this.value = value;
+            this.folded = CaseFolding.fold(value);
+        }
+
+        static Condition className(String className) {
+            return new Condition(Kind.CLASS, "class", className);
+        }
+
+        boolean matches(String tag, UnaryOperator<String> attributes) {
+            switch (kind) {
+                case CLASS:
+                    return CaseFolding.equalsIgnoreCase(tag, value)
+                            || matchesValue(attributes.apply("class"));
+                default:
+                    return matchesValue(attributes.apply(attribute));
+            }
+        }
+
+        private boolean matchesValue(String actual) {
+            if (actual == null) return false;
+            switch (kind) {
+                case CONTAINS: return CaseFolding.contains(actual, folded);
+                case STARTS_WITH: return CaseFolding.startsWith(actual, folded);
+                default: return CaseFolding.equalsIgnoreCase(actual, value);
+            }
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case CLASS: return value;
+                case CONTAINS: return "contains(@" + attribute + ", '" + value + "')";
+                case STARTS_WITH: return "starts-with(@" + attribute + ", '" + value + "')";
+                default: return "@" + attribute + "='" + value + "'";
+            }
+        }
+    }
+
+    private final Condition[] conditions;
+
+    private LocatorPredicates(Condition[] conditions) {
+        this.conditions = conditions;
+    }
+
+    static LocatorPredicates of(List<Condition> conditions) {
+        return conditions.isEmpty() ? NONE : new LocatorPredicates(conditions.toArray(new Condition[0]));
+    }
+
+    /**
+     * The conditions of a locator string (Locator.parse(locator).predicates)
+     */
+    static LocatorPredicates parse(String locator) {
+        return Locator.parse(locator).predicates;
+    }
+
+    boolean isEmpty() {
+        return conditions.length == 0;
+    }
+
+    int size() {
+        return conditions.length;
+    }
+
+    /**
+     * POINTS per condition the element meets
+     *
+     * @param attributes attribute name -> value, null when the element does not have it
+     */
+    int score(String tag, UnaryOperator<String> attributes) {
+        int score = 0;
+        for (Condition condition : conditions) {
+            if (condition.matches(tag, attributes)) score += POINTS;
+        }
+        return score;
+    }
+
+    /**
+     * score() of a snapshot node
+     */
+    int score(HierarchySnapshot snapshot, int node) {
+        return score(snapshot.tag(node), name -> snapshot.attribute(node, name));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Condition condition : conditions) {
+            if (sb.length() > 0) sb.append(" and ");
+            sb.append(condition);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package utilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * NodeScoring - Scores snapshot nodes into an int[] and keeps the top candidates
+ *
+ * Nodes are numbered in document order and scored independently, so the
+ * flat range of node indexes (or index candidates) is halved at its midpoint
+ * down to CHUNK_NODES instead of walking the tree; a chunk may start or end
+ * inside a subtree. Large ranges are scored with fork/join: every task fills its part of
+ * the shared scores array and returns its own TopCandidates, and the heaps
+ * are merged on the way back up. Packed keys order ties by node, so the
+ * result does not depend on how the range was split.
+ *
+ * Below PARALLEL_MIN_NODES, or without spare cores, everything runs on the
+ * calling thread.
+ */
+final class NodeScoring {
+
+    // Smaller scorings are not worth the fork/join overhead
+    static final int PARALLEL_MIN_NODES = 10_000;
+
+    // Nodes one task scores on its own
+    private static final int CHUNK_NODES = 2_048;
+
+    private NodeScoring() {
+    }
+
+    /**
+     * Scores nodes[0..count) (or node ids 0..count) when nodes is null) into
+     * scores[node] and offers every score above 0 to the returned candidates
+     *
+     * @param scorer   node id -> score; called concurrently when parallel
+     * @param parallel whether a large range may be split across the common pool
+     */
+    static TopCandidates score(int[] nodes, int count, IntUnaryOperator scorer, int[] scores, int limit,
+                               boolean parallel) {
+        if (parallel && count >= PARALLEL_MIN_NODES && ForkJoinPool.getCommonPoolParallelism() > 1) {
+            return ForkJoinPool.commonPool().invoke(new Chunk(nodes, 0, count, scorer, scores, limit));
+        }
+        return scoreRange(nodes, 0, count, scorer, scores, limit);
+    }
+
+    private static TopCandidates scoreRange(int[] nodes, int from, int to, IntUnaryOperator scorer,
+                                            int[] scores, int limit) {
+        TopCandidates top = new TopCandidates(limit);
+        for (int i = from; i < to; i++) {
+            int node = nodes != null ? nodes[i] : i;
+            int score = scorer.applyAsInt(node);
+            scores[node] = score;
+            if (score > 0) top.offer(node, score);
+        }
+        return top;
+    }
+
+    private static final class Chunk extends RecursiveTask<TopCandidates> {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] nodes;
+        private final int from;
+        private final int to;
+        private final IntUnaryOperator scorer;
+        private final int[] scores;
+        private final int limit;
+
+        Chunk(int[] nodes, int from, int to, IntUnaryOperator scorer, int[] scores, int limit) {
+            this.nodes = nodes;
+            this.from = from;
+            this.to = to;
+            this.scorer = scorer;
+            this.scores = scores;
+            this.limit = limit;
+        }
+
+        @Override
+        protected TopCandidates compute() {
+            if (to - from <= CHUNK_NODES) {
+                return scoreRange(nodes, from, to, scorer, scores, limit);
+            }
+            int middle = (from + to) >>> 1;
+            Chunk first = new Chunk(nodes, from, middle, scorer, scores, limit);
+            first.fork();
+            TopCandidates second = new Chunk(nodes, middle, to, scorer, scores, limit).compute();
+            TopCandidates top = first.join();
+            top.merge(second);
+            return top;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package utilities;
+
+import io.appium.java_client.MobileCommand;
+import org.openqa.selenium.remote.DriverCommand;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * PageSourceCache - Shares one page source dump between consumers on an unchanged screen
+ *
+ * A cached dump is reused only while all of these still hold:
+ * 1. The current activity is the same as when the dump was taken
+ * 2. No UI-mutating driver command ran since then (generation counter)
+ * 3. The dump is younger than maxAgeMillis (screens that change on their own)
+ *
+ * Read-only are the find / attribute / page source / screenshot commands and
+ * the activity, package, settings, keyboard and device time lookups, also when
+ * java-client sends them as "mobile:" script extensions.
+ *
+ * Every command that is not known to be read-only bumps the generation, so an
+ * unknown command can only cost a cache miss, never a stale page source.
+ */
+public final class PageSourceCache {
+
+    private static final long DEFAULT_MAX_AGE_MILLIS = 3000;
+
+    // Commands that only read state; everything else may change the UI
+    private static final Set<String> READ_ONLY_COMMANDS = Set.of(
+        DriverCommand.GET_PAGE_SOURCE,
+        DriverCommand.FIND_ELEMENT,
+        DriverCommand.FIND_ELEMENTS,
+        DriverCommand.FIND_CHILD_ELEMENT,
+        DriverCommand.FIND_CHILD_ELEMENTS,
+        DriverCommand.GET_ELEMENT_TEXT,
+        DriverCommand.GET_ELEMENT_TAG_NAME,
+        DriverCommand.GET_ELEMENT_ATTRIBUTE,
+        DriverCommand.GET_ELEMENT_DOM_ATTRIBUTE,
+        DriverCommand.GET_ELEMENT_DOM_PROPERTY,
+        DriverCommand.GET_ELEMENT_RECT,
+        DriverCommand.GET_ELEMENT_LOCATION,
+        DriverCommand.GET_ELEMENT_SIZE,
+        DriverCommand.IS_ELEMENT_DISPLAYED,
+        DriverCommand.IS_ELEMENT_ENABLED,
+        DriverCommand.IS_ELEMENT_SELECTED,
+        DriverCommand.SCREENSHOT,
+        DriverCommand.ELEMENT_SCREENSHOT,
+        DriverCommand.GET_CAPABILITIES,
+        DriverCommand.STATUS,
+        DriverCommand.GET_TIMEOUTS,
+        DriverCommand.SET_TIMEOUT,
+        DriverCommand.GET_CURRENT_CONTEXT_HANDLE,
+        DriverCommand.GET_CONTEXT_HANDLES,
+        MobileCommands.CURRENT_ACTIVITY,
+        MobileCommands.GET_CURRENT_PACKAGE,
+        MobileCommands.GET_SETTINGS,
+        MobileCommands.IS_KEYBOARD_SHOWN,
+        MobileCommands.GET_DEVICE_TIME
+    );
+
+    // "mobile:" extensions that only read state; java-client 8.6 sends currentActivity() and
+    // getCurrentPackage() as executeScript with these, falling back to the commands above
+    private static final Set<String> READ_ONLY_SCRIPTS = Set.of(
+        "mobile: getCurrentActivity",
+        "mobile: getCurrentPackage",
+        "mobile: isKeyboardShown",
+        "mobile: getDeviceTime"
+    );
+
+    /**
+     * Exposes java-client's command names (some are protected), so they are never hand-typed.
+     * Most are deprecated in favour of "mobile:" script extensions (READ_ONLY_SCRIPTS);
+     * java-client still sends them when the server lacks the extension.
+     */
+    @SuppressWarnings("deprecation")
+    private static final class MobileCommands extends MobileCommand {
+        static final String CURRENT_ACTIVITY = MobileCommand.CURRENT_ACTIVITY;
+        static final String GET_CURRENT_PACKAGE = MobileCommand.GET_CURRENT_PACKAGE;
+        static final String GET_SETTINGS = MobileCommand.GET_SETTINGS;
+        static final String IS_KEYBOARD_SHOWN = MobileCommand.IS_KEYBOARD_SHOWN;
+        static final String GET_DEVICE_TIME = MobileCommand.GET_DEVICE_TIME;
+    }
+
+    private final long maxAgeMillis;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Entry entry;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PageSourceCache() {
+        this(DEFAULT_MAX_AGE_MILLIS);
+    }
+
+    public PageSourceCache(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Returns the cached dump if the screen is unchanged, otherwise takes a new one
+     *
+     * @param activity Cheap lookup of the current activity (cache key)
+     * @param dump     The expensive page source dump
+     */
+    public String get(Supplier<String> activity, Supplier<String> dump) {
+        long gen = generation.get();
+        String currentActivity;
+        try {
+            currentActivity = activity.get();
+        } catch (RuntimeException e) {
+            misses.increment();
+            return dump.get();
+        }
+
+        Entry cached = entry;
+        if (cached != null && cached.generation == gen && Objects.equals(cached.activity, currentActivity)
+                && System.currentTimeMillis() - cached.createdAt <= maxAgeMillis) {
+            hits.increment();
+            return cached.pageSource;
+        }
+
+        misses.increment();
+        String pageSource = dump.get();
+        // A command that ran during the dump may have changed the screen: do not cache it
+        if (pageSource != null && generation.get() == gen) {
+            entry = new Entry(gen, currentActivity, pageSource, System.currentTimeMillis());
+        }
+        return pageSource;
+    }
+
+    /**
+     * Drops the cached dump; called for every UI-mutating command
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+        entry = null;
+    }
+
+    /**
+     * Invalidates the cache unless the driver command is known to be read-only
+     */
+    public void onCommand(String driverCommand) {
+        onCommand(driverCommand, Map.of());
+    }
+
+    /**
+     * Invalidates the cache unless the driver command is known to be read-only;
+     * executeScript is read-only only for the known read-only "mobile:" extensions
+     *
+     * @param parameters The command's parameters (the "script" of an executeScript)
+     */
+    public void onCommand(String driverCommand, Map<String, ?> parameters) {
+        if (READ_ONLY_COMMANDS.contains(driverCommand)) return;
+        if (DriverCommand.EXECUTE_SCRIPT.equals(driverCommand) && READ_ONLY_SCRIPTS.contains(parameters.get("script"))) {
+            return;
+        }
+        invalidate();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class Entry {
+        final long generation;
+        final String activity;
+        final String pageSource;
+        final long createdAt;
+
+        Entry(long generation, String activity, String pageSource, long createdAt) {
+            this.generation = generation;
+            this.activity = activity;
+            this.pageSource = pageSource;
+            this.createdAt = createdAt;
+        }
+    }
+}
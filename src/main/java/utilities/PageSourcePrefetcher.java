@@ -0,0 +1,132 @@
+package utilities;
+
+import org.openqa.selenium.WebDriver;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * PageSourcePrefetcher - Speculative page source dump before a wait times out
+ *
+ * A failing wait spends its whole timeout polling, and only then does the
+ * inspector ask for the page source, which is another slow UiAutomator2
+ * dump. The prefetcher takes that dump on a background thread once most of
+ * the timeout has elapsed, so it is ready (or already in flight) when the
+ * TimeoutException arrives. If the element turns up, the prefetch is
+ * cancelled before it starts or its result is simply dropped.
+ *
+ * WebDriver is not thread-safe, and a CachingAndroidDriver also updates its
+ * cache on every command. The dump therefore runs under a lock, and the wait
+ * must poll through guard(), which takes the same lock: once the dump starts,
+ * polling pauses until it is done, so the two threads never send commands
+ * at the same time. Do not use the driver from other threads meanwhile.
+ *
+ * Usage:
+ *   try (PageSourcePrefetcher prefetch = PageSourcePrefetcher.schedule(driver, Duration.ofSeconds(8))) {
+ *       return wait.until(prefetch.guard(ExpectedConditions.presenceOfElementLocated(locator)));
+ *   } catch (TimeoutException e) {
+ *       String pageSource = prefetch.await(Duration.ofSeconds(30));   // null if it never started
+ *   }
+ */
+public final class PageSourcePrefetcher implements AutoCloseable {
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "page-source-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    // Held by the dump and by every guarded poll: one command path at a time
+    private final ReentrantLock commands = new ReentrantLock();
+    private final ScheduledFuture<String> future;
+    private volatile long capturedAt;
+
+    private PageSourcePrefetcher(WebDriver driver, Duration delay) {
+        this.future = EXECUTOR.schedule(() -> {
+            // A cancelled prefetch must not start a dump
+            if (!started.compareAndSet(false, true)) return null;
+            commands.lock();
+            try {
+                String pageSource = driver.getPageSource();
+                capturedAt = System.currentTimeMillis();
+                return pageSource;
+            } finally {
+                commands.unlock();
+            }
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Schedules a page source dump on the background thread
+     *
+     * @param driver The driver to dump from
+     * @param delay  When to dump, e.g. 80% of the wait timeout
+     */
+    public static PageSourcePrefetcher schedule(WebDriver driver, Duration delay) {
+        return new PageSourcePrefetcher(driver, delay);
+    }
+
+    /**
+     * Wraps a wait condition so its polls never overlap the background dump:
+     * a poll that comes due while the dump runs waits for it to finish
+     */
+    public <T> Function<WebDriver, T> guard(Function<? super WebDriver, T> condition) {
+        return driver -> {
+            commands.lock();
+            try {
+                return condition.apply(driver);
+            } finally {
+                commands.unlock();
+            }
+        };
+    }
+
+    /**
+     * Returns the prefetched page source, waiting for a dump that is in flight
+     *
+     * @param maxWait How long to wait for an in-flight dump
+     * @return the page source, or null if the dump never started, failed or took too long
+     */
+    public String await(Duration maxWait) {
+        if (started.compareAndSet(false, true)) {
+            // Not started yet: the caller dumps itself instead
+            future.cancel(false);
+            return null;
+        }
+        try {
+            return future.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | TimeoutException | CancellationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Milliseconds since the prefetched dump completed, or -1 before that
+     */
+    public long getAgeMillis() {
+        return future.isDone() && capturedAt > 0 ? System.currentTimeMillis() - capturedAt : -1;
+    }
+
+    /**
+     * Cancels the prefetch if it has not started; a running dump finishes and is dropped
+     */
+    @Override
+    public void close() {
+        if (started.compareAndSet(false, true)) {
+            future.cancel(false);
+        }
+    }
+}
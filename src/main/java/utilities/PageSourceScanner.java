@@ -0,0 +1,305 @@
+package utilities;
+
+import javax.xml.stream.XMLStreamException;
+
+/**
+ * PageSourceScanner - Lazy parser for UiAutomator2 page sources
+ *
+ * Scoring only reads the tag name, text, resource-id and content-desc, yet a
+ * regular parser decodes all ~20 attributes of every node. This scanner walks
+ * the raw characters once and:
+ * - decodes text / resource-id / content-desc eagerly (needed for scoring)
+ * - records the offset of each start tag in the raw page source
+ * - skips every other attribute value without decoding it
+ *
+ * The resulting HierarchySnapshot keeps the raw page source and decodes the
+ * remaining attributes from the recorded offset only when they are read,
+ * which in practice means once, for the winning element.
+ *
+ * Only what UiAutomator2 emits is supported: elements, attributes, the XML
+ * declaration and comments. DTDs and CDATA sections are rejected.
+ */
+final class PageSourceScanner {
+
+    private final CharSequence xml;
+    private final int length;
+    private int pos;
+
+    // Raw range of the attribute value read last (between the quotes)
+    private int valueStart;
+    private int valueEnd;
+
+    // Tag names seen so far, hashed by their characters, so each class name is allocated once
+    private String[] tagNames;
+
+    private PageSourceScanner(CharSequence xml) {
+        this.xml = xml;
+        this.length = xml.length();
+    }
+
+    /**
+     * Builds a snapshot that decodes non-scoring attributes on demand
+     */
+    static HierarchySnapshot scan(CharSequence xml) throws XMLStreamException {
+        return new PageSourceScanner(xml).scanDocument();
+    }
+
+    /**
+     * Decodes one attribute of the start tag beginning at tagOffset
+     * @return the attribute value, or null when the element does not have it
+     */
+    static String attributeValue(CharSequence xml, int tagOffset, String name) {
+        PageSourceScanner scanner = new PageSourceScanner(xml);
+        scanner.pos = tagOffset + 1;
+        try {
+            scanner.readName();
+            while (true) {
+                scanner.skipWhitespace();
+                char c = scanner.peek();
+                if (c == '/' || c == '>') return null;
+                int nameStart = scanner.pos;
+                scanner.readName();
+                int nameEnd = scanner.pos;
+                scanner.readAttributeValue();
+                if (scanner.regionEquals(nameStart, nameEnd, name)) {
+                    return scanner.decode(scanner.valueStart, scanner.valueEnd);
+                }
+            }
+        } catch (XMLStreamException e) {
+            return null;
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // DOCUMENT
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private HierarchySnapshot scanDocument() throws XMLStreamException {
+        HierarchySnapshot.Builder builder = new HierarchySnapshot.Builder();
+        tagNames = new String[256];
+        int depth = 0;
+        boolean rootClosed = false;
+
+        while (true) {
+            int lt = indexOf('<', pos);
+            if (lt < 0) break;
+            pos = lt + 1;
+            char c = peek();
+
+            if (c == '?') {
+                int end = indexOf("?>", pos);
+                if (end < 0) throw error("Unterminated processing instruction");
+                pos = end + 2;
+            } else if (c == '!') {
+                if (!startsWith("!--", pos)) throw error("DTD and CDATA are not supported");
+                int end = indexOf("-->", pos + 3);
+                if (end < 0) throw error("Unterminated comment");
+                pos = end + 3;
+            } else if (c == '/') {
+                pos++;
+                int nameStart = pos;
+                readName();
+                if (depth == 0 || !regionEquals(nameStart, pos, builder.currentTag())) {
+                    throw error("Unexpected end tag");
+                }
+                skipWhitespace();
+                expect('>');
+                builder.endElement();
+                if (--depth == 0) rootClosed = true;
+            } else {
+                if (rootClosed) throw error("Content after the root element");
+                int nameStart = pos;
+                readName();
+                builder.startElement(tagName(nameStart, pos));
+                builder.sourceOffset(lt);
+                depth++;
+                if (readAttributes(builder)) {
+                    builder.endElement();
+                    if (--depth == 0) rootClosed = true;
+                }
+            }
+        }
+
+        if (depth != 0 || !rootClosed) throw error("Unexpected end of document");
+        return builder.build(xml);
+    }
+
+    /**
+     * Reads the attributes of the current start tag
+     * @return true for a self-closing tag
+     */
+    private boolean readAttributes(HierarchySnapshot.Builder builder) throws XMLStreamException {
+        while (true) {
+            skipWhitespace();
+            char c = peek();
+            if (c == '>') {
+                pos++;
+                return false;
+            }
+            if (c == '/') {
+                pos++;
+                expect('>');
+                return true;
+            }
+            int nameStart = pos;
+            readName();
+            int nameEnd = pos;
+            readAttributeValue();
+
+            String eager = scoringAttribute(nameStart, nameEnd);
+            if (eager != null) {
+                builder.attribute(eager, decode(valueStart, valueEnd));
+            }
+        }
+    }
+
+    private String scoringAttribute(int start, int end) {
+        if (regionEquals(start, end, "text")) return "text";
+        if (regionEquals(start, end, "resource-id")) return "resource-id";
+        if (regionEquals(start, end, "content-desc")) return "content-desc";
+        return null;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // TOKENS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private void readName() throws XMLStreamException {
+        int start = pos;
+        while (pos < length) {
+            char c = xml.charAt(pos);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '/' || c == '>' || c == '=') break;
+            pos++;
+        }
+        if (pos == start) throw error("Name expected");
+    }
+
+    private String tagName(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + xml.charAt(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & (tagNames.length - 1);
+        String cached = tagNames[slot];
+        if (cached != null && regionEquals(start, end, cached)) return cached;
+        String name = xml.subSequence(start, end).toString();
+        tagNames[slot] = name;
+        return name;
+    }
+
+    /**
+     * Reads ="..." or ='...' and stores the raw range between the quotes in valueStart / valueEnd
+     */
+    private void readAttributeValue() throws XMLStreamException {
+        skipWhitespace();
+        expect('=');
+        skipWhitespace();
+        char quote = peek();
+        if (quote != '"' && quote != '\'') throw error("Quote expected");
+        valueStart = ++pos;
+        valueEnd = indexOf(quote, valueStart);
+        if (valueEnd < 0) throw error("Unterminated attribute value");
+        pos = valueEnd + 1;
+    }
+
+    /**
+     * Decodes entities and normalizes whitespace like an XML parser does for attribute values
+     */
+    private String decode(int start, int end) throws XMLStreamException {
+        int i = start;
+        while (i < end) {
+            char c = xml.charAt(i);
+            if (c == '&' || c == '\t' || c == '\n' || c == '\r' || c == '<') break;
+            i++;
+        }
+        if (i == end) return xml.subSequence(start, end).toString();
+
+        StringBuilder sb = new StringBuilder(end - start);
+        sb.append(xml, start, i);
+        while (i < end) {
+            char c = xml.charAt(i);
+            if (c == '&') {
+                int semi = indexOf(';', i);
+                if (semi < 0 || semi > end) throw error("Unterminated entity");
+                appendEntity(sb, i + 1, semi);
+                i = semi + 1;
+            } else if (c == '<') {
+                throw error("'<' in attribute value");
+            } else if (c == '\r') {
+                sb.append(' ');
+                i += (i + 1 < end && xml.charAt(i + 1) == '\n') ? 2 : 1;
+            } else {
+                sb.append(c == '\t' || c == '\n' ? ' ' : c);
+                i++;
+            }
+        }
+        return sb.toString();
+    }
+
+    private void appendEntity(StringBuilder sb, int start, int end) throws XMLStreamException {
+        if (regionEquals(start, end, "amp")) sb.append('&');
+        else if (regionEquals(start, end, "lt")) sb.append('<');
+        else if (regionEquals(start, end, "gt")) sb.append('>');
+        else if (regionEquals(start, end, "quot")) sb.append('"');
+        else if (regionEquals(start, end, "apos")) sb.append('\'');
+        else if (start < end && xml.charAt(start) == '#') {
+            boolean hex = start + 1 < end && xml.charAt(start + 1) == 'x';
+            try {
+                int codePoint = Integer.parseInt(xml, start + (hex ? 2 : 1), end, hex ? 16 : 10);
+                sb.appendCodePoint(codePoint);
+            } catch (IllegalArgumentException e) {
+                throw error("Invalid character reference");
+            }
+        } else {
+            throw error("Unknown entity");
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < length) {
+            char c = xml.charAt(pos);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') break;
+            pos++;
+        }
+    }
+
+    private char peek() throws XMLStreamException {
+        if (pos >= length) throw error("Unexpected end of document");
+        return xml.charAt(pos);
+    }
+
+    private void expect(char c) throws XMLStreamException {
+        if (peek() != c) throw error("'" + c + "' expected");
+        pos++;
+    }
+
+    private boolean regionEquals(int start, int end, String s) {
+        if (end - start != s.length()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            if (xml.charAt(start + i) != s.charAt(i)) return false;
+        }
+        return true;
+    }
+
+    private boolean startsWith(String s, int from) {
+        return from + s.length() <= length && regionEquals(from, from + s.length(), s);
+    }
+
+    private int indexOf(char c, int from) {
+        for (int i = from; i < length; i++) {
+            if (xml.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private int indexOf(String s, int from) {
+        for (int i = from; i + s.length() <= length; i++) {
+            if (regionEquals(i, i + s.length(), s)) return i;
+        }
+        return -1;
+    }
+
+    private XMLStreamException error(String message) {
+        return new XMLStreamException(message + " at offset " + pos);
+    }
+}
@@ -0,0 +1,234 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * ResourceIdTrie - Reversed-suffix trie of the resource-ids of a snapshot
+ *
+ * Every distinct resource-id is inserted case-folded and back to front, so
+ * "io.appium.android.apis:id/button" walks n, o, t, t, u, b, /, d, i, :, ...
+ * Ids of one screen share long package prefixes; reversed, they branch right
+ * away on the id name and share the package part at the bottom instead.
+ *
+ * The ids are inserted sorted by their reversed folded string, so the ids
+ * below any trie node are one contiguous range of that order:
+ * - endingWith(suffix) is a single O(|suffix|) walk down from the root
+ * - suggest() runs the edit distance of an id name against the whole trie,
+ *   one dynamic programming row per trie node, so ids sharing a name suffix
+ *   share the work, and stops descending once every entry of a row is over
+ *   the limit ("did you mean" ids for a failed By.id)
+ *
+ * Independent of the search term: built once per snapshot
+ * (HierarchySnapshot.resourceIdTrie).
+ */
+final class ResourceIdTrie {
+
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+
+    /**
+     * A resource-id close to the one asked for
+     */
+    static final class Suggestion {
+        final String resourceId;
+        // Edits between the id names (the part after the last '/'); 0 = same name, other package
+        final int edits;
+
+        Suggestion(String resourceId, int edits) {
+            this.resourceId = resourceId;
+            this.edits = edits;
+        }
+
+        @Override
+        public String toString() {
+            return resourceId + " (" + edits + ")";
+        }
+    }
+
+    // Distinct resource-ids (as in the page source), sorted by their reversed folded string
+    private final String[] ids;
+
+    // Trie nodes: label is the folded character on the edge from the parent
+    private char[] label;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private int[] depth;
+    // Ids below the node: ids[from .. to); the first `ends` of them end at the node
+    private int[] from;
+    private int[] to;
+    private int[] ends;
+    private int nodeCount;
+    private int maxDepth;
+
+    /**
+     * @param strings the snapshot's string table (index 0 = absent)
+     * @param folded  its case-folded copy
+     */
+    ResourceIdTrie(String[] strings, String[] folded, int size, int[] resourceId) {
+        boolean[] seen = new boolean[strings.length];
+        List<Integer> distinct = new ArrayList<>();
+        for (int node = 0; node < size; node++) {
+            int id = resourceId[node];
+            if (id == 0 || seen[id] || strings[id].isEmpty()) continue;
+            seen[id] = true;
+            distinct.add(id);
+        }
+        String[] reversed = new String[strings.length];
+        for (int id : distinct) {
+            reversed[id] = new StringBuilder(folded[id]).reverse().toString();
+        }
+        distinct.sort(Comparator.comparing((Integer id) -> reversed[id]).thenComparing(id -> strings[id]));
+
+        ids = new String[distinct.size()];
+        int capacity = 64;
+        label = new char[capacity];
+        firstChild = new int[capacity];
+        nextSibling = new int[capacity];
+        depth = new int[capacity];
+        from = new int[capacity];
+        to = new int[capacity];
+        ends = new int[capacity];
+        // Sorted input only ever extends the last child, so it is the only one kept here
+        int[] lastChild = new int[capacity];
+        newNode((char) 0, 0, 0);
+        lastChild[ROOT] = NONE;
+
+        for (int k = 0; k < ids.length; k++) {
+            int id = distinct.get(k);
+            ids[k] = strings[id];
+            String s = folded[id];
+            int node = ROOT;
+            to[ROOT] = k + 1;
+            for (int i = s.length() - 1; i >= 0; i--) {
+                char c = s.charAt(i);
+                int child = lastChild[node];
+                if (child == NONE || label[child] != c) {
+                    int created = newNode(c, depth[node] + 1, k);
+                    if (lastChild.length < label.length) lastChild = Arrays.copyOf(lastChild, label.length);
+                    lastChild[created] = NONE;
+                    if (child == NONE) firstChild[node] = created;
+                    else nextSibling[child] = created;
+                    lastChild[node] = created;
+                    child = created;
+                }
+                node = child;
+                to[node] = k + 1;
+            }
+            ends[node]++;
+        }
+    }
+
+    private int newNode(char c, int nodeDepth, int first) {
+        if (nodeCount == label.length) {
+            int capacity = label.length * 2;
+            label = Arrays.copyOf(label, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            depth = Arrays.copyOf(depth, capacity);
+            from = Arrays.copyOf(from, capacity);
+            to = Arrays.copyOf(to, capacity);
+            ends = Arrays.copyOf(ends, capacity);
+        }
+        int node = nodeCount++;
+        label[node] = c;
+        firstChild[node] = NONE;
+        nextSibling[node] = NONE;
+        depth[node] = nodeDepth;
+        from[node] = first;
+        to[node] = first;
+        maxDepth = Math.max(maxDepth, nodeDepth);
+        return node;
+    }
+
+    private int child(int node, char c) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (label[child] == c) return child;
+        }
+        return NONE;
+    }
+
+    int size() {
+        return ids.length;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LOOKUP
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Every resource-id ending with the folded suffix, e.g. ":id/button"
+     */
+    List<String> endingWith(String folded) {
+        int node = ROOT;
+        for (int i = folded.length() - 1; i >= 0 && node != NONE; i--) {
+            node = child(node, folded.charAt(i));
+        }
+        return node == NONE ? List.of() : Arrays.asList(ids).subList(from[node], to[node]);
+    }
+
+    /**
+     * Resource-ids whose name (the part after the last '/', or the whole id)
+     * is at most maxEdits from the folded name, fewest edits first
+     *
+     * @param name     the folded id name, e.g. "buton" for "io.appium.android.apis:id/buton"
+     * @param maxEdits most insertions, deletions and substitutions allowed
+     * @param limit    most suggestions returned
+     */
+    List<Suggestion> suggest(String name, int maxEdits, int limit) {
+        List<Suggestion> found = new ArrayList<>();
+        // Same name: the id only moved to another package
+        for (String id : endingWith("/" + name)) {
+            found.add(new Suggestion(id, 0));
+        }
+
+        // rows[d][j] = edits between the reversed name's first j characters and the d characters down to the node
+        int m = name.length();
+        int[][] rows = new int[maxDepth + 1][m + 1];
+        for (int j = 0; j <= m; j++) {
+            rows[0][j] = j;
+        }
+        int[] stack = new int[Math.max(nodeCount, 1)];
+        int top = 0;
+        for (int child = firstChild[ROOT]; child != NONE; child = nextSibling[child]) {
+            stack[top++] = child;
+        }
+        // Preorder: when a node is popped, the row above it still belongs to its parent
+        while (top > 0) {
+            int node = stack[--top];
+            int d = depth[node];
+            int[] above = rows[d - 1];
+            if (label[node] == '/') {
+                // The name ends at the parent; distance 0 was found by endingWith() above
+                if (above[m] > 0 && above[m] <= maxEdits) addAll(found, from[node], to[node], above[m]);
+                continue;
+            }
+            int[] row = rows[d];
+            row[0] = d;
+            int best = d;
+            char c = label[node];
+            for (int j = 1; j <= m; j++) {
+                int cost = name.charAt(m - j) == c ? 0 : 1;
+                row[j] = Math.min(Math.min(row[j - 1] + 1, above[j] + 1), above[j - 1] + cost);
+                best = Math.min(best, row[j]);
+            }
+            // Ids without a '/' are all name
+            if (ends[node] > 0 && row[m] <= maxEdits) addAll(found, from[node], from[node] + ends[node], row[m]);
+            if (best > maxEdits) continue;
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                stack[top++] = child;
+            }
+        }
+
+        found.sort(Comparator.comparingInt((Suggestion s) -> s.edits).thenComparing(s -> s.resourceId));
+        return found.size() > limit ? new ArrayList<>(found.subList(0, limit)) : found;
+    }
+
+    private void addAll(List<Suggestion> found, int start, int end, int edits) {
+        for (int k = start; k < end; k++) {
+            found.add(new Suggestion(ids[k], edits));
+        }
+    }
+}
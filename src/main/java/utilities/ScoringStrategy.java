@@ -0,0 +1,58 @@
+package utilities;
+
+/**
+ * ScoringStrategy - How the inspector scores elements against a failed locator
+ *
+ * The strategy is asked once per inspection for a Scorer bound to the search
+ * term, so everything that only depends on the term is prepared up front.
+ * The Scorer is then called for every element, from several threads at once
+ * when a large snapshot is scored in parallel.
+ *
+ * WeightedScoring.DEFAULT is the built-in strategy (see Scoring Algorithm in
+ * the README); its weights can be changed or components dropped per app.
+ *
+ * Usage:
+ *   AndroidElementInspector.setScoringStrategy(WeightedScoring.DEFAULT
+ *           .without(WeightedScoring.Component.CLASS_CONTAINS));
+ */
+public interface ScoringStrategy {
+
+    /**
+     * Prepares the scoring of one search term
+     * @param searchTerm the term extracted from the failed locator ("" when there is none)
+     */
+    Scorer forSearchTerm(String searchTerm);
+
+    /**
+     * Lowest best score a staged CaptureProfile accepts from its reduced first
+     * pass without a full dump, unless the profile sets its own
+     * (default: Integer.MAX_VALUE, always escalate)
+     */
+    default int escalationScore() {
+        return Integer.MAX_VALUE;
+    }
+
+    interface Scorer {
+
+        /**
+         * Score of one element; 0 or less means no match
+         * Values are as in the page source, "" when the attribute is absent.
+         */
+        int score(String className, String text, String resourceId, String contentDesc);
+
+        /**
+         * Whether a second, more expensive tier (e.g. fuzzy matching) is scored
+         * when the best score() of all elements is this low (default: never)
+         */
+        default boolean usesFallback(int bestScore) {
+            return false;
+        }
+
+        /**
+         * Points added to score() for every element when the second tier is used
+         */
+        default int fallbackScore(String className, String text, String resourceId, String contentDesc) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package utilities;
+
+/**
+ * SearchTerm - Search term compiled once per inspection
+ *
+ * The scorer used to lower-case and trim the search term, and build the
+ * ":id/" and "/" suffixes, again for every element it scored. Everything that
+ * only depends on the search term is prepared here instead, so scoring an
+ * element needs no string allocation.
+ */
+final class SearchTerm {
+
+    // As extracted from the locator, for the case-insensitive exact checks
+    final String raw;
+    // Trimmed and case-folded (CaseFolding), for the contains / suffix / prefix checks
+    final String folded;
+    final String idSuffix;
+    final String pathSuffix;
+
+    // Compiled for fuzzy scoring, null when the term is too short or too long for it
+    final EditDistance fuzzy;
+    // Most edits a fuzzy match may need: one per three characters
+    final int maxEdits;
+
+    // Shorter terms are within a single edit of too many unrelated values
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    private SearchTerm(String raw) {
+        this.raw = raw != null ? raw : "";
+        this.folded = CaseFolding.fold(this.raw.trim());
+        this.idSuffix = ":id/" + folded;
+        this.pathSuffix = "/" + folded;
+        this.fuzzy = folded.length() >= MIN_FUZZY_LENGTH ? EditDistance.compile(folded) : null;
+        this.maxEdits = folded.length() / 3;
+    }
+
+    static SearchTerm of(String searchTerm) {
+        return new SearchTerm(searchTerm);
+    }
+
+    boolean isEmpty() {
+        return raw.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return raw;
+    }
+}
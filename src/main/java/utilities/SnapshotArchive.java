@@ -0,0 +1,412 @@
+package utilities;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * SnapshotArchive - Append-only archive of the page sources behind inspector reports
+ *
+ * Every inspected page source is appended as one Deflater-compressed record,
+ * so a failure can be re-inspected offline long after the device is gone.
+ * The file is written through a memory-mapped window (FileChannel.map) that
+ * is extended in chunks; records are compressed straight into the mapping.
+ *
+ * Record layout (big-endian):
+ *   int magic | int compressed length | int raw length | int CRC32 of the compressed body
+ *   long timestamp | int test name length | test name | int locator length | locator (UTF-8)
+ *   compressed UTF-8 page source
+ *
+ * The record headers form the index: opening an archive hops from header to
+ * header (bodies are skipped) and keeps the offset, test name, locator and
+ * timestamp of every record. A crash can leave a zero-filled or torn tail,
+ * which ends the scan; the next append continues from there.
+ *
+ * Usage:
+ *   try (SnapshotArchive archive = SnapshotArchive.open(Paths.get("target/snapshots.archive"))) {
+ *       for (SnapshotArchive.Entry entry : archive.find("testLogin", null)) {
+ *           archive.reinspect(entry);
+ *       }
+ *   }
+ *
+ * Command line: java utilities.SnapshotArchive <archive> [test name] [locator]
+ */
+public final class SnapshotArchive implements Closeable {
+
+    private static final int FILE_MAGIC = 0x53415243;    // "SARC"
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    private static final int RECORD_MAGIC = 0x534E4150;  // "SNAP"
+    private static final int RECORD_FIXED_SIZE = 4 + 4 + 4 + 4 + 8 + 4 + 4;
+    private static final int MAP_CHUNK = 4 * 1024 * 1024;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final List<Entry> entries = new ArrayList<>();
+    private final ThreadLocal<String> currentTest = new ThreadLocal<>();
+
+    // Logical end of the archive; the mapped window may extend past it
+    private long end;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    private SnapshotArchive(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens an archive for reading and appending, creating it if needed
+     */
+    public static SnapshotArchive open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SnapshotArchive archive = new SnapshotArchive(path, channel);
+        try {
+            archive.load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return archive;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // ENTRY - Index entry of one archived page source
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    public static final class Entry {
+        private final long offset;
+        private final long timestamp;
+        private final String testName;
+        private final String locator;
+        private final int rawLength;
+        private final int compressedLength;
+        private final int crc;
+        private final long bodyOffset;
+
+        private Entry(long offset, long timestamp, String testName, String locator,
+                      int rawLength, int compressedLength, int crc, long bodyOffset) {
+            this.offset = offset;
+            this.timestamp = timestamp;
+            this.testName = testName;
+            this.locator = locator;
+            this.rawLength = rawLength;
+            this.compressedLength = compressedLength;
+            this.crc = crc;
+            this.bodyOffset = bodyOffset;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getTestName() {
+            return testName;
+        }
+
+        public String getLocator() {
+            return locator;
+        }
+
+        public int getPageSourceBytes() {
+            return rawLength;
+        }
+
+        public int getCompressedBytes() {
+            return compressedLength;
+        }
+
+        @Override
+        public String toString() {
+            return "@" + offset + " " + Instant.ofEpochMilli(timestamp) + " " + testName + " | " + locator
+                    + " (" + rawLength + " -> " + compressedLength + " bytes)";
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // WRITING
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Names the test running on this thread; used for the records it appends
+     */
+    public void setCurrentTest(String testName) {
+        currentTest.set(testName);
+    }
+
+    /**
+     * Appends a page source under the current test name
+     */
+    public Entry append(String locator, CharSequence pageSource) throws IOException {
+        String testName = currentTest.get();
+        return append(testName != null ? testName : "", locator, pageSource);
+    }
+
+    public synchronized Entry append(String testName, String locator, CharSequence pageSource) throws IOException {
+        byte[] test = utf8(testName);
+        byte[] loc = utf8(locator);
+        byte[] raw = utf8(pageSource);
+        long timestamp = System.currentTimeMillis();
+
+        int headerSize = RECORD_FIXED_SIZE + test.length + loc.length;
+        // Worst case for incompressible input: stored blocks add 5 bytes per 16 KB
+        int maxBody = raw.length + raw.length / 16 + 64;
+        ensureWindow(headerSize + maxBody);
+
+        int pos = (int) (end - windowStart);
+        int bodyPos = pos + headerSize;
+        ByteBuffer body = window.duplicate();
+        body.position(bodyPos).limit(bodyPos + maxBody);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            while (!deflater.finished()) {
+                if (deflater.deflate(body) == 0 && !body.hasRemaining()) {
+                    throw new IOException("Compressed page source exceeds its reserved space");
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        int compressedLength = body.position() - bodyPos;
+
+        CRC32 crc = new CRC32();
+        ByteBuffer written = window.duplicate();
+        written.position(bodyPos).limit(bodyPos + compressedLength);
+        crc.update(written);
+
+        // Header last: the magic only becomes visible once the body is complete
+        ByteBuffer header = window.duplicate();
+        header.position(pos + 4);
+        header.putInt(compressedLength).putInt(raw.length).putInt((int) crc.getValue()).putLong(timestamp);
+        header.putInt(test.length).put(test).putInt(loc.length).put(loc);
+        window.putInt(pos, RECORD_MAGIC);
+
+        Entry entry = new Entry(end, timestamp, testName, locator, raw.length, compressedLength,
+                (int) crc.getValue(), end + headerSize);
+        entries.add(entry);
+        end += headerSize + compressedLength;
+        return entry;
+    }
+
+    /**
+     * Makes sure the mapped window covers [end, end + bytes)
+     */
+    private void ensureWindow(int bytes) throws IOException {
+        if (window != null && end + bytes <= windowStart + window.capacity()) return;
+        if (window != null) window.force();
+        windowStart = end;
+        window = channel.map(FileChannel.MapMode.READ_WRITE, windowStart, Math.max(bytes, MAP_CHUNK));
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // READING
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * All records in append order
+     */
+    public synchronized List<Entry> entries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Records of a test and/or locator; null matches anything
+     */
+    public synchronized List<Entry> find(String testName, String locator) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if ((testName == null || testName.equals(entry.testName))
+                    && (locator == null || locator.equals(entry.locator))) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Records appended between fromMillis (inclusive) and toMillis (exclusive)
+     */
+    public synchronized List<Entry> between(long fromMillis, long toMillis) {
+        List<Entry> result = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.timestamp >= fromMillis && entry.timestamp < toMillis) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Decompresses an archived page source as UTF-8 bytes
+     */
+    public byte[] readPageSource(Entry entry) throws IOException {
+        ByteBuffer body = channel.map(FileChannel.MapMode.READ_ONLY, entry.bodyOffset, entry.compressedLength);
+        CRC32 crc = new CRC32();
+        crc.update(body.duplicate());
+        if ((int) crc.getValue() != entry.crc) {
+            throw new IOException("Corrupt snapshot record at offset " + entry.offset);
+        }
+
+        byte[] raw = new byte[entry.rawLength];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body);
+            int n = 0;
+            while (n < raw.length && !inflater.finished()) {
+                int read = inflater.inflate(raw, n, raw.length - n);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                n += read;
+            }
+            if (n != raw.length) throw new IOException("Truncated snapshot record at offset " + entry.offset);
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot record at offset " + entry.offset, e);
+        } finally {
+            inflater.end();
+        }
+        return raw;
+    }
+
+    /**
+     * Runs the inspector again on an archived page source, without a device
+     */
+    public void reinspect(Entry entry) throws IOException {
+        AndroidElementInspector.inspectPageSource(readPageSource(entry), entry.locator);
+    }
+
+    /**
+     * Runs the inspector on an archived page source for other locators, parsing it only once
+     */
+    public void reinspect(Entry entry, List<String> locators) throws IOException {
+        AndroidElementInspector.inspectPageSource(readPageSource(entry), locators);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LOADING
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private void load() throws IOException {
+        long size = channel.size();
+        if (size == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(FILE_MAGIC).putInt(FILE_VERSION);
+            header.flip();
+            channel.write(header, 0);
+            end = FILE_HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < FILE_HEADER_SIZE || header.getInt() != FILE_MAGIC) {
+            throw new IOException("Not a snapshot archive: " + path);
+        }
+        if (header.getInt() != FILE_VERSION) {
+            throw new IOException("Unsupported snapshot archive version: " + path);
+        }
+
+        // Hop from record header to record header; stop at the zero-filled tail or a torn record
+        long offset = FILE_HEADER_SIZE;
+        ByteBuffer fixed = ByteBuffer.allocate(RECORD_FIXED_SIZE);
+        while (offset + RECORD_FIXED_SIZE <= size) {
+            fixed.clear();
+            channel.read(fixed, offset);
+            fixed.flip();
+            if (fixed.getInt() != RECORD_MAGIC) break;
+            int compressedLength = fixed.getInt();
+            int rawLength = fixed.getInt();
+            int crc = fixed.getInt();
+            long timestamp = fixed.getLong();
+            int testLength = fixed.getInt();
+
+            // Test name length is the last int read; the locator length follows the test name
+            long pos = offset + RECORD_FIXED_SIZE - 8;
+            String testName = readString(pos, testLength, size);
+            if (testName == null) break;
+            pos += 4 + testLength;
+            ByteBuffer length = ByteBuffer.allocate(4);
+            if (pos + 4 > size) break;
+            channel.read(length, pos);
+            int locatorLength = length.getInt(0);
+            String locator = readString(pos, locatorLength, size);
+            if (locator == null) break;
+            long bodyOffset = pos + 4 + locatorLength;
+            if (compressedLength < 0 || rawLength < 0 || bodyOffset + compressedLength > size) break;
+
+            entries.add(new Entry(offset, timestamp, testName, locator, rawLength, compressedLength, crc, bodyOffset));
+            offset = bodyOffset + compressedLength;
+        }
+        end = offset;
+    }
+
+    /**
+     * Reads a string whose int length prefix is at lengthOffset; null if it runs past the file
+     */
+    private String readString(long lengthOffset, int length, long size) throws IOException {
+        if (length < 0 || lengthOffset + 4 + length > size) return null;
+        ByteBuffer bytes = ByteBuffer.allocate(length);
+        channel.read(bytes, lengthOffset + 4);
+        return new String(bytes.array(), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(CharSequence value) {
+        return value != null ? value.toString().getBytes(StandardCharsets.UTF_8) : new byte[0];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (window != null) window.force();
+            try {
+                channel.truncate(end);
+            } catch (IOException e) {
+                // Some platforms refuse while the window is mapped; the zero tail is skipped on open
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // COMMAND LINE - List or re-inspect archived snapshots
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("Usage: SnapshotArchive <archive> [test name] [locator]");
+            return;
+        }
+        try (SnapshotArchive archive = open(Paths.get(args[0]))) {
+            if (args.length == 1) {
+                for (Entry entry : archive.entries()) {
+                    System.out.println(entry);
+                }
+                return;
+            }
+            for (Entry entry : archive.find(args[1], args.length > 2 ? args[2] : null)) {
+                System.out.println("[INFO] " + entry);
+                archive.reinspect(entry);
+            }
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SnapshotDiff - Structural diff between two consecutive page source snapshots
+ *
+ * Every subtree is summarised by a Merkle-style hash: the node's class, text,
+ * resource-id and content-desc combined with the hashes of its children in
+ * order (HierarchySnapshot.subtreeHash). The current snapshot is walked
+ * top-down and each subtree whose hash also occurs in the previous snapshot is
+ * matched there as a whole, without visiting its descendants. Subtrees are
+ * contiguous node ranges in document order, so a match maps
+ * node..node+size-1 one to one onto the previous snapshot.
+ *
+ * The nodes left over are the ancestors of a change plus the elements that
+ * were really added or removed; the two are told apart by their own content.
+ */
+final class SnapshotDiff {
+
+    final HierarchySnapshot previous;
+    final HierarchySnapshot current;
+
+    // current node -> identical node of the previous snapshot, NONE when it changed
+    private final int[] previousNode;
+    private int unchangedNodes;
+
+    private int addedNodes;
+    private int removedNodes;
+    private final List<Integer> addedRoots = new ArrayList<>();
+    private final List<Integer> removedRoots = new ArrayList<>();
+
+    private SnapshotDiff(HierarchySnapshot previous, HierarchySnapshot current) {
+        this.previous = previous;
+        this.current = current;
+        this.previousNode = new int[current.size()];
+        Arrays.fill(previousNode, HierarchySnapshot.NONE);
+    }
+
+    static SnapshotDiff compare(HierarchySnapshot previous, HierarchySnapshot current) {
+        SnapshotDiff diff = new SnapshotDiff(previous, current);
+        boolean[] previousMatched = diff.matchSubtrees();
+        diff.classifyChanges(previousMatched);
+        return diff;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // RESULTS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * The node of the previous snapshot whose subtree is identical, or NONE
+     */
+    int previousNode(int node) {
+        return previousNode[node];
+    }
+
+    int unchangedNodes() {
+        return unchangedNodes;
+    }
+
+    int addedNodes() {
+        return addedNodes;
+    }
+
+    int removedNodes() {
+        return removedNodes;
+    }
+
+    /**
+     * Added nodes of the current snapshot whose parent was not added as well
+     */
+    List<Integer> addedRoots() {
+        return addedRoots;
+    }
+
+    /**
+     * Removed nodes of the previous snapshot whose parent was not removed as well
+     */
+    List<Integer> removedRoots() {
+        return removedRoots;
+    }
+
+    boolean isUnchanged() {
+        return addedNodes == 0 && removedNodes == 0 && unchangedNodes == current.size();
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SUBTREE MATCHING
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private boolean[] matchSubtrees() {
+        HashChains candidates = new HashChains(previous.size());
+        // Added in reverse so each chain yields the previous nodes in document order
+        for (int node = previous.size() - 1; node >= 0; node--) {
+            candidates.push(previous.subtreeHash(node), node);
+        }
+
+        boolean[] previousMatched = new boolean[previous.size()];
+        int node = 0;
+        while (node < current.size()) {
+            int size = current.subtreeSize(node);
+            int match = candidates.take(current.subtreeHash(node), previousMatched);
+            if (match != HierarchySnapshot.NONE && previous.subtreeSize(match) == size
+                    && isFree(previousMatched, match, size)) {
+                for (int i = 0; i < size; i++) {
+                    previousNode[node + i] = match + i;
+                    previousMatched[match + i] = true;
+                }
+                unchangedNodes += size;
+                node += size;
+            } else {
+                node++;
+            }
+        }
+        return previousMatched;
+    }
+
+    /**
+     * False when part of the previous subtree was already matched on its own
+     */
+    private static boolean isFree(boolean[] previousMatched, int node, int size) {
+        for (int i = 0; i < size; i++) {
+            if (previousMatched[node + i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Unmatched nodes exist on both sides along the path to a change (same own
+     * content, different children); only the rest were added or removed.
+     */
+    private void classifyChanges(boolean[] previousMatched) {
+        HashChains unmatched = new HashChains(previous.size());
+        for (int node = previous.size() - 1; node >= 0; node--) {
+            if (!previousMatched[node]) unmatched.push(previous.nodeHash(node), node);
+        }
+
+        boolean[] added = new boolean[current.size()];
+        for (int node = 0; node < current.size(); node++) {
+            if (previousNode[node] != HierarchySnapshot.NONE) continue;
+            int counterpart = unmatched.take(current.nodeHash(node), previousMatched);
+            if (counterpart != HierarchySnapshot.NONE) {
+                previousMatched[counterpart] = true;
+            } else {
+                added[node] = true;
+                addedNodes++;
+                int parent = current.parent(node);
+                if (parent == HierarchySnapshot.NONE || !added[parent]) addedRoots.add(node);
+            }
+        }
+
+        for (int node = 0; node < previous.size(); node++) {
+            if (previousMatched[node]) continue;
+            removedNodes++;
+            int parent = previous.parent(node);
+            if (parent == HierarchySnapshot.NONE || previousMatched[parent]) removedRoots.add(node);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // HASH CHAINS - hash -> previous nodes with that hash, without boxing
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class HashChains {
+        // Open addressing on the hash; a slot stays used when its chain runs empty
+        private final long[] keys;
+        private final boolean[] used;
+        private final int[] heads;
+        // Chain links in insertion order: nodes[link] is the node, next[link] the following link
+        private final int[] nodes;
+        private final int[] next;
+        private int count;
+
+        HashChains(int capacity) {
+            capacity = Math.max(capacity, 1);
+            int slots = Integer.highestOneBit(capacity) * 4;
+            keys = new long[slots];
+            used = new boolean[slots];
+            heads = new int[slots];
+            nodes = new int[capacity];
+            next = new int[capacity];
+        }
+
+        void push(long hash, int node) {
+            int slot = slot(hash);
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = hash;
+                heads[slot] = HierarchySnapshot.NONE;
+            }
+            int link = count++;
+            nodes[link] = node;
+            next[link] = heads[slot];
+            heads[slot] = link;
+        }
+
+        /**
+         * Removes and returns the first node with this hash that is not already matched
+         */
+        int take(long hash, boolean[] matched) {
+            int slot = slot(hash);
+            if (!used[slot]) return HierarchySnapshot.NONE;
+            int link = heads[slot];
+            // Nodes matched as part of an ancestor's subtree are dropped for good
+            while (link != HierarchySnapshot.NONE && matched[nodes[link]]) {
+                link = next[link];
+            }
+            heads[slot] = link != HierarchySnapshot.NONE ? next[link] : HierarchySnapshot.NONE;
+            return link != HierarchySnapshot.NONE ? nodes[link] : HierarchySnapshot.NONE;
+        }
+
+        private int slot(long hash) {
+            int mask = keys.length - 1;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            while (used[slot] && keys[slot] != hash) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
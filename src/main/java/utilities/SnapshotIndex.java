@@ -0,0 +1,283 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * SnapshotIndex - Trigram index over the scoring attributes of a snapshot
+ *
+ * Built once per snapshot (HierarchySnapshot.searchIndex) over the distinct
+ * case-folded class, text, resource-id and content-desc strings:
+ * - every trigram (three consecutive folded characters) -> the string ids
+ *   containing it, ascending
+ * - the first character of every text, resource-id and content-desc string
+ *   -> the string ids starting with it (WeightedScoring rewards a common prefix)
+ * - every string id -> the nodes using it in one of those four attributes
+ *
+ * A node can only score above 0 when one of its attributes contains the
+ * search term or starts with its first character, so candidates() returns
+ * exactly the nodes worth scoring: the posting lists of the term's trigrams
+ * are intersected (shortest first), the surviving strings are checked with a
+ * real contains, and the strings sharing the first character are added
+ * (unless the prefix components are disabled). Terms shorter than a trigram cannot be looked up this way.
+ */
+final class SnapshotIndex {
+
+    // Search terms need at least one full trigram
+    static final int MIN_TERM_LENGTH = 3;
+
+    // Keys above any packed trigram (3 x 16 bits) mark "starts with"
+    private static final long FIRST_CHAR = 1L << 48;
+
+    private final String[] folded;
+
+    // string id -> nodes, in document order: occurrenceNodes[occurrenceStart[id] .. occurrenceStart[id + 1])
+    private final int[] occurrenceStart;
+    private final int[] occurrenceNodes;
+
+    // Open addressing: key -> postings[postingStart[slot] .. postingStart[slot] + postingCount[slot])
+    private long[] keys;
+    private boolean[] used;
+    private int[] postingCount;
+    private int[] lastString;
+    private int[] postingStart;
+    private int[] postings;
+    private int keyCount;
+
+    /**
+     * @param folded the snapshot's case-folded string table (index 0 = absent)
+     */
+    SnapshotIndex(String[] folded, int size, int[] tag, int[] text, int[] resourceId, int[] contentDesc) {
+        this.folded = folded;
+
+        // Which strings are used, and whether as text / resource-id / content-desc (scored for prefix)
+        int[] occurrences = new int[folded.length + 1];
+        boolean[] prefixScored = new boolean[folded.length];
+        for (int node = 0; node < size; node++) {
+            countOccurrence(occurrences, tag[node]);
+            if (text[node] != tag[node]) countOccurrence(occurrences, text[node]);
+            if (resourceId[node] != tag[node] && resourceId[node] != text[node]) {
+                countOccurrence(occurrences, resourceId[node]);
+            }
+            if (contentDesc[node] != tag[node] && contentDesc[node] != text[node]
+                    && contentDesc[node] != resourceId[node]) {
+                countOccurrence(occurrences, contentDesc[node]);
+            }
+            prefixScored[text[node]] = true;
+            prefixScored[resourceId[node]] = true;
+            prefixScored[contentDesc[node]] = true;
+        }
+
+        occurrenceStart = new int[folded.length + 1];
+        for (int id = 0; id < folded.length; id++) {
+            occurrenceStart[id + 1] = occurrenceStart[id] + occurrences[id];
+        }
+        occurrenceNodes = new int[occurrenceStart[folded.length]];
+        int[] fill = Arrays.copyOf(occurrenceStart, folded.length);
+        for (int node = 0; node < size; node++) {
+            int t = tag[node];
+            int x = text[node];
+            int r = resourceId[node];
+            int d = contentDesc[node];
+            addOccurrence(fill, t, node);
+            if (x != t) addOccurrence(fill, x, node);
+            if (r != t && r != x) addOccurrence(fill, r, node);
+            if (d != t && d != x && d != r) addOccurrence(fill, d, node);
+        }
+
+        // Two passes over the strings: count the postings per key, then fill them in
+        keys = new long[64];
+        used = new boolean[64];
+        postingCount = new int[64];
+        lastString = new int[64];
+        indexStrings(prefixScored, false);
+        postingStart = new int[keys.length];
+        int total = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            postingStart[slot] = total;
+            total += postingCount[slot];
+            postingCount[slot] = 0;
+        }
+        postings = new int[total];
+        Arrays.fill(lastString, 0);
+        indexStrings(prefixScored, true);
+        lastString = null;
+    }
+
+    private static void countOccurrence(int[] occurrences, int id) {
+        if (id != 0) occurrences[id]++;
+    }
+
+    private void addOccurrence(int[] fill, int id, int node) {
+        if (id != 0) occurrenceNodes[fill[id]++] = node;
+    }
+
+    private void indexStrings(boolean[] prefixScored, boolean fill) {
+        for (int id = 1; id < folded.length; id++) {
+            if (occurrenceStart[id + 1] == occurrenceStart[id]) continue;
+            String s = folded[id];
+            if (s.isEmpty()) continue;
+            if (prefixScored[id]) addPosting(FIRST_CHAR | s.charAt(0), id, fill);
+            for (int i = 0; i + MIN_TERM_LENGTH <= s.length(); i++) {
+                addPosting(trigram(s, i), id, fill);
+            }
+        }
+    }
+
+    private void addPosting(long key, int id, boolean fill) {
+        int slot = fill ? find(key) : insert(key);
+        // A string repeating a trigram is posted once; ids arrive in ascending order
+        if (lastString[slot] == id) return;
+        lastString[slot] = id;
+        if (fill) {
+            postings[postingStart[slot] + postingCount[slot]] = id;
+        }
+        postingCount[slot]++;
+    }
+
+    private static long trigram(CharSequence s, int i) {
+        return ((long) s.charAt(i) << 32) | ((long) s.charAt(i + 1) << 16) | s.charAt(i + 2);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LOOKUP
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Every node that can score above 0 for the term, in document order, or null
+     * when the term is too short for the index and every node has to be scored
+     *
+     * @param prefix whether a common first character alone scores
+     */
+    int[] candidates(SearchTerm term, boolean prefix) {
+        String search = term.folded;
+        if (search.length() < MIN_TERM_LENGTH) return null;
+
+        int[] containing = containing(search);
+        int prefixSlot = prefix ? find(FIRST_CHAR | search.charAt(0)) : -1;
+        int prefixCount = prefixSlot >= 0 ? postingCount[prefixSlot] : 0;
+
+        int total = 0;
+        for (int id : containing) {
+            total += occurrenceStart[id + 1] - occurrenceStart[id];
+        }
+        for (int i = 0; i < prefixCount; i++) {
+            int id = postings[postingStart[prefixSlot] + i];
+            total += occurrenceStart[id + 1] - occurrenceStart[id];
+        }
+
+        int[] nodes = new int[total];
+        int n = 0;
+        for (int id : containing) {
+            n = copyOccurrences(id, nodes, n);
+        }
+        for (int i = 0; i < prefixCount; i++) {
+            n = copyOccurrences(postings[postingStart[prefixSlot] + i], nodes, n);
+        }
+
+        // A node reaches this list once per matching attribute
+        Arrays.sort(nodes);
+        int unique = 0;
+        for (int i = 0; i < nodes.length; i++) {
+            if (unique == 0 || nodes[unique - 1] != nodes[i]) nodes[unique++] = nodes[i];
+        }
+        return unique == nodes.length ? nodes : Arrays.copyOf(nodes, unique);
+    }
+
+    /**
+     * Ids of the strings containing the folded search term
+     */
+    private int[] containing(String search) {
+        int trigrams = search.length() - MIN_TERM_LENGTH + 1;
+        int[] slots = new int[trigrams];
+        for (int i = 0; i < trigrams; i++) {
+            slots[i] = find(trigram(search, i));
+            if (slots[i] < 0) return new int[0];
+        }
+
+        // Shortest posting list first, so every step can only shrink the survivors
+        int shortest = 0;
+        for (int i = 1; i < trigrams; i++) {
+            if (postingCount[slots[i]] < postingCount[slots[shortest]]) shortest = i;
+        }
+        int[] survivors = Arrays.copyOfRange(postings, postingStart[slots[shortest]],
+                postingStart[slots[shortest]] + postingCount[slots[shortest]]);
+        int count = survivors.length;
+        for (int i = 0; i < trigrams && count > 0; i++) {
+            if (i == shortest) continue;
+            int from = postingStart[slots[i]];
+            int to = from + postingCount[slots[i]];
+            int kept = 0;
+            for (int j = 0; j < count; j++) {
+                if (Arrays.binarySearch(postings, from, to, survivors[j]) >= 0) survivors[kept++] = survivors[j];
+            }
+            count = kept;
+        }
+
+        // All trigrams present does not mean in the right order
+        int kept = 0;
+        for (int j = 0; j < count; j++) {
+            if (CaseFolding.contains(folded[survivors[j]], search)) survivors[kept++] = survivors[j];
+        }
+        return Arrays.copyOf(survivors, kept);
+    }
+
+    private int copyOccurrences(int id, int[] nodes, int n) {
+        int length = occurrenceStart[id + 1] - occurrenceStart[id];
+        System.arraycopy(occurrenceNodes, occurrenceStart[id], nodes, n, length);
+        return n + length;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // HASH TABLE - key -> slot, linear probing
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; used[slot]; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    private int insert(long key) {
+        if (2 * (keyCount + 1) > keys.length) grow();
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (used[slot]) {
+            if (keys[slot] == key) return slot;
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        keyCount++;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        boolean[] oldUsed = used;
+        int[] oldCount = postingCount;
+        int[] oldLast = lastString;
+        keys = new long[oldKeys.length * 2];
+        used = new boolean[keys.length];
+        postingCount = new int[keys.length];
+        lastString = new int[keys.length];
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+            }
+            used[slot] = true;
+            keys[slot] = oldKeys[i];
+            postingCount[slot] = oldCount[i];
+            lastString[slot] = oldLast[i];
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
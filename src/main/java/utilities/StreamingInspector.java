@@ -0,0 +1,346 @@
+package utilities;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+/**
+ * StreamingInspector - Single-pass StAX engine for AndroidElementInspector
+ *
+ * Instead of building a full DOM and walking it again, the page source is
+ * tokenized once and every START_ELEMENT is scored on the fly. Only a light
+ * skeleton is kept in memory:
+ * 1. The ancestor path of the element currently being read
+ * 2. The best candidate so far (with all of its attributes)
+ * 3. Closed subtrees, trimmed to the depth the XML block can print
+ * 4. Class, text, resource-id and content-desc of the runner-up candidates
+ *
+ * When the document ends, the skeleton is copied into a tiny HierarchySnapshot
+ * so the regular findParentContainer / buildXmlBlock output can be reused.
+ *
+ * Until an element scores a contains match, a second ranking that includes
+ * the fallback (fuzzy) tier of the ScoringStrategy is kept as well; it is
+ * the result when no element ever does, exactly like the snapshot engines.
+ * The locator's other predicates (LocatorPredicates) are scored in the same
+ * pass, from the attributes of the current START_ELEMENT.
+ */
+final class StreamingInspector {
+
+    // buildXmlBlock prints 4 levels below the container and "..." for the 5th
+    private static final int BLOCK_DEPTH = 5;
+
+    private LightNode root;
+    private LightNode current;
+    private int elementCount;
+
+    // Reused explicit stack of trim()
+    private LightNode[] trimNodes = new LightNode[64];
+    private int[] trimBudgets = new int[64];
+
+    private final Ranking plain;
+    // Dropped (null) as soon as an element scores above the fuzzy tier
+    private Ranking fuzzy;
+
+    private StreamingInspector(int limit, ScoringStrategy.Scorer scorer) {
+        this.plain = new Ranking(limit);
+        this.fuzzy = scorer.usesFallback(0) ? new Ranking(limit) : null;
+    }
+
+    /**
+     * Scores the page source in a single pass and returns up to limit matches,
+     * best first, or an empty list when no element scored above zero.
+     */
+    static List<AndroidElementInspector.ElementMatch> findTopMatches(XmlInput.Source source,
+                                                                     ScoringStrategy.Scorer scorer,
+                                                                     LocatorPredicates predicates,
+                                                                     int limit) throws XMLStreamException {
+        StreamingInspector engine = new StreamingInspector(limit, scorer);
+        XMLStreamReader reader = source.openStax();
+        try {
+            engine.read(reader, scorer, predicates);
+        } finally {
+            reader.close();
+        }
+        Ranking result = engine.fuzzy != null ? engine.fuzzy : engine.plain;
+        if (result.best == null) return Collections.emptyList();
+
+        List<AndroidElementInspector.ElementMatch> matches = new ArrayList<>();
+        HierarchySnapshot.Builder builder = new HierarchySnapshot.Builder();
+        int bestNode = engine.copyTo(builder, engine.root, result.best);
+        matches.add(new AndroidElementInspector.ElementMatch(builder.build(), bestNode, result.bestScore));
+
+        // The heap's first entry is the best node itself (same tie-break: first in document order)
+        long[] ranked = result.top.bestFirst();
+        for (int i = 1; i < ranked.length; i++) {
+            LightNode summary = result.summaries.get(TopCandidates.node(ranked[i]));
+            matches.add(new AndroidElementInspector.ElementMatch(summary.toSnapshot(), 0,
+                    TopCandidates.score(ranked[i])));
+        }
+        return matches;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SINGLE PASS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private void read(XMLStreamReader reader, ScoringStrategy.Scorer scorer, LocatorPredicates predicates)
+            throws XMLStreamException {
+        UnaryOperator<String> attributes = name -> reader.getAttributeValue(null, name);
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                LightNode node = new LightNode(reader.getLocalName(), current);
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    node.setAttr(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+                if (current == null) {
+                    root = node;
+                } else {
+                    current.addChild(node);
+                }
+
+                int score = scorer.score(node.tag, node.text, node.resourceId, node.contentDesc);
+                int bonus = predicates.isEmpty() ? 0 : predicates.score(node.tag, attributes);
+                int number = elementCount++;
+                offer(plain, number, node, score + bonus, reader);
+                if (fuzzy != null) {
+                    if (scorer.usesFallback(score)) {
+                        offer(fuzzy, number, node, score + bonus + scorer.fallbackScore(node.tag, node.text,
+                                node.resourceId, node.contentDesc), reader);
+                    } else {
+                        dropFuzzy();
+                    }
+                }
+                current = node;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                trim(current, BLOCK_DEPTH - 1);
+                current = current.parent;
+            }
+        }
+    }
+
+    private void offer(Ranking ranking, int number, LightNode node, int score, XMLStreamReader reader) {
+        if (score > 0) {
+            int dropped = ranking.top.offer(number, score);
+            if (dropped != number) ranking.summaries.put(number, node.summary());
+            if (dropped != HierarchySnapshot.NONE) ranking.summaries.remove(dropped);
+        }
+        if (score > ranking.bestScore) {
+            ranking.bestScore = score;
+            if (node.attributes == null) {
+                node.attributes = new LinkedHashMap<>();
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    node.attributes.put(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                }
+            }
+            setBest(ranking, node);
+        }
+    }
+
+    private void setBest(Ranking ranking, LightNode node) {
+        LightNode previous = ranking.best;
+        unpin(previous);
+        ranking.best = node;
+        if (previous != null && previous != node) releaseAttributes(previous);
+        for (LightNode n = node; n != null; n = n.parent) {
+            n.pins++;
+        }
+
+        ranking.blockRoot = node;
+        for (LightNode p = node.parent; p != null; p = p.parent) {
+            if (AndroidElementInspector.isContainerTag(p.tag)) {
+                ranking.blockRoot = p;
+                break;
+            }
+        }
+    }
+
+    private void dropFuzzy() {
+        LightNode best = fuzzy.best;
+        unpin(best);
+        fuzzy = null;
+        if (best != null) releaseAttributes(best);
+    }
+
+    private static void unpin(LightNode node) {
+        for (LightNode n = node; n != null; n = n.parent) {
+            n.pins--;
+            n.trimmed = Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Forgets the full attributes of a former best candidate, unless it is still the other ranking's best
+     */
+    private void releaseAttributes(LightNode node) {
+        if (node != plain.best && (fuzzy == null || node != fuzzy.best)) {
+            node.attributes = null;
+        }
+    }
+
+    private boolean isBlockRoot(LightNode node) {
+        return node == plain.blockRoot || (fuzzy != null && node == fuzzy.blockRoot);
+    }
+
+    /**
+     * Drops descendants deeper than budget levels below node. The path to a
+     * best candidate is never dropped and its XML block keeps the full depth.
+     * Uses an explicit stack: a pinned path can be as deep as the page source,
+     * and subtrees already trimmed as far are not walked again.
+     */
+    private void trim(LightNode node, int budget) {
+        LightNode[] nodes = trimNodes;
+        int[] budgets = trimBudgets;
+        int size = 0;
+        nodes[size] = node;
+        budgets[size++] = budget;
+
+        while (size > 0) {
+            LightNode next = nodes[--size];
+            int left = budgets[size];
+            nodes[size] = null;
+            if (isBlockRoot(next)) left = Math.max(left, BLOCK_DEPTH);
+            // Trimmed this far before and nothing below was unpinned since: nothing left to drop
+            if (left >= next.trimmed) continue;
+            next.trimmed = left;
+            if (next.children == null) continue;
+
+            Iterator<LightNode> it = next.children.iterator();
+            while (it.hasNext()) {
+                LightNode child = it.next();
+                if (child.pins > 0 || left > 0) {
+                    if (size == nodes.length) {
+                        nodes = trimNodes = Arrays.copyOf(nodes, size * 2);
+                        budgets = trimBudgets = Arrays.copyOf(budgets, size * 2);
+                    }
+                    nodes[size] = child;
+                    // Any budget below 1 drops every unpinned child, so 0 stands for all of them
+                    budgets[size++] = Math.max(left - 1, 0);
+                } else {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SKELETON -> SNAPSHOT
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * Appends the retained subtree of root to the builder, depth-first with an explicit stack
+     * @return snapshot id of the best candidate, or NONE if it is not in this subtree
+     */
+    private int copyTo(HierarchySnapshot.Builder builder, LightNode root, LightNode best) {
+        int bestId = HierarchySnapshot.NONE;
+        Deque<Iterator<LightNode>> open = new ArrayDeque<>();
+        LightNode node = root;
+        while (true) {
+            if (node != null) {
+                int id = builder.startElement(node.tag);
+                if (node == best) bestId = id;
+                copyAttributes(builder, node);
+                open.push(node.children != null ? node.children.iterator() : Collections.emptyIterator());
+            }
+            Iterator<LightNode> children = open.peek();
+            if (children.hasNext()) {
+                node = children.next();
+                continue;
+            }
+            builder.endElement();
+            open.pop();
+            if (open.isEmpty()) return bestId;
+            node = null;
+        }
+    }
+
+    private static void copyAttributes(HierarchySnapshot.Builder builder, LightNode node) {
+        if (node.attributes != null) {
+            for (Map.Entry<String, String> attr : node.attributes.entrySet()) {
+                builder.attribute(attr.getKey(), attr.getValue());
+            }
+        } else {
+            if (!node.text.isEmpty()) builder.attribute("text", node.text);
+            if (!node.resourceId.isEmpty()) builder.attribute("resource-id", node.resourceId);
+            if (!node.contentDesc.isEmpty()) builder.attribute("content-desc", node.contentDesc);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // RANKING - Best candidate and runner-ups under one scoring
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class Ranking {
+        LightNode best;
+        LightNode blockRoot;
+        int bestScore;
+
+        // Runner-ups by element number (document order); only the kept ones have a summary
+        final TopCandidates top;
+        final Map<Integer, LightNode> summaries = new HashMap<>();
+
+        Ranking(int limit) {
+            this.top = new TopCandidates(limit);
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LIGHT NODE - Only the attributes used by scoring and the XML block
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class LightNode {
+        final String tag;
+        final LightNode parent;
+        String text = "";
+        String resourceId = "";
+        String contentDesc = "";
+        Map<String, String> attributes;
+        List<LightNode> children;
+        // Number of rankings whose best candidate is this node or below it
+        int pins;
+        // Smallest budget this subtree was trimmed with since it was last unpinned
+        int trimmed = Integer.MAX_VALUE;
+
+        LightNode(String tag, LightNode parent) {
+            this.tag = tag;
+            this.parent = parent;
+        }
+
+        void setAttr(String name, String value) {
+            switch (name) {
+                case "text": text = value; break;
+                case "resource-id": resourceId = value; break;
+                case "content-desc": contentDesc = value; break;
+                default: break;
+            }
+        }
+
+        void addChild(LightNode child) {
+            if (children == null) children = new ArrayList<>();
+            children.add(child);
+        }
+
+        /**
+         * Detached copy with only the scoring attributes, so a kept summary pins no subtree
+         */
+        LightNode summary() {
+            LightNode copy = new LightNode(tag, null);
+            copy.text = text;
+            copy.resourceId = resourceId;
+            copy.contentDesc = contentDesc;
+            return copy;
+        }
+
+        HierarchySnapshot toSnapshot() {
+            HierarchySnapshot.Builder builder = new HierarchySnapshot.Builder();
+            builder.startElement(tag);
+            if (!text.isEmpty()) builder.attribute("text", text);
+            if (!resourceId.isEmpty()) builder.attribute("resource-id", resourceId);
+            if (!contentDesc.isEmpty()) builder.attribute("content-desc", contentDesc);
+            builder.endElement();
+            return builder.build();
+        }
+    }
+}
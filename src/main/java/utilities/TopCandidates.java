@@ -0,0 +1,127 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * TopCandidates - Bounded min-heap of the K best (node, score) pairs
+ *
+ * Each candidate is packed into one long: the score in the high 32 bits and
+ * the inverted node id in the low 32 bits, so a larger key is a better
+ * candidate and equal scores prefer the node that comes first in document
+ * order (the same winner the old stable sort picked). The heap root is the
+ * weakest candidate kept, so a new one costs a single comparison unless it
+ * beats that.
+ */
+final class TopCandidates {
+
+    private final long[] heap;
+    private int size;
+
+    TopCandidates(int capacity) {
+        heap = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Offers a candidate
+     * @return the node that is not kept after this call (the offered one or the
+     *         one it pushed out), or NONE when nothing was dropped
+     */
+    int offer(int node, int score) {
+        return offer(pack(node, score));
+    }
+
+    /**
+     * Adds the candidates kept by another heap (e.g. of a parallel task)
+     */
+    void merge(TopCandidates other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.heap[i]);
+        }
+    }
+
+    private int offer(long key) {
+        int node = node(key);
+        if (size < heap.length) {
+            heap[size] = key;
+            siftUp(size++);
+            return HierarchySnapshot.NONE;
+        }
+        if (key <= heap[0]) return node;
+        int dropped = node(heap[0]);
+        heap[0] = key;
+        siftDown(0);
+        return dropped;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Highest score kept, 0 when empty
+     */
+    int bestScore() {
+        int best = 0;
+        for (int i = 0; i < size; i++) {
+            best = Math.max(best, score(heap[i]));
+        }
+        return best;
+    }
+
+    /**
+     * Score a new candidate has to beat once the heap is full, 0 before that
+     */
+    int threshold() {
+        return size < heap.length ? 0 : score(heap[0]);
+    }
+
+    /**
+     * Kept candidates as packed keys, best first
+     */
+    long[] bestFirst() {
+        long[] keys = Arrays.copyOf(heap, size);
+        Arrays.sort(keys);
+        for (int i = 0, j = keys.length - 1; i < j; i++, j--) {
+            long tmp = keys[i];
+            keys[i] = keys[j];
+            keys[j] = tmp;
+        }
+        return keys;
+    }
+
+    static long pack(int node, int score) {
+        return ((long) score << 32) | (~node & 0xFFFFFFFFL);
+    }
+
+    static int node(long key) {
+        return ~(int) key;
+    }
+
+    static int score(long key) {
+        return (int) (key >>> 32);
+    }
+
+    private void siftUp(int i) {
+        long key = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heap[parent] <= key) break;
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = key;
+    }
+
+    private void siftDown(int i) {
+        long key = heap[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+            if (key <= heap[child]) break;
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = key;
+    }
+}
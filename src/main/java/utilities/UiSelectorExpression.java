@@ -0,0 +1,264 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * UiSelectorExpression - Typed syntax tree of an AppiumBy.androidUIAutomator locator
+ *
+ * Parses the Java-like chain UiAutomator2 accepts, e.g.
+ *   new UiSelector().className("android.widget.Button").textContains("OK")
+ *   new UiScrollable(new UiSelector().scrollable(true)).scrollIntoView(new UiSelector().text("Views"))
+ * into the constructed type, its constructor arguments and the method calls
+ * in order. Arguments are typed: String, Integer, Boolean or a nested
+ * UiSelectorExpression; Foo.class arguments become the class name String.
+ * A trailing ';' is accepted; anything else is rejected.
+ *
+ * The tree only describes the chain; Locator reads the search term and the
+ * conditions from the selector it targets (target()).
+ */
+final class UiSelectorExpression {
+
+    static final String UI_SELECTOR = "UiSelector";
+    static final String UI_SCROLLABLE = "UiScrollable";
+
+    static final class Call {
+        final String method;
+        final List<Object> arguments;
+
+        Call(String method, List<Object> arguments) {
+            this.method = method;
+            this.arguments = arguments;
+        }
+
+        /**
+         * The only argument when it is a String, otherwise null
+         */
+        String stringArgument() {
+            return arguments.size() == 1 && arguments.get(0) instanceof String ? (String) arguments.get(0) : null;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(".").append(method).append('(');
+            appendArguments(sb, arguments);
+            return sb.append(')').toString();
+        }
+    }
+
+    // UI_SELECTOR or UI_SCROLLABLE
+    final String type;
+    final List<Object> constructorArguments;
+    final List<Call> calls;
+
+    private UiSelectorExpression(String type, List<Object> constructorArguments, List<Call> calls) {
+        this.type = type;
+        this.constructorArguments = constructorArguments;
+        this.calls = calls;
+    }
+
+    /**
+     * @throws IllegalArgumentException when the chain cannot be parsed
+     */
+    static UiSelectorExpression parse(String source) {
+        Parser parser = new Parser(source);
+        UiSelectorExpression expression = parser.expression();
+        parser.skipWhitespace();
+        if (parser.peek() == ';') parser.position++;
+        parser.skipWhitespace();
+        if (parser.position < source.length()) throw parser.error("unexpected '" + parser.peek() + "'");
+        return expression;
+    }
+
+    boolean isScrollable() {
+        return type.equals(UI_SCROLLABLE);
+    }
+
+    /**
+     * The selector whose elements the locator finds: itself for a UiSelector;
+     * for a UiScrollable the UiSelector passed to its last call taking one
+     * (e.g. scrollIntoView), or the scrollable container when there is none
+     */
+    UiSelectorExpression target() {
+        if (!isScrollable()) return this;
+        for (int i = calls.size() - 1; i >= 0; i--) {
+            for (Object argument : calls.get(i).arguments) {
+                if (argument instanceof UiSelectorExpression) return ((UiSelectorExpression) argument).target();
+            }
+        }
+        for (Object argument : constructorArguments) {
+            if (argument instanceof UiSelectorExpression) return ((UiSelectorExpression) argument).target();
+        }
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("new ").append(type).append('(');
+        appendArguments(sb, constructorArguments);
+        sb.append(')');
+        for (Call call : calls) {
+            sb.append(call);
+        }
+        return sb.toString();
+    }
+
+    private static void appendArguments(StringBuilder sb, List<Object> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            if (i > 0) sb.append(", ");
+            Object argument = arguments.get(i);
+            if (argument instanceof String) {
+                sb.append('"').append(((String) argument).replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+            } else {
+                sb.append(argument);
+            }
+        }
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // PARSER
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class Parser {
+        private final String source;
+        private int position;
+
+        Parser(String source) {
+            this.source = source;
+        }
+
+        UiSelectorExpression expression() {
+            skipWhitespace();
+            // "new" is optional, like in UiAutomator2's own parser
+            int start = position;
+            if (identifier().equals("new")) {
+                skipWhitespace();
+            } else {
+                position = start;
+            }
+            String type = identifier();
+            if (!type.equals(UI_SELECTOR) && !type.equals(UI_SCROLLABLE)) {
+                throw error("expected " + UI_SELECTOR + " or " + UI_SCROLLABLE + ", found '" + type + "'");
+            }
+            List<Object> constructorArguments = arguments();
+            List<Call> calls = new ArrayList<>();
+            while (true) {
+                skipWhitespace();
+                if (peek() != '.') break;
+                position++;
+                skipWhitespace();
+                String method = identifier();
+                calls.add(new Call(method, arguments()));
+            }
+            return new UiSelectorExpression(type, constructorArguments, calls);
+        }
+
+        private List<Object> arguments() {
+            skipWhitespace();
+            expect('(');
+            List<Object> arguments = new ArrayList<>();
+            skipWhitespace();
+            if (peek() == ')') {
+                position++;
+                return arguments;
+            }
+            while (true) {
+                arguments.add(argument());
+                skipWhitespace();
+                if (peek() == ',') {
+                    position++;
+                    continue;
+                }
+                expect(')');
+                return arguments;
+            }
+        }
+
+        private Object argument() {
+            skipWhitespace();
+            char c = peek();
+            if (c == '"') return string();
+            if (c == '-' || Character.isDigit(c)) return integer();
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = position;
+                String word = identifier();
+                if (word.equals("true") || word.equals("false")) return Boolean.valueOf(word);
+                if (word.equals("new") || word.equals(UI_SELECTOR) || word.equals(UI_SCROLLABLE)) {
+                    position = start;
+                    return expression();
+                }
+                // android.widget.Button.class
+                StringBuilder name = new StringBuilder(word);
+                while (peek() == '.') {
+                    position++;
+                    String part = identifier();
+                    if (part.equals("class")) return name.toString();
+                    name.append('.').append(part);
+                }
+            }
+            throw error("expected an argument");
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (position < source.length()) {
+                char c = source.charAt(position++);
+                if (c == '"') return sb.toString();
+                if (c == '\\' && position < source.length()) {
+                    char escaped = source.charAt(position++);
+                    switch (escaped) {
+                        case 'n': sb.append('\n'); break;
+                        case 't': sb.append('\t'); break;
+                        default: sb.append(escaped); break;
+                    }
+                } else {
+                    sb.append(c);
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        private Integer integer() {
+            int start = position;
+            if (peek() == '-') position++;
+            while (Character.isDigit(peek())) {
+                position++;
+            }
+            try {
+                return Integer.valueOf(source.substring(start, position));
+            } catch (NumberFormatException e) {
+                throw error("expected a number");
+            }
+        }
+
+        private String identifier() {
+            int start = position;
+            while (position < source.length() && Character.isJavaIdentifierPart(source.charAt(position))) {
+                position++;
+            }
+            if (start == position) throw error("expected a name");
+            return source.substring(start, position);
+        }
+
+        private void expect(char c) {
+            if (peek() != c) throw error("expected '" + c + "'");
+            position++;
+        }
+
+        char peek() {
+            return position < source.length() ? source.charAt(position) : 0;
+        }
+
+        void skipWhitespace() {
+            while (position < source.length() && Character.isWhitespace(source.charAt(position))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid UiSelector at offset " + position + " (" + message + "): "
+                    + source);
+        }
+    }
+}
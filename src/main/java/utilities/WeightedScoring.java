@@ -0,0 +1,385 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * WeightedScoring - The inspector's scoring as a table of weighted components
+ *
+ * Every component (exact, suffix, contains, prefix and fuzzy matches per
+ * attribute) has a weight; 0 disables it. The enabled components are
+ * compiled once into flat arrays, so the per-element loop only visits those:
+ * a disabled component costs nothing while scoring.
+ *
+ * The fuzzy components form a second tier, scored only when no element got
+ * an exact, suffix or contains match (best score below the smallest of those
+ * weights).
+ *
+ * Usage:
+ *   WeightedScoring.DEFAULT
+ *           .withWeight(WeightedScoring.Component.CONTENT_DESC_EXACT, 1200)
+ *           .without(WeightedScoring.Component.RESOURCE_ID_FUZZY);
+ */
+public final class WeightedScoring implements ScoringStrategy {
+
+    /**
+     * Score components with their default weights
+     */
+    public enum Component {
+        TEXT_EXACT(1000),
+        CONTENT_DESC_EXACT(1000),
+        RESOURCE_ID_EXACT(1000),
+        RESOURCE_ID_ENDS_WITH_ID(900),      // ends with ":id/" + term
+        RESOURCE_ID_ENDS_WITH_PATH(800),    // ends with "/" + term
+        TEXT_CONTAINS(500),
+        CONTENT_DESC_CONTAINS(500),
+        RESOURCE_ID_CONTAINS(400),
+        CLASS_CONTAINS(300),
+        TEXT_PREFIX(5),                     // per leading character in common
+        CONTENT_DESC_PREFIX(5),
+        RESOURCE_ID_PREFIX(3),
+        TEXT_FUZZY(400),                    // scaled down by the edit distance
+        CONTENT_DESC_FUZZY(400),
+        RESOURCE_ID_FUZZY(300);
+
+        private final int defaultWeight;
+
+        Component(int defaultWeight) {
+            this.defaultWeight = defaultWeight;
+        }
+
+        public int getDefaultWeight() {
+            return defaultWeight;
+        }
+
+        boolean isPrefix() {
+            return this == TEXT_PREFIX || this == CONTENT_DESC_PREFIX || this == RESOURCE_ID_PREFIX;
+        }
+
+        boolean isFuzzy() {
+            return this == TEXT_FUZZY || this == CONTENT_DESC_FUZZY || this == RESOURCE_ID_FUZZY;
+        }
+    }
+
+    /**
+     * All components with their default weights (the inspector's default strategy)
+     */
+    public static final WeightedScoring DEFAULT = new WeightedScoring(defaultWeights());
+
+    // Weight per Component ordinal
+    private final int[] weights;
+
+    // Compiled: the enabled components and their weights, in Component order
+    private final Component[] matchComponents;
+    private final int[] matchWeights;
+    private final Component[] fuzzyComponents;
+    private final int[] fuzzyWeights;
+    private final boolean scoresPrefix;
+    // Best scores below this mean no exact, suffix or contains match anywhere
+    private final int fuzzyBelowScore;
+    // A text or content-desc contains match (CaptureProfile escalation)
+    private final int escalationScore;
+
+    private WeightedScoring(int[] weights) {
+        this.weights = weights;
+        List<Component> match = new ArrayList<>();
+        List<Component> fuzzy = new ArrayList<>();
+        int lowestMatch = Integer.MAX_VALUE;
+        boolean prefix = false;
+        for (Component component : Component.values()) {
+            if (weights[component.ordinal()] == 0) continue;
+            if (component.isFuzzy()) {
+                fuzzy.add(component);
+                continue;
+            }
+            match.add(component);
+            if (component.isPrefix()) {
+                prefix = true;
+            } else {
+                lowestMatch = Math.min(lowestMatch, weights[component.ordinal()]);
+            }
+        }
+        this.matchComponents = match.toArray(new Component[0]);
+        this.matchWeights = weightsOf(matchComponents);
+        this.fuzzyComponents = fuzzy.toArray(new Component[0]);
+        this.fuzzyWeights = weightsOf(fuzzyComponents);
+        this.scoresPrefix = prefix;
+        this.fuzzyBelowScore = lowestMatch;
+        int contains = Integer.MAX_VALUE;
+        for (Component component : new Component[]{Component.TEXT_CONTAINS, Component.CONTENT_DESC_CONTAINS}) {
+            if (weights[component.ordinal()] > 0) contains = Math.min(contains, weights[component.ordinal()]);
+        }
+        this.escalationScore = contains != Integer.MAX_VALUE ? contains : lowestMatch;
+    }
+
+    private static int[] defaultWeights() {
+        int[] weights = new int[Component.values().length];
+        for (Component component : Component.values()) {
+            weights[component.ordinal()] = component.defaultWeight;
+        }
+        return weights;
+    }
+
+    private int[] weightsOf(Component[] components) {
+        int[] result = new int[components.length];
+        for (int i = 0; i < components.length; i++) {
+            result[i] = weights[components[i].ordinal()];
+        }
+        return result;
+    }
+
+    /**
+     * Copy of this strategy with another weight for one component (0 disables it)
+     */
+    public WeightedScoring withWeight(Component component, int weight) {
+        if (weight < 0) throw new IllegalArgumentException("Negative weight for " + component + ": " + weight);
+        int[] copy = Arrays.copyOf(weights, weights.length);
+        copy[component.ordinal()] = weight;
+        return new WeightedScoring(copy);
+    }
+
+    /**
+     * Copy of this strategy without the given component
+     */
+    public WeightedScoring without(Component component) {
+        return withWeight(component, 0);
+    }
+
+    public int getWeight(Component component) {
+        return weights[component.ordinal()];
+    }
+
+    @Override
+    public TermScorer forSearchTerm(String searchTerm) {
+        return new TermScorer(SearchTerm.of(searchTerm));
+    }
+
+    /**
+     * The smaller TEXT_CONTAINS / CONTENT_DESC_CONTAINS weight (500 by default),
+     * or the lowest exact, suffix or contains weight when both are disabled
+     */
+    @Override
+    public int escalationScore() {
+        return escalationScore;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("WeightedScoring{");
+        for (Component component : Component.values()) {
+            if (weights[component.ordinal()] == 0) continue;
+            if (sb.charAt(sb.length() - 1) != '{') sb.append(", ");
+            sb.append(component).append('=').append(weights[component.ordinal()]);
+        }
+        return sb.append('}').toString();
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // TERM SCORER - The compiled table applied to one search term
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    final class TermScorer implements Scorer {
+
+        final SearchTerm term;
+        // BlockBounds.bit() of every folded term character
+        private final long[] termBits;
+
+        private TermScorer(SearchTerm term) {
+            this.term = term;
+            this.termBits = new long[term.folded.length()];
+            for (int i = 0; i < termBits.length; i++) {
+                termBits[i] = BlockBounds.bit(term.folded.charAt(i));
+            }
+        }
+
+        /**
+         * Whether a common first character alone scores (SnapshotIndex candidates)
+         */
+        boolean scoresPrefix() {
+            return scoresPrefix;
+        }
+
+        /**
+         * All comparisons are case-insensitive and locale-independent (CaseFolding) and allocate nothing
+         */
+        @Override
+        public int score(String className, String text, String resourceId, String contentDesc) {
+            if (term.isEmpty()) return 0;
+
+            String search = term.folded;
+            if (text == null) text = "";
+            if (resourceId == null) resourceId = "";
+            if (contentDesc == null) contentDesc = "";
+            if (className == null) className = "";
+
+            int score = 0;
+            for (int i = 0; i < matchComponents.length; i++) {
+                switch (matchComponents[i]) {
+                    case TEXT_EXACT:
+                        if (CaseFolding.equalsIgnoreCase(text, term.raw)) score += matchWeights[i];
+                        break;
+                    case CONTENT_DESC_EXACT:
+                        if (CaseFolding.equalsIgnoreCase(contentDesc, term.raw)) score += matchWeights[i];
+                        break;
+                    case RESOURCE_ID_EXACT:
+                        if (CaseFolding.equalsIgnoreCase(resourceId, term.raw)) score += matchWeights[i];
+                        break;
+                    case RESOURCE_ID_ENDS_WITH_ID:
+                        if (CaseFolding.endsWith(resourceId, term.idSuffix)) score += matchWeights[i];
+                        break;
+                    case RESOURCE_ID_ENDS_WITH_PATH:
+                        if (CaseFolding.endsWith(resourceId, term.pathSuffix)) score += matchWeights[i];
+                        break;
+                    case TEXT_CONTAINS:
+                        if (CaseFolding.contains(text, search)) score += matchWeights[i];
+                        break;
+                    case CONTENT_DESC_CONTAINS:
+                        if (CaseFolding.contains(contentDesc, search)) score += matchWeights[i];
+                        break;
+                    case RESOURCE_ID_CONTAINS:
+                        if (CaseFolding.contains(resourceId, search)) score += matchWeights[i];
+                        break;
+                    case CLASS_CONTAINS:
+                        if (CaseFolding.contains(className, search)) score += matchWeights[i];
+                        break;
+                    case TEXT_PREFIX:
+                        score += CaseFolding.commonPrefix(text, search) * matchWeights[i];
+                        break;
+                    case CONTENT_DESC_PREFIX:
+                        score += CaseFolding.commonPrefix(contentDesc, search) * matchWeights[i];
+                        break;
+                    case RESOURCE_ID_PREFIX:
+                        score += CaseFolding.commonPrefix(resourceId, search) * matchWeights[i];
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return score;
+        }
+
+        /**
+         * Highest score() any node of the block can reach (BlockBounds): a
+         * component counts only when some string of the block can contain the
+         * term, a prefix only as far as the block's characters allow
+         */
+        int upperBound(BlockBounds bounds, int block) {
+            if (term.isEmpty()) return 0;
+            boolean classContains = canContain(bounds.classes(), block);
+            boolean textContains = canContain(bounds.texts(), block);
+            boolean idContains = canContain(bounds.resourceIds(), block);
+            boolean descContains = canContain(bounds.contentDescs(), block);
+            long rawLength = BlockBounds.lengthBit(term.raw.length());
+
+            int bound = 0;
+            // An exact resource-id never ends with "/" + term as well (the term is trimmed)
+            int idExact = 0;
+            int idSuffix = 0;
+            for (int i = 0; i < matchComponents.length; i++) {
+                int weight = matchWeights[i];
+                switch (matchComponents[i]) {
+                    case TEXT_EXACT:
+                        if (textContains && (bounds.texts().lengths(block) & rawLength) != 0) bound += weight;
+                        break;
+                    case TEXT_CONTAINS:
+                        if (textContains) bound += weight;
+                        break;
+                    case CONTENT_DESC_EXACT:
+                        if (descContains && (bounds.contentDescs().lengths(block) & rawLength) != 0) bound += weight;
+                        break;
+                    case CONTENT_DESC_CONTAINS:
+                        if (descContains) bound += weight;
+                        break;
+                    case RESOURCE_ID_EXACT:
+                        if (idContains && (bounds.resourceIds().lengths(block) & rawLength) != 0) idExact = weight;
+                        break;
+                    case RESOURCE_ID_ENDS_WITH_ID:
+                    case RESOURCE_ID_ENDS_WITH_PATH:
+                        if (idContains) idSuffix += weight;
+                        break;
+                    case RESOURCE_ID_CONTAINS:
+                        if (idContains) bound += weight;
+                        break;
+                    case CLASS_CONTAINS:
+                        if (classContains) bound += weight;
+                        break;
+                    case TEXT_PREFIX:
+                        bound += prefixReach(bounds.texts(), block) * weight;
+                        break;
+                    case CONTENT_DESC_PREFIX:
+                        bound += prefixReach(bounds.contentDescs(), block) * weight;
+                        break;
+                    case RESOURCE_ID_PREFIX:
+                        bound += prefixReach(bounds.resourceIds(), block) * weight;
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return bound + Math.max(idExact, idSuffix);
+        }
+
+        private boolean canContain(BlockBounds.Column column, int block) {
+            return column.maxLength(block) >= termBits.length
+                    && reach(column.characters(block)) == termBits.length;
+        }
+
+        /**
+         * Longest common prefix with the term any string of the block can have
+         */
+        private int prefixReach(BlockBounds.Column column, int block) {
+            if (termBits.length == 0 || (column.firstCharacters(block) & termBits[0]) == 0) return 0;
+            return Math.min(column.maxLength(block), reach(column.characters(block)));
+        }
+
+        /**
+         * Length of the term's longest prefix whose characters are all in the signature
+         */
+        private int reach(long signature) {
+            for (int i = 0; i < termBits.length; i++) {
+                if ((signature & termBits[i]) == 0) return i;
+            }
+            return termBits.length;
+        }
+
+        @Override
+        public boolean usesFallback(int bestScore) {
+            return term.fuzzy != null && fuzzyComponents.length > 0 && bestScore < fuzzyBelowScore;
+        }
+
+        /**
+         * Points fall with the edit distance to the closest substring of each
+         * attribute; more than one edit per three characters scores nothing
+         */
+        @Override
+        public int fallbackScore(String className, String text, String resourceId, String contentDesc) {
+            if (term.fuzzy == null) return 0;
+            int score = 0;
+            for (int i = 0; i < fuzzyComponents.length; i++) {
+                switch (fuzzyComponents[i]) {
+                    case TEXT_FUZZY:
+                        score += fuzzyPoints(text, fuzzyWeights[i]);
+                        break;
+                    case CONTENT_DESC_FUZZY:
+                        score += fuzzyPoints(contentDesc, fuzzyWeights[i]);
+                        break;
+                    case RESOURCE_ID_FUZZY:
+                        score += fuzzyPoints(resourceId, fuzzyWeights[i]);
+                        break;
+                    default:
+                        break;
+                }
+            }
+            return score;
+        }
+
+        private int fuzzyPoints(String value, int weight) {
+            if (value == null || value.isEmpty()) return 0;
+            int distance = term.fuzzy.distance(value, term.maxEdits);
+            if (distance > term.maxEdits) return 0;
+            int length = term.fuzzy.length();
+            return weight * (length - distance) / length;
+        }
+    }
+}
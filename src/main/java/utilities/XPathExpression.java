@@ -0,0 +1,669 @@
+package utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * XPathExpression - Typed syntax tree of an XPath 1.0 locator
+ *
+ * A recursive descent parser for the XPath 1.0 grammar (location paths with
+ * every axis, abbreviations, predicates, union, boolean / comparison /
+ * arithmetic operators, literals, numbers and function calls); variables and
+ * namespaces are not supported, since UiAutomator2 locators never use them.
+ *
+ * The tree only describes the expression. Locator reads the search term and
+ * the conditions of the last step from it.
+ *
+ * Example: //android.widget.Button[@text='OK' and @enabled='true']
+ *   Path(absolute)
+ *     Step(DESCENDANT_OR_SELF, node())
+ *     Step(CHILD, android.widget.Button)
+ *       Binary(AND, Binary(EQUALS, @text, 'OK'), Binary(EQUALS, @enabled, 'true'))
+ */
+final class XPathExpression {
+
+    enum Axis {
+        CHILD("child"),
+        DESCENDANT("descendant"),
+        DESCENDANT_OR_SELF("descendant-or-self"),
+        SELF("self"),
+        PARENT("parent"),
+        ANCESTOR("ancestor"),
+        ANCESTOR_OR_SELF("ancestor-or-self"),
+        FOLLOWING_SIBLING("following-sibling"),
+        PRECEDING_SIBLING("preceding-sibling"),
+        FOLLOWING("following"),
+        PRECEDING("preceding"),
+        ATTRIBUTE("attribute");
+
+        final String xpathName;
+
+        Axis(String xpathName) {
+            this.xpathName = xpathName;
+        }
+
+        static Axis named(String name) {
+            for (Axis axis : values()) {
+                if (axis.xpathName.equals(name)) return axis;
+            }
+            return null;
+        }
+    }
+
+    enum Operator {
+        OR("or"), AND("and"),
+        EQUALS("="), NOT_EQUALS("!="),
+        LESS("<"), LESS_OR_EQUAL("<="), GREATER(">"), GREATER_OR_EQUAL(">="),
+        PLUS("+"), MINUS("-"), MULTIPLY("*"), DIV("div"), MOD("mod"),
+        UNION("|");
+
+        final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+    }
+
+    /**
+     * NAME: an element (or attribute) name; ANY: *; NODE: node(); TEXT: text()
+     */
+    enum NodeTest { NAME, ANY, NODE, TEXT }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // SYNTAX TREE
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    abstract static class Expr {
+    }
+
+    static final class Binary extends Expr {
+        final Operator operator;
+        final Expr left;
+        final Expr right;
+
+        Binary(Operator operator, Expr left, Expr right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        public String toString() {
+            return "(" + left + " " + operator.symbol + " " + right + ")";
+        }
+    }
+
+    static final class Negation extends Expr {
+        final Expr operand;
+
+        Negation(Expr operand) {
+            this.operand = operand;
+        }
+
+        @Override
+        public String toString() {
+            return "-" + operand;
+        }
+    }
+
+    static final class Literal extends Expr {
+        final String value;
+
+        Literal(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value.indexOf('\'') < 0 ? "'" + value + "'" : "\"" + value + "\"";
+        }
+    }
+
+    static final class NumberLiteral extends Expr {
+        final double value;
+
+        NumberLiteral(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+        }
+    }
+
+    static final class FunctionCall extends Expr {
+        final String name;
+        final List<Expr> arguments;
+
+        FunctionCall(String name, List<Expr> arguments) {
+            this.name = name;
+            this.arguments = arguments;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(name).append('(');
+            for (int i = 0; i < arguments.size(); i++) {
+                if (i > 0) sb.append(", ");
+                sb.append(arguments.get(i));
+            }
+            return sb.append(')').toString();
+        }
+    }
+
+    /**
+     * A primary expression filtered by predicates, e.g. (//Button)[1]
+     */
+    static final class Filter extends Expr {
+        final Expr primary;
+        final List<Expr> predicates;
+
+        Filter(Expr primary, List<Expr> predicates) {
+            this.primary = primary;
+            this.predicates = predicates;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("(").append(primary).append(')');
+            for (Expr predicate : predicates) {
+                sb.append('[').append(predicate).append(']');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Location path: steps from the root (absolute), the context node, or the result of start
+     */
+    static final class Path extends Expr {
+        // Filter expression the steps start from, or null
+        final Expr start;
+        final boolean absolute;
+        final List<Step> steps;
+
+        Path(Expr start, boolean absolute, List<Step> steps) {
+            this.start = start;
+            this.absolute = absolute;
+            this.steps = steps;
+        }
+
+        /**
+         * The last step, or null for "/" alone
+         */
+        Step lastStep() {
+            return steps.isEmpty() ? null : steps.get(steps.size() - 1);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            if (start != null) sb.append(start);
+            for (int i = 0; i < steps.size(); i++) {
+                if (i > 0 || absolute || start != null) sb.append('/');
+                sb.append(steps.get(i));
+            }
+            return sb.length() == 0 ? "/" : sb.toString();
+        }
+    }
+
+    static final class Step {
+        final Axis axis;
+        final NodeTest test;
+        // Element or attribute name for NodeTest.NAME, otherwise null
+        final String name;
+        final List<Expr> predicates;
+
+        Step(Axis axis, NodeTest test, String name, List<Expr> predicates) {
+            this.axis = axis;
+            this.test = test;
+            this.name = name;
+            this.predicates = predicates;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(axis.xpathName).append("::");
+            switch (test) {
+                case NAME: sb.append(name); break;
+                case ANY: sb.append('*'); break;
+                case NODE: sb.append("node()"); break;
+                default: sb.append("text()"); break;
+            }
+            for (Expr predicate : predicates) {
+                sb.append('[').append(predicate).append(']');
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Name of the attribute when expr is just @name (attribute::name), otherwise null
+     */
+    static String attributeName(Expr expr) {
+        if (!(expr instanceof Path)) return null;
+        Path path = (Path) expr;
+        if (path.start != null || path.absolute || path.steps.size() != 1) return null;
+        Step step = path.steps.get(0);
+        return step.axis == Axis.ATTRIBUTE && step.test == NodeTest.NAME && step.predicates.isEmpty()
+                ? step.name : null;
+    }
+
+    final String source;
+    final Expr root;
+
+    private XPathExpression(String source, Expr root) {
+        this.source = source;
+        this.root = root;
+    }
+
+    /**
+     * @throws IllegalArgumentException when xpath is not a supported XPath 1.0 expression
+     */
+    static XPathExpression parse(String xpath) {
+        Parser parser = new Parser(xpath);
+        Expr root = parser.expr();
+        parser.expectEnd();
+        return new XPathExpression(xpath, root);
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // PARSER
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private enum TokenType {
+        SLASH, DOUBLE_SLASH, LEFT_BRACKET, RIGHT_BRACKET, LEFT_PAREN, RIGHT_PAREN,
+        AT, COMMA, PIPE, DOT, DOUBLE_DOT, AXIS_SEPARATOR,
+        EQUALS, NOT_EQUALS, LESS, LESS_OR_EQUAL, GREATER, GREATER_OR_EQUAL, PLUS, MINUS,
+        // '*' as a name test, '*' as multiplication, and / or / div / mod as operators
+        STAR, MULTIPLY, OPERATOR_NAME,
+        LITERAL, NUMBER, NAME, END
+    }
+
+    private static final class Token {
+        final TokenType type;
+        final String text;
+        final int offset;
+
+        Token(TokenType type, String text, int offset) {
+            this.type = type;
+            this.text = text;
+            this.offset = offset;
+        }
+    }
+
+    private static final class Parser {
+        private final String source;
+        private final List<Token> tokens;
+        private int position;
+
+        Parser(String source) {
+            this.source = source;
+            this.tokens = tokenize(source);
+        }
+
+        // ─── Expressions, lowest precedence first ───
+
+        Expr expr() {
+            Expr left = and();
+            while (acceptOperator("or")) {
+                left = new Binary(Operator.OR, left, and());
+            }
+            return left;
+        }
+
+        private Expr and() {
+            Expr left = equality();
+            while (acceptOperator("and")) {
+                left = new Binary(Operator.AND, left, equality());
+            }
+            return left;
+        }
+
+        private Expr equality() {
+            Expr left = relational();
+            while (true) {
+                if (accept(TokenType.EQUALS)) left = new Binary(Operator.EQUALS, left, relational());
+                else if (accept(TokenType.NOT_EQUALS)) left = new Binary(Operator.NOT_EQUALS, left, relational());
+                else return left;
+            }
+        }
+
+        private Expr relational() {
+            Expr left = additive();
+            while (true) {
+                if (accept(TokenType.LESS)) left = new Binary(Operator.LESS, left, additive());
+                else if (accept(TokenType.LESS_OR_EQUAL)) left = new Binary(Operator.LESS_OR_EQUAL, left, additive());
+                else if (accept(TokenType.GREATER)) left = new Binary(Operator.GREATER, left, additive());
+                else if (accept(TokenType.GREATER_OR_EQUAL)) left = new Binary(Operator.GREATER_OR_EQUAL, left, additive());
+                else return left;
+            }
+        }
+
+        private Expr additive() {
+            Expr left = multiplicative();
+            while (true) {
+                if (accept(TokenType.PLUS)) left = new Binary(Operator.PLUS, left, multiplicative());
+                else if (accept(TokenType.MINUS)) left = new Binary(Operator.MINUS, left, multiplicative());
+                else return left;
+            }
+        }
+
+        private Expr multiplicative() {
+            Expr left = unary();
+            while (true) {
+                if (accept(TokenType.MULTIPLY)) left = new Binary(Operator.MULTIPLY, left, unary());
+                else if (acceptOperator("div")) left = new Binary(Operator.DIV, left, unary());
+                else if (acceptOperator("mod")) left = new Binary(Operator.MOD, left, unary());
+                else return left;
+            }
+        }
+
+        private Expr unary() {
+            if (accept(TokenType.MINUS)) return new Negation(unary());
+            Expr left = path();
+            while (accept(TokenType.PIPE)) {
+                left = new Binary(Operator.UNION, left, path());
+            }
+            return left;
+        }
+
+        // ─── Paths ───
+
+        private Expr path() {
+            if (startsFilter()) {
+                Expr filter = filter();
+                if (peek().type != TokenType.SLASH && peek().type != TokenType.DOUBLE_SLASH) return filter;
+                List<Step> steps = new ArrayList<>();
+                relativePath(steps);
+                return new Path(filter, false, steps);
+            }
+
+            List<Step> steps = new ArrayList<>();
+            if (accept(TokenType.SLASH)) {
+                // "/" alone is the root; otherwise a relative path follows
+                if (startsStep()) relativePath(steps, true);
+                return new Path(null, true, steps);
+            }
+            if (peek().type == TokenType.DOUBLE_SLASH) {
+                relativePath(steps);
+                return new Path(null, true, steps);
+            }
+            relativePath(steps, true);
+            return new Path(null, false, steps);
+        }
+
+        /**
+         * Steps, each after a '/' or '//' (when first is false, the leading separator is required)
+         */
+        private void relativePath(List<Step> steps) {
+            relativePath(steps, false);
+        }
+
+        private void relativePath(List<Step> steps, boolean first) {
+            if (first) steps.add(step());
+            while (true) {
+                if (accept(TokenType.SLASH)) {
+                    steps.add(step());
+                } else if (accept(TokenType.DOUBLE_SLASH)) {
+                    steps.add(new Step(Axis.DESCENDANT_OR_SELF, NodeTest.NODE, null, List.of()));
+                    steps.add(step());
+                } else {
+                    return;
+                }
+            }
+        }
+
+        private Step step() {
+            if (accept(TokenType.DOT)) return new Step(Axis.SELF, NodeTest.NODE, null, List.of());
+            if (accept(TokenType.DOUBLE_DOT)) return new Step(Axis.PARENT, NodeTest.NODE, null, List.of());
+
+            Axis axis = Axis.CHILD;
+            if (accept(TokenType.AT)) {
+                axis = Axis.ATTRIBUTE;
+            } else if (peek().type == TokenType.NAME && peek(1).type == TokenType.AXIS_SEPARATOR) {
+                Token name = next();
+                axis = Axis.named(name.text);
+                if (axis == null) throw error(name, "unknown axis " + name.text);
+                next();
+            }
+
+            Token token = next();
+            NodeTest test;
+            String name = null;
+            if (token.type == TokenType.STAR) {
+                test = NodeTest.ANY;
+            } else if (token.type == TokenType.NAME && peek().type == TokenType.LEFT_PAREN
+                    && (token.text.equals("node") || token.text.equals("text"))) {
+                next();
+                expect(TokenType.RIGHT_PAREN);
+                test = token.text.equals("node") ? NodeTest.NODE : NodeTest.TEXT;
+            } else if (token.type == TokenType.NAME) {
+                test = NodeTest.NAME;
+                name = token.text;
+            } else {
+                throw error(token, "expected a step");
+            }
+            return new Step(axis, test, name, predicates());
+        }
+
+        private List<Expr> predicates() {
+            if (peek().type != TokenType.LEFT_BRACKET) return List.of();
+            List<Expr> predicates = new ArrayList<>();
+            while (accept(TokenType.LEFT_BRACKET)) {
+                predicates.add(expr());
+                expect(TokenType.RIGHT_BRACKET);
+            }
+            return predicates;
+        }
+
+        private boolean startsStep() {
+            switch (peek().type) {
+                case DOT: case DOUBLE_DOT: case AT: case STAR: case NAME: return true;
+                default: return false;
+            }
+        }
+
+        // ─── Filter expressions ───
+
+        private boolean startsFilter() {
+            Token token = peek();
+            switch (token.type) {
+                case LEFT_PAREN: case LITERAL: case NUMBER: return true;
+                case NAME:
+                    // name( is a function call unless it is a node type test
+                    return peek(1).type == TokenType.LEFT_PAREN
+                            && !token.text.equals("node") && !token.text.equals("text");
+                default: return false;
+            }
+        }
+
+        private Expr filter() {
+            Expr primary = primary();
+            List<Expr> predicates = predicates();
+            return predicates.isEmpty() ? primary : new Filter(primary, predicates);
+        }
+
+        private Expr primary() {
+            Token token = next();
+            switch (token.type) {
+                case LEFT_PAREN:
+                    Expr inner = expr();
+                    expect(TokenType.RIGHT_PAREN);
+                    return inner;
+                case LITERAL:
+                    return new Literal(token.text);
+                case NUMBER:
+                    return new NumberLiteral(Double.parseDouble(token.text));
+                default:
+                    next();
+                    List<Expr> arguments = new ArrayList<>();
+                    if (!accept(TokenType.RIGHT_PAREN)) {
+                        do {
+                            arguments.add(expr());
+                        } while (accept(TokenType.COMMA));
+                        expect(TokenType.RIGHT_PAREN);
+                    }
+                    return new FunctionCall(token.text, arguments);
+            }
+        }
+
+        // ─── Tokens ───
+
+        private Token peek() {
+            return tokens.get(position);
+        }
+
+        private Token peek(int ahead) {
+            return tokens.get(Math.min(position + ahead, tokens.size() - 1));
+        }
+
+        private Token next() {
+            Token token = tokens.get(position);
+            if (token.type != TokenType.END) position++;
+            return token;
+        }
+
+        private boolean accept(TokenType type) {
+            if (peek().type != type) return false;
+            position++;
+            return true;
+        }
+
+        private boolean acceptOperator(String name) {
+            if (peek().type != TokenType.OPERATOR_NAME || !peek().text.equals(name)) return false;
+            position++;
+            return true;
+        }
+
+        private void expect(TokenType type) {
+            Token token = next();
+            if (token.type != type) throw error(token, "expected " + type);
+        }
+
+        void expectEnd() {
+            if (peek().type != TokenType.END) throw error(peek(), "unexpected '" + peek().text + "'");
+        }
+
+        private IllegalArgumentException error(Token token, String message) {
+            return new IllegalArgumentException("Invalid XPath at offset " + token.offset + " (" + message + "): "
+                    + source);
+        }
+
+        private static List<Token> tokenize(String source) {
+            List<Token> tokens = new ArrayList<>();
+            int i = 0;
+            while (i < source.length()) {
+                char c = source.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                TokenType type;
+                String text;
+                if (c == '\'' || c == '"') {
+                    int end = source.indexOf(c, i + 1);
+                    if (end < 0) {
+                        throw new IllegalArgumentException("Invalid XPath at offset " + i
+                                + " (unterminated literal): " + source);
+                    }
+                    tokens.add(new Token(TokenType.LITERAL, source.substring(i + 1, end), start));
+                    i = end + 1;
+                    continue;
+                }
+                if (Character.isDigit(c) || (c == '.' && i + 1 < source.length()
+                        && Character.isDigit(source.charAt(i + 1)))) {
+                    while (i < source.length() && (Character.isDigit(source.charAt(i)) || source.charAt(i) == '.')) {
+                        i++;
+                    }
+                    tokens.add(new Token(TokenType.NUMBER, source.substring(start, i), start));
+                    continue;
+                }
+                if (isNameStart(c)) {
+                    while (i < source.length() && isNameChar(source.charAt(i))) {
+                        i++;
+                    }
+                    text = source.substring(start, i);
+                    type = operatorPosition(tokens) && isOperatorName(text) ? TokenType.OPERATOR_NAME : TokenType.NAME;
+                    tokens.add(new Token(type, text, start));
+                    continue;
+                }
+                String two = i + 1 < source.length() ? source.substring(i, i + 2) : "";
+                switch (two) {
+                    case "//": type = TokenType.DOUBLE_SLASH; break;
+                    case "..": type = TokenType.DOUBLE_DOT; break;
+                    case "::": type = TokenType.AXIS_SEPARATOR; break;
+                    case "!=": type = TokenType.NOT_EQUALS; break;
+                    case "<=": type = TokenType.LESS_OR_EQUAL; break;
+                    case ">=": type = TokenType.GREATER_OR_EQUAL; break;
+                    default: type = null; break;
+                }
+                if (type != null) {
+                    tokens.add(new Token(type, two, start));
+                    i += 2;
+                    continue;
+                }
+                switch (c) {
+                    case '/': type = TokenType.SLASH; break;
+                    case '[': type = TokenType.LEFT_BRACKET; break;
+                    case ']': type = TokenType.RIGHT_BRACKET; break;
+                    case '(': type = TokenType.LEFT_PAREN; break;
+                    case ')': type = TokenType.RIGHT_PAREN; break;
+                    case '@': type = TokenType.AT; break;
+                    case ',': type = TokenType.COMMA; break;
+                    case '|': type = TokenType.PIPE; break;
+                    case '.': type = TokenType.DOT; break;
+                    case '=': type = TokenType.EQUALS; break;
+                    case '<': type = TokenType.LESS; break;
+                    case '>': type = TokenType.GREATER; break;
+                    case '+': type = TokenType.PLUS; break;
+                    case '-': type = TokenType.MINUS; break;
+                    case '*': type = operatorPosition(tokens) ? TokenType.MULTIPLY : TokenType.STAR; break;
+                    default:
+                        throw new IllegalArgumentException("Invalid XPath at offset " + i
+                                + " (unexpected '" + c + "'): " + source);
+                }
+                tokens.add(new Token(type, String.valueOf(c), start));
+                i++;
+            }
+            tokens.add(new Token(TokenType.END, "", source.length()));
+            return tokens;
+        }
+
+        /**
+         * XPath 1.0, 3.7: after an operand, '*' multiplies and and / or / div / mod are operators
+         */
+        private static boolean operatorPosition(List<Token> tokens) {
+            if (tokens.isEmpty()) return false;
+            switch (tokens.get(tokens.size() - 1).type) {
+                case AT: case AXIS_SEPARATOR: case LEFT_PAREN: case LEFT_BRACKET: case COMMA:
+                case SLASH: case DOUBLE_SLASH: case PIPE: case PLUS: case MINUS: case MULTIPLY:
+                case EQUALS: case NOT_EQUALS: case LESS: case LESS_OR_EQUAL: case GREATER: case GREATER_OR_EQUAL:
+                case OPERATOR_NAME:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+
+        private static boolean isOperatorName(String text) {
+            return text.equals("and") || text.equals("or") || text.equals("div") || text.equals("mod");
+        }
+
+        private static boolean isNameStart(char c) {
+            return Character.isLetter(c) || c == '_';
+        }
+
+        // '$' for nested classes such as android.widget.Spinner$DropDown
+        private static boolean isNameChar(char c) {
+            return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == '$';
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package utilities;
+
+import org.xml.sax.InputSource;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.ByteArrayInputStream;
+import java.io.Reader;
+import java.io.StringReader;
+
+/**
+ * XmlInput - Page source input for the parsers, without intermediate copies
+ *
+ * The page source can arrive as a String (driver response), any CharSequence,
+ * a Reader or raw UTF-8 bytes (archived snapshots). Each form is handed to
+ * StAX / DOM as-is: characters are read through a Reader over the original
+ * sequence and bytes through a stream over the original array, so the page
+ * source is never duplicated into a byte[] just to be parsed.
+ *
+ * The StAX factory is created and configured once (no DTDs, no external
+ * entities, no namespaces); creating readers from it is thread-safe.
+ */
+final class XmlInput {
+
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    /**
+     * A page source that can be opened by either parser (a Reader source opens once)
+     */
+    interface Source {
+        XMLStreamReader openStax() throws XMLStreamException;
+
+        InputSource openSax();
+
+        /**
+         * The page source characters for random access, or null for Reader / byte sources
+         */
+        default CharSequence chars() {
+            return null;
+        }
+    }
+
+    private XmlInput() {
+    }
+
+    static Source of(CharSequence xml) {
+        return new Source() {
+            @Override
+            public XMLStreamReader openStax() throws XMLStreamException {
+                return FACTORY.createXMLStreamReader(readerOf(xml));
+            }
+
+            @Override
+            public InputSource openSax() {
+                return new InputSource(readerOf(xml));
+            }
+
+            @Override
+            public CharSequence chars() {
+                return xml;
+            }
+        };
+    }
+
+    static Source of(Reader xml) {
+        return new Source() {
+            @Override
+            public XMLStreamReader openStax() throws XMLStreamException {
+                return FACTORY.createXMLStreamReader(xml);
+            }
+
+            @Override
+            public InputSource openSax() {
+                return new InputSource(xml);
+            }
+        };
+    }
+
+    /**
+     * Raw bytes; the encoding comes from the XML declaration (UTF-8 by default)
+     */
+    static Source of(byte[] xml) {
+        return new Source() {
+            @Override
+            public XMLStreamReader openStax() throws XMLStreamException {
+                return FACTORY.createXMLStreamReader(new ByteArrayInputStream(xml));
+            }
+
+            @Override
+            public InputSource openSax() {
+                return new InputSource(new ByteArrayInputStream(xml));
+            }
+        };
+    }
+
+    private static Reader readerOf(CharSequence xml) {
+        return xml instanceof String ? new StringReader((String) xml) : new CharSequenceReader(xml);
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // CHAR SEQUENCE READER - Reads a StringBuilder / CharBuffer in place
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static final class CharSequenceReader extends Reader {
+        private final CharSequence chars;
+        private int pos;
+
+        CharSequenceReader(CharSequence chars) {
+            this.chars = chars;
+        }
+
+        @Override
+        public int read(char[] buf, int off, int len) {
+            if (pos >= chars.length()) return -1;
+            int n = Math.min(len, chars.length() - pos);
+            for (int i = 0; i < n; i++) {
+                buf[off + i] = chars.charAt(pos++);
+            }
+            return n;
+        }
+
+        @Override
+        public int read() {
+            return pos < chars.length() ? chars.charAt(pos++) : -1;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
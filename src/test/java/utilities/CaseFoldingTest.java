@@ -0,0 +1,57 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Locale;
+
+/**
+ * CaseFoldingTest - Case-insensitive matching does not depend on the default locale
+ *
+ * On a Turkish-locale JVM, "TITLE".toLowerCase() is "tıtle" (dotless ı), so
+ * a locale-sensitive comparison no longer finds "title". Folding and scoring
+ * are run with tr-TR as the default locale. Runs offline, no Appium server needed.
+ */
+public class CaseFoldingTest {
+
+    private static final String PAGE_SOURCE = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">"
+            + "<android.widget.LinearLayout index=\"0\" class=\"android.widget.LinearLayout\" bounds=\"[0,0][1080,200]\">"
+            + "<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"SETTINGS\""
+            + " bounds=\"[0,0][1080,100]\"/>"
+            + "<android.widget.TextView index=\"1\" class=\"android.widget.TextView\" text=\"TITLE\""
+            + " bounds=\"[0,100][1080,200]\"/>"
+            + "</android.widget.LinearLayout></hierarchy>";
+
+    @Test(description = "Dotted and dotless I fold the same way under tr-TR")
+    public void testTurkishLocale() {
+        Locale original = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr-TR"));
+        try {
+            Assert.assertNotEquals("TITLE".toLowerCase(), "title", "tr-TR is not in effect");
+
+            Assert.assertEquals(CaseFolding.fold("TITLE"), "title");
+            Assert.assertTrue(CaseFolding.equalsIgnoreCase("TITLE", "title"));
+            Assert.assertTrue(CaseFolding.contains("WINDOW TITLE BAR", CaseFolding.fold("Title")));
+            Assert.assertTrue(CaseFolding.startsWith("ISTANBUL", CaseFolding.fold("istanbul")));
+            // İ and ı compare like String.equalsIgnoreCase, which is locale-independent
+            for (String pair : new String[]{"İi", "ıI", "ıi", "İI"}) {
+                String a = pair.substring(0, 1);
+                String b = pair.substring(1);
+                Assert.assertEquals(CaseFolding.equalsIgnoreCase(a, b), a.equalsIgnoreCase(b), pair);
+            }
+
+            WeightedScoring.TermScorer scorer = WeightedScoring.DEFAULT.forSearchTerm("title");
+            Assert.assertTrue(scorer.score("android.widget.TextView", "TITLE", "", "")
+                    > scorer.score("android.widget.TextView", "SETTINGS", "", ""), "TITLE does not match title");
+
+            String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                    PAGE_SOURCE, "By.xpath: //*[@text='title']"));
+            Assert.assertTrue(output.contains("CLOSEST MATCHING ELEMENT FOUND"), "no match under tr-TR");
+            String attributes = output.substring(output.indexOf("Attribute"));
+            Assert.assertTrue(attributes.contains("TITLE"), "wrong element under tr-TR");
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+}
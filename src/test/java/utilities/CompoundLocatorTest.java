@@ -0,0 +1,53 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+/**
+ * CompoundLocatorTest - Every predicate of an XPath locator counts, not just the search term
+ *
+ * Three elements have the text "OK"; only one of them is an enabled Button,
+ * which is what the locator asks for. Runs offline, no Appium server needed.
+ */
+public class CompoundLocatorTest {
+
+    private static final String PAGE_SOURCE = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">"
+            + "<android.widget.LinearLayout index=\"0\" class=\"android.widget.LinearLayout\" bounds=\"[0,0][1080,300]\">"
+            + "<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"OK\""
+            + " resource-id=\"com.example:id/ok_label\" enabled=\"true\" bounds=\"[0,0][1080,100]\"/>"
+            + "<android.widget.Button index=\"1\" class=\"android.widget.Button\" text=\"OK\""
+            + " resource-id=\"com.example:id/ok_disabled\" enabled=\"false\" bounds=\"[0,100][1080,200]\"/>"
+            + "<android.widget.Button index=\"2\" class=\"android.widget.Button\" text=\"OK\""
+            + " resource-id=\"com.example:id/ok_button\" enabled=\"true\" bounds=\"[0,200][1080,300]\"/>"
+            + "</android.widget.LinearLayout></hierarchy>";
+
+    @AfterClass
+    public void restoreMode() {
+        AndroidElementInspector.setMode(AndroidElementInspector.InspectionMode.SNAPSHOT);
+    }
+
+    @Test(description = "Class and @enabled pick the enabled Button among three \"OK\" elements")
+    public void testClassAndPredicatesScoredJointly() {
+        for (AndroidElementInspector.InspectionMode mode : AndroidElementInspector.InspectionMode.values()) {
+            AndroidElementInspector.setMode(mode);
+            String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                    PAGE_SOURCE, "By.xpath: //android.widget.Button[@text='OK' and @enabled='true']"));
+
+            String best = output.substring(0, output.indexOf("Other Candidates"));
+            Assert.assertTrue(best.contains("UiSelector().resourceId(\"com.example:id/ok_button\")"),
+                    mode + " did not suggest the enabled Button");
+        }
+    }
+
+    @Test(description = "Predicates of ancestor steps and the search term itself add nothing")
+    public void testOnlyLastStepConditions() {
+        LocatorPredicates predicates = LocatorPredicates.parse(
+                "By.xpath: //android.widget.LinearLayout[@index='0']/android.widget.Button[@text='OK' and contains(@resource-id, 'ok_')]");
+        Assert.assertEquals(predicates.toString(), "android.widget.Button and contains(@resource-id, 'ok_')");
+
+        Assert.assertTrue(LocatorPredicates.parse("By.xpath: //*[@text='OK']").isEmpty());
+        Assert.assertTrue(LocatorPredicates.parse("By.id: com.example:id/ok_button").isEmpty());
+    }
+}
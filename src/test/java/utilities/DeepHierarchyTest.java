@@ -0,0 +1,108 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * DeepHierarchyTest - Regression test for deeply nested page sources (Compose / Flutter)
+ *
+ * A 5,000-deep chain of layouts with the only text at the bottom is inspected
+ * on a thread with a small stack, so any traversal that recurses per level
+ * fails with StackOverflowError. Runs offline, no Appium server needed.
+ */
+public class DeepHierarchyTest {
+
+    private static final int DEPTH = 5_000;
+    private static final long STACK_SIZE = 256 * 1024;
+
+    @AfterClass
+    public void restoreMode() {
+        AndroidElementInspector.setMode(AndroidElementInspector.InspectionMode.SNAPSHOT);
+    }
+
+    @Test(description = "Every engine inspects a 5,000-deep chain")
+    public void testInspectDeepChain() throws Throwable {
+        String xml = chain(DEPTH, "Deep target");
+        for (AndroidElementInspector.InspectionMode mode : AndroidElementInspector.InspectionMode.values()) {
+            AndroidElementInspector.setMode(mode);
+            String output = runOnSmallStack(() -> InspectorTestSupport.captureOutput(() ->
+                    AndroidElementInspector.inspectPageSource(xml, "By.xpath: //*[@text='Deep target']")));
+
+            Assert.assertTrue(output.contains("CLOSEST MATCHING ELEMENT FOUND"), mode + " found no match");
+            Assert.assertTrue(output.contains("<TextView text=\"Deep target\"/>"), mode + " XML block misses the match");
+        }
+    }
+
+    @Test(description = "A DOM of a 5,000-deep chain converts to a snapshot")
+    public void testSnapshotFromDeepDocument() throws Throwable {
+        String xml = chain(DEPTH, "Deep target");
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder()
+                .parse(new InputSource(new StringReader(xml)));
+
+        HierarchySnapshot snapshot = runOnSmallStack(() -> HierarchySnapshot.fromDocument(doc));
+
+        Assert.assertEquals(snapshot.size(), DEPTH + 2);
+        Assert.assertEquals(snapshot.text(DEPTH + 1), "Deep target");
+        Assert.assertEquals(snapshot.parent(DEPTH + 1), DEPTH);
+    }
+
+    @Test(description = "Diffing two 5,000-deep chains finds the one changed element")
+    public void testDiffDeepChain() throws Throwable {
+        HierarchySnapshot before = HierarchySnapshot.parse(chain(DEPTH, "Deep target"));
+        HierarchySnapshot after = HierarchySnapshot.parse(chain(DEPTH, "Moved target"));
+
+        SnapshotDiff diff = runOnSmallStack(() -> SnapshotDiff.compare(before, after));
+
+        Assert.assertEquals(diff.addedNodes(), 1);
+        Assert.assertEquals(diff.removedNodes(), 1);
+        Assert.assertEquals(diff.addedRoots().get(0).intValue(), DEPTH + 1);
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // HELPERS
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    /**
+     * hierarchy > depth nested FrameLayouts > TextView with the given text
+     */
+    static String chain(int depth, String text) {
+        StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
+        sb.append("<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">");
+        for (int i = 0; i < depth; i++) {
+            sb.append("<android.widget.FrameLayout index=\"0\" class=\"android.widget.FrameLayout\" bounds=\"[0,0][1080,2340]\">");
+        }
+        sb.append("<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"").append(text)
+                .append("\" bounds=\"[0,0][1080,100]\"/>");
+        for (int i = 0; i < depth; i++) {
+            sb.append("</android.widget.FrameLayout>");
+        }
+        return sb.append("</hierarchy>").toString();
+    }
+
+    private interface Work<T> {
+        T run() throws Exception;
+    }
+
+    private static <T> T runOnSmallStack(Work<T> work) throws Throwable {
+        AtomicReference<T> result = new AtomicReference<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread thread = new Thread(null, () -> {
+            try {
+                result.set(work.run());
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        }, "deep-hierarchy", STACK_SIZE);
+        thread.start();
+        thread.join();
+        if (failure.get() != null) throw failure.get();
+        return result.get();
+    }
+}
@@ -0,0 +1,40 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.Test;
+
+/**
+ * EarlyTerminationTest - Stopping early must not change the best match
+ *
+ * Inspects a 5,000-row list screen with and without early termination and
+ * compares everything printed for the best match. Runs offline, no Appium
+ * server needed.
+ */
+public class EarlyTerminationTest {
+
+    private static final String PAGE_SOURCE = InspectorTestSupport.listScreen(5_000);
+
+    @AfterClass
+    public void restore() {
+        AndroidElementInspector.setEarlyTermination(false);
+    }
+
+    @Test(description = "A unique exact match near the top stops the scan with the same result")
+    public void testSameBestMatch() {
+        String locator = "By.xpath: //*[@content-desc='Button in row 42']";
+
+        AndroidElementInspector.setEarlyTermination(false);
+        String full = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(PAGE_SOURCE, locator));
+        AndroidElementInspector.setEarlyTermination(true);
+        String early = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(PAGE_SOURCE, locator));
+
+        Assert.assertTrue(early.startsWith("[Inspector] Early termination"), "scan did not stop early");
+        String earlyReport = early.substring(early.indexOf('\n') + 1);
+        Assert.assertEquals(bestMatch(earlyReport), bestMatch(full));
+    }
+
+    private static String bestMatch(String output) {
+        return output.substring(0, output.indexOf("Other Candidates"));
+    }
+}
@@ -0,0 +1,105 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Random;
+
+/**
+ * EditDistanceTest - The bit-parallel distance agrees with the plain dynamic programming table
+ *
+ * The reference fills the full matrix for the same edit model: insert, delete,
+ * substitute, or swap two adjacent characters, with the match free to start
+ * and end anywhere in the text. Runs offline, no Appium server needed.
+ */
+public class EditDistanceTest {
+
+    /** Smallest edit distance between the term and any substring of text, one DP cell at a time */
+    private static int reference(String term, String text) {
+        String p = CaseFolding.fold(term);
+        String t = CaseFolding.fold(text);
+        int m = p.length();
+        int n = t.length();
+        int[][] d = new int[m + 1][n + 1];
+        for (int i = 0; i <= m; i++) d[i][0] = i;
+        // Row 0 stays zero: the match may start at any position
+        for (int i = 1; i <= m; i++) {
+            for (int j = 1; j <= n; j++) {
+                int cost = p.charAt(i - 1) == t.charAt(j - 1) ? 0 : 1;
+                int best = Math.min(d[i - 1][j - 1] + cost, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+                if (i > 1 && j > 1 && p.charAt(i - 1) == t.charAt(j - 2) && p.charAt(i - 2) == t.charAt(j - 1)) {
+                    best = Math.min(best, d[i - 2][j - 2] + 1);
+                }
+                d[i][j] = best;
+            }
+        }
+        int best = m;
+        for (int j = 0; j <= n; j++) best = Math.min(best, d[m][j]);
+        return best;
+    }
+
+    private static void assertAgrees(String term, String text) {
+        EditDistance compiled = EditDistance.compile(CaseFolding.fold(term));
+        Assert.assertNotNull(compiled, term);
+        // The distance never exceeds the term length, so that cutoff reports it exactly
+        Assert.assertEquals(compiled.distance(text, compiled.length()), reference(term, text), term + " / " + text);
+    }
+
+    private static String random(Random random, String alphabet, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) sb.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        return sb.toString();
+    }
+
+    @Test(description = "Empty, identical, over-long and transposed inputs")
+    public void testEdgeCases() {
+        Assert.assertNull(EditDistance.compile(""));
+        Assert.assertNull(EditDistance.compile("a".repeat(EditDistance.MAX_PATTERN_LENGTH + 1)));
+
+        assertAgrees("login", "");
+        assertAgrees("login", "login");
+        assertAgrees("Accessibility", "accessibility");
+        assertAgrees("Aksesibiliti", "Accessibility");
+        assertAgrees("lgoin", "login");
+        assertAgrees("ab", "ba");
+        assertAgrees("abc", "xyz");
+
+        // Term of exactly 64 characters uses the top bit of the word
+        String full = "io.appium.android.apis:id/title_".repeat(2);
+        Assert.assertEquals(full.length(), EditDistance.MAX_PATTERN_LENGTH);
+        assertAgrees(full, full);
+        assertAgrees(full, "prefix " + full.replace('_', '-') + " suffix");
+
+        // Text far longer than one word
+        String longText = "android.widget.LinearLayout ".repeat(20) + "Submit order";
+        assertAgrees("submit", longText);
+        assertAgrees("sbumit ordre", longText);
+        assertAgrees("checkout", longText);
+        Assert.assertEquals(EditDistance.compile("login").distance("login", 0), 0);
+    }
+
+    @Test(description = "Random terms and texts over small alphabets")
+    public void testRandomAgainstReference() {
+        Random random = new Random(20241015L);
+        String[] alphabets = {"ab", "abc", "abcdAB", "abcdefghijklmnopqrstuvwxyz", "aıIİé"};
+        for (int round = 0; round < 2000; round++) {
+            String alphabet = alphabets[round % alphabets.length];
+            String term = random(random, alphabet, 1 + random.nextInt(EditDistance.MAX_PATTERN_LENGTH));
+            String text = random(random, alphabet, random.nextInt(150));
+            assertAgrees(term, text);
+        }
+    }
+
+    @Test(description = "Distances above the cutoff are reported as cutoff + 1")
+    public void testCutoff() {
+        Random random = new Random(7L);
+        for (int round = 0; round < 500; round++) {
+            String term = random(random, "abc", 1 + random.nextInt(20));
+            String text = random(random, "abc", random.nextInt(40));
+            int cutoff = random.nextInt(6);
+            int expected = reference(term, text);
+            Assert.assertEquals(EditDistance.compile(term).distance(text, cutoff),
+                    expected <= cutoff ? expected : cutoff + 1, term + " / " + text);
+        }
+    }
+}
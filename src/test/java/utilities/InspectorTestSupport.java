@@ -0,0 +1,53 @@
+package utilities;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * InspectorTestSupport - Shared fixtures of the offline inspector tests
+ *
+ * - captureOutput: what an inspection prints, for assertions on the report
+ * - listScreen:    a synthetic list screen, also used by ScoringBenchmark
+ */
+final class InspectorTestSupport {
+
+    private InspectorTestSupport() {
+    }
+
+    /**
+     * Everything the action prints to System.out
+     */
+    static String captureOutput(Runnable action) {
+        PrintStream original = System.out;
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(buffer, true, StandardCharsets.UTF_8));
+        try {
+            action.run();
+        } finally {
+            System.setOut(original);
+        }
+        return buffer.toString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A FrameLayout > ListView screen with rows of LinearLayout > TextView + Button.
+     * Every TextView has the resource-id io.appium.android.apis:id/title and the
+     * text "Row item i"; the Buttons cycle through ten ids, texts "Button 0..9"
+     * and descriptions "Button in row i".
+     */
+    static String listScreen(int rows) {
+        StringBuilder sb = new StringBuilder("<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>\n");
+        sb.append("<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">\n");
+        sb.append("<android.widget.FrameLayout index=\"0\" package=\"io.appium.android.apis\" class=\"android.widget.FrameLayout\" bounds=\"[0,0][1080,2340]\">\n");
+        sb.append("<android.widget.ListView index=\"0\" package=\"io.appium.android.apis\" class=\"android.widget.ListView\" resource-id=\"android:id/list\" scrollable=\"true\" bounds=\"[0,210][1080,2340]\">\n");
+        for (int i = 0; i < rows; i++) {
+            sb.append("<android.widget.LinearLayout index=\"").append(i).append("\" package=\"io.appium.android.apis\" class=\"android.widget.LinearLayout\" clickable=\"true\" bounds=\"[0,").append(i * 100).append("][1080,").append(i * 100 + 100).append("]\">");
+            sb.append("<android.widget.TextView index=\"0\" package=\"io.appium.android.apis\" class=\"android.widget.TextView\" text=\"Row item ").append(i).append("\" resource-id=\"io.appium.android.apis:id/title\" bounds=\"[0,").append(i * 100).append("][900,").append(i * 100 + 100).append("]\"/>");
+            sb.append("<android.widget.Button index=\"1\" package=\"io.appium.android.apis\" class=\"android.widget.Button\" text=\"Button ").append(i % 10).append("\" content-desc=\"Button in row ").append(i).append("\" resource-id=\"io.appium.android.apis:id/button_").append(i % 10).append("\" bounds=\"[900,").append(i * 100).append("][1080,").append(i * 100 + 100).append("]\"/>");
+            sb.append("</android.widget.LinearLayout>\n");
+        }
+        sb.append("</android.widget.ListView>\n</android.widget.FrameLayout>\n</hierarchy>\n");
+        return sb.toString();
+    }
+}
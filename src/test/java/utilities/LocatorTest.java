@@ -0,0 +1,53 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * LocatorTest - Every By / AppiumBy strategy is parsed into its search term and conditions
+ *
+ * Runs offline, no Appium server needed.
+ */
+public class LocatorTest {
+
+    @Test(description = "Search terms of every supported strategy")
+    public void testSearchTerms() {
+        Assert.assertEquals(Locator.parse("By.id: io.appium.android.apis:id/views").searchTerm, "views");
+        Assert.assertEquals(Locator.parse("AppiumBy.accessibilityId: Views").searchTerm, "Views");
+        Assert.assertEquals(Locator.parse("By.className: android.widget.Button").searchTerm, "android.widget.Button");
+        Assert.assertEquals(Locator.parse("AppiumBy.androidViewTag: header").searchTerm, "header");
+        Assert.assertEquals(Locator.parse("By.xpath: //*[@content-desc='App' or @text=\"Don't\"]").searchTerm,
+                "Don't");
+        Assert.assertEquals(Locator.parse("AppiumBy.androidUIAutomator: new UiScrollable(new UiSelector()"
+                + ".scrollable(true)).scrollIntoView(new UiSelector().resourceId(\"com.example:id/row\"))")
+                .searchTerm, "row");
+    }
+
+    @Test(description = "UiSelector calls besides the search term become conditions")
+    public void testUiSelectorConditions() {
+        Locator locator = Locator.parse("AppiumBy.androidUIAutomator: new UiSelector()"
+                + ".className(\"android.widget.Button\").text(\"OK\").enabled(true)");
+        Assert.assertEquals(locator.strategy, Locator.Strategy.ANDROID_UIAUTOMATOR);
+        Assert.assertEquals(locator.searchTerm, "OK");
+        Assert.assertEquals(locator.predicates.toString(), "android.widget.Button and @enabled='true'");
+    }
+
+    @Test(description = "An XPath that does not parse still yields its literals")
+    public void testMalformedXPath() {
+        Locator unbalanced = Locator.parse("By.xpath: //android.widget.TextView[@text='Views'");
+        Assert.assertNull(unbalanced.xpath);
+        Assert.assertEquals(unbalanced.searchTerm, "Views");
+
+        Locator id = Locator.parse("By.xpath: //*[@resource-id='io.appium.android.apis:id/views']]");
+        Assert.assertNull(id.xpath);
+        Assert.assertEquals(id.searchTerm, "views");
+        Assert.assertEquals(id.resourceId, "io.appium.android.apis:id/views");
+    }
+
+    @Test(description = "A locator string is parsed once")
+    public void testMemoized() {
+        String xpath = "By.xpath: //android.widget.Button[@text='OK' and @enabled='true']";
+        Assert.assertSame(Locator.parse(xpath), Locator.parse(xpath));
+        Assert.assertNotNull(Locator.parse(xpath).xpath);
+    }
+}
@@ -0,0 +1,71 @@
+package utilities;
+
+import org.openqa.selenium.remote.DriverCommand;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * PageSourceCacheTest - The cache replayed with the commands CachingAndroidDriver sends
+ *
+ * getPageSource() looks up the current activity and dumps the page source,
+ * both through execute(), which reports every command to the cache before
+ * and after it runs. Runs offline, no Appium server needed.
+ */
+public class PageSourceCacheTest {
+
+    private static final String PAGE_SOURCE = "<hierarchy/>";
+
+    /**
+     * What execute() does around a command
+     */
+    private static Supplier<String> command(PageSourceCache cache, String name, Map<String, ?> parameters,
+                                            String result) {
+        return () -> {
+            cache.onCommand(name, parameters);
+            cache.onCommand(name, parameters);
+            return result;
+        };
+    }
+
+    /**
+     * java-client 8.6: currentActivity() runs the "mobile: getCurrentActivity" extension
+     */
+    private static String getPageSource(PageSourceCache cache) {
+        return cache.get(command(cache, DriverCommand.EXECUTE_SCRIPT,
+                        Map.of("script", "mobile: getCurrentActivity", "args", List.of()), ".ApiDemos"),
+                command(cache, DriverCommand.GET_PAGE_SOURCE, Map.of(), PAGE_SOURCE));
+    }
+
+    @Test(description = "Activity lookups and dumps are read-only: the second dump is a hit")
+    public void testHitOnUnchangedScreen() {
+        PageSourceCache cache = new PageSourceCache();
+        Assert.assertEquals(getPageSource(cache), PAGE_SOURCE);
+        Assert.assertEquals(getPageSource(cache), PAGE_SOURCE);
+        Assert.assertEquals(cache.getMisses(), 1);
+        Assert.assertEquals(cache.getHits(), 1);
+    }
+
+    @Test(description = "A UI-mutating command in between forces a new dump")
+    public void testMissAfterClick() {
+        PageSourceCache cache = new PageSourceCache();
+        getPageSource(cache);
+        command(cache, DriverCommand.CLICK_ELEMENT, Map.of("id", "1"), null).get();
+        getPageSource(cache);
+        Assert.assertEquals(cache.getMisses(), 2);
+        Assert.assertEquals(cache.getHits(), 0);
+    }
+
+    @Test(description = "Other scripts may change the UI: a gesture extension forces a new dump")
+    public void testMissAfterGestureScript() {
+        PageSourceCache cache = new PageSourceCache();
+        getPageSource(cache);
+        command(cache, DriverCommand.EXECUTE_SCRIPT, Map.of("script", "mobile: clickGesture", "args", List.of()),
+                null).get();
+        getPageSource(cache);
+        Assert.assertEquals(cache.getHits(), 0);
+    }
+}
@@ -0,0 +1,51 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+/**
+ * ResourceIdSuggestionTest - "Did you mean" resource-ids for a failed By.id
+ *
+ * The screen has the id under another package and a near miss of a second
+ * one; both are suggested from the snapshot's ResourceIdTrie. Runs offline,
+ * no Appium server needed.
+ */
+public class ResourceIdSuggestionTest {
+
+    private static final String PAGE_SOURCE = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">"
+            + "<android.widget.LinearLayout index=\"0\" class=\"android.widget.LinearLayout\" bounds=\"[0,0][1080,300]\">"
+            + "<android.widget.Button index=\"0\" class=\"android.widget.Button\" text=\"Log in\""
+            + " resource-id=\"com.example:id/login_button\" bounds=\"[0,0][1080,100]\"/>"
+            + "<android.widget.Button index=\"1\" class=\"android.widget.Button\" text=\"Log out\""
+            + " resource-id=\"com.example:id/logout_button\" bounds=\"[0,100][1080,200]\"/>"
+            + "<android.widget.Button index=\"2\" class=\"android.widget.Button\" text=\"Submit\""
+            + " resource-id=\"com.example.debug:id/submit\" bounds=\"[0,200][1080,300]\"/>"
+            + "</android.widget.LinearLayout></hierarchy>";
+
+    @Test(description = "Same name in another package first, then names a few edits away")
+    public void testSuggestions() {
+        String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.id: com.example:id/submit"));
+        String suggestions = output.substring(output.indexOf("Did You Mean"));
+        Assert.assertTrue(suggestions.contains("com.example.debug:id/submit"), "moved id not suggested");
+
+        output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.id: com.example:id/login_buton"));
+        suggestions = output.substring(output.indexOf("Did You Mean"));
+        Assert.assertTrue(suggestions.matches("(?s).*1 edit\\s+\\S*com\\.example:id/login_button.*"),
+                "near miss not suggested");
+    }
+
+    @Test(description = "Suffix lookups walk the reversed ids")
+    public void testEndingWith() throws Exception {
+        ResourceIdTrie trie = HierarchySnapshot.parse(PAGE_SOURCE).resourceIdTrie();
+        Assert.assertEquals(trie.size(), 3);
+        Assert.assertEquals(trie.endingWith("_button"),
+                List.of("com.example:id/login_button", "com.example:id/logout_button"));
+        Assert.assertEquals(trie.endingWith(":id/submit"), List.of("com.example.debug:id/submit"));
+        Assert.assertTrue(trie.endingWith("/cancel").isEmpty());
+    }
+}
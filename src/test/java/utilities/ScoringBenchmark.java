@@ -0,0 +1,137 @@
+package utilities;
+
+import java.lang.management.ManagementFactory;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * ScoringBenchmark - Allocation and time per scored node
+ *
+ * Builds a synthetic list screen, then scores every node repeatedly with:
+ * - legacy:   the former calculateScore (toLowerCase() of every attribute per node)
+ * - snapshot: WeightedScoring.DEFAULT on the snapshot's cached lower-cased strings
+ * - parallel: the snapshot pass split over the common fork/join pool (NodeScoring);
+ *             its bytes only count the calling thread
+ * - indexed:  only the candidates of the snapshot's trigram index (SnapshotIndex)
+ *             are scored; building the index is reported separately
+ * - exact:    like snapshot, with only the exact and suffix components enabled
+ *             (disabled components are not visited at all)
+ * Then, for a typo'd term that nothing contains:
+ * - plain:    Scorer.score alone
+ * - fuzzy:    plus the bit-parallel edit-distance tier (Scorer.fallbackScore)
+ *
+ * Allocation is read from the JVM's per-thread allocation counter, so the
+ * numbers are exact bytes, not estimates. Run main() from the IDE, or after
+ * mvn test-compile with:
+ *   java -cp target/classes:target/test-classes:<dependencies> utilities.ScoringBenchmark [rows]
+ */
+public class ScoringBenchmark {
+
+    private static final int ROWS = 5000;
+    private static final int WARMUP_PASSES = 20;
+    private static final int PASSES = 50;
+
+    public static void main(String[] args) throws Exception {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : ROWS;
+        HierarchySnapshot snapshot = HierarchySnapshot.parse(InspectorTestSupport.listScreen(rows));
+        String term = "button_wrong";
+        WeightedScoring.TermScorer scorer = WeightedScoring.DEFAULT.forSearchTerm(term);
+        IntUnaryOperator scoreNode = AndroidElementInspector.scoreFunction(snapshot, scorer);
+        int[] scores = new int[snapshot.size()];
+
+        System.out.println("[INFO] " + snapshot.size() + " nodes, search term \"" + term + "\"");
+        report("legacy", snapshot, () -> {
+            for (int node = 0; node < snapshot.size(); node++) {
+                scores[node] = legacyScore(snapshot.tag(node), snapshot.text(node),
+                        snapshot.resourceId(node), snapshot.contentDesc(node), term);
+            }
+        });
+        report("snapshot", snapshot, () -> scoreAll(snapshot, scoreNode, scores));
+
+        report("parallel", snapshot, () -> NodeScoring.score(null, snapshot.size(), scoreNode, scores, 5, true));
+
+        long start = System.nanoTime();
+        SnapshotIndex index = snapshot.searchIndex();
+        System.out.printf("[INFO] index built in %.1f ms (first build, cold)%n", (System.nanoTime() - start) / 1e6);
+        report("indexed", snapshot, () -> {
+            for (int node : index.candidates(scorer.term, scorer.scoresPrefix())) {
+                scores[node] = scoreNode.applyAsInt(node);
+            }
+        });
+
+        WeightedScoring exactOnly = WeightedScoring.DEFAULT;
+        for (WeightedScoring.Component component : WeightedScoring.Component.values()) {
+            if (component.getDefaultWeight() < 800) exactOnly = exactOnly.without(component);
+        }
+        IntUnaryOperator exactNode = AndroidElementInspector.scoreFunction(snapshot, exactOnly.forSearchTerm(term));
+        report("exact", snapshot, () -> scoreAll(snapshot, exactNode, scores));
+
+        String typo = "Buton in rwo 17";
+        WeightedScoring.TermScorer typoScorer = WeightedScoring.DEFAULT.forSearchTerm(typo);
+        IntUnaryOperator typoNode = AndroidElementInspector.scoreFunction(snapshot, typoScorer);
+        IntUnaryOperator typoFallback = AndroidElementInspector.fallbackFunction(snapshot, typoScorer);
+        System.out.println("[INFO] search term \"" + typo + "\"");
+        report("plain", snapshot, () -> scoreAll(snapshot, typoNode, scores));
+        report("fuzzy", snapshot, () -> scoreAll(snapshot,
+                node -> typoNode.applyAsInt(node) + typoFallback.applyAsInt(node), scores));
+    }
+
+    private static void scoreAll(HierarchySnapshot snapshot, IntUnaryOperator scoreNode, int[] scores) {
+        for (int node = 0; node < snapshot.size(); node++) {
+            scores[node] = scoreNode.applyAsInt(node);
+        }
+    }
+
+    private static void report(String name, HierarchySnapshot snapshot, Runnable pass) {
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            pass.run();
+        }
+        long bytes = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < PASSES; i++) {
+            pass.run();
+        }
+        long nanos = System.nanoTime() - start;
+        bytes = allocatedBytes() - bytes;
+
+        long nodes = (long) snapshot.size() * PASSES;
+        System.out.printf("[INFO] %-9s %8.1f bytes/node %8.1f ns/node%n",
+                name, (double) bytes / nodes, (double) nanos / nodes);
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // ═══════════════════════════════════════════════════════════════════════════════
+    // LEGACY SCORER - calculateScore before the per-snapshot lower-cased strings
+    // ═══════════════════════════════════════════════════════════════════════════════
+
+    private static int legacyScore(String className, String text, String resourceId, String contentDesc,
+                                   String searchTerm) {
+        String search = searchTerm.toLowerCase().trim();
+        int score = 0;
+        if (text.equalsIgnoreCase(searchTerm)) score += 1000;
+        if (contentDesc.equalsIgnoreCase(searchTerm)) score += 1000;
+        if (resourceId.equalsIgnoreCase(searchTerm)) score += 1000;
+        if (resourceId.toLowerCase().endsWith(":id/" + search)) score += 900;
+        if (resourceId.toLowerCase().endsWith("/" + search)) score += 800;
+        if (text.toLowerCase().contains(search)) score += 500;
+        if (contentDesc.toLowerCase().contains(search)) score += 500;
+        if (resourceId.toLowerCase().contains(search)) score += 400;
+        if (className.toLowerCase().contains(search)) score += 300;
+        score += legacyPrefix(text.toLowerCase(), search) * 5;
+        score += legacyPrefix(contentDesc.toLowerCase(), search) * 5;
+        score += legacyPrefix(resourceId.toLowerCase(), search) * 3;
+        return score;
+    }
+
+    private static int legacyPrefix(String s1, String s2) {
+        if (s1.isEmpty() || s2.isEmpty()) return 0;
+        int count = 0;
+        int len = Math.min(s1.length(), s2.length());
+        for (int i = 0; i < len && s1.charAt(i) == s2.charAt(i); i++) {
+            count++;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,32 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * SelectorUniquenessTest - Match counts of the suggested selectors
+ *
+ * A list screen with thousands of rows sharing one resource-id: the id
+ * selectors are flagged as matching every row, the text selector as unique.
+ * Runs offline, no Appium server needed.
+ */
+public class SelectorUniquenessTest {
+
+    private static final int ROWS = 5_000;
+    private static final String PAGE_SOURCE = InspectorTestSupport.listScreen(ROWS);
+
+    @Test(description = "Shared resource-ids are counted, texts and indexed xpaths are unique")
+    public void testMatchCounts() {
+        String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.xpath: //*[@text='Row item 4321' and @selected='true']"));
+        String table = output.substring(output.indexOf("Find By"), output.indexOf("Attribute"));
+
+        Assert.assertTrue(table.matches("(?s).*id\\s+\\S*io\\.appium\\.android\\.apis:id/title\\S*\\s+\\S*⚠ "
+                + ROWS + " matches.*"), "shared id not flagged:\n" + table);
+        Assert.assertTrue(table.matches("(?s).*text\\(\"Row item 4321\"\\)\\S*\\s+\\S*✓ unique.*"),
+                "text not unique:\n" + table);
+        // (//*[@resource-id="..."])[4322], cut short in the table
+        Assert.assertTrue(table.matches("(?s).*xpath\\s+\\S*\\(//\\*\\[@resource-id=[^\n]*✓ unique.*"),
+                "indexed xpath not unique:\n" + table);
+    }
+}
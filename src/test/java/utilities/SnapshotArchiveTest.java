@@ -0,0 +1,141 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * SnapshotArchiveTest - Round trip, torn tail recovery and CRC check of the archive file
+ *
+ * Records are appended, the file is reopened and damaged the ways a crash or
+ * a bad disk would. Runs offline, no Appium server needed.
+ */
+public class SnapshotArchiveTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void createFile() throws IOException {
+        file = Files.createTempFile("snapshots", ".archive");
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private static String pageSource(int rows) {
+        return InspectorTestSupport.listScreen(rows);
+    }
+
+    private void appendThree() throws IOException {
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            archive.append("LoginTest.testLogin", "By.id: com.example:id/login", pageSource(10));
+            archive.append("LoginTest.testLogin", "By.id: com.example:id/logout", pageSource(20));
+            archive.append("ListTest.testScroll", "AppiumBy.accessibilityId: Row", pageSource(30));
+        }
+    }
+
+    private String read(SnapshotArchive archive, SnapshotArchive.Entry entry) throws IOException {
+        return new String(archive.readPageSource(entry), StandardCharsets.UTF_8);
+    }
+
+    private void overwrite(long offset, byte[] bytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(bytes), offset);
+        }
+    }
+
+    @Test(description = "Appended records are found and read back after reopening")
+    public void testRoundTrip() throws IOException {
+        appendThree();
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 3);
+            List<SnapshotArchive.Entry> login = archive.find("LoginTest.testLogin", null);
+            Assert.assertEquals(login.size(), 2);
+            Assert.assertEquals(read(archive, login.get(1)), pageSource(20));
+            SnapshotArchive.Entry scroll = archive.find(null, "AppiumBy.accessibilityId: Row").get(0);
+            Assert.assertEquals(scroll.getTestName(), "ListTest.testScroll");
+            Assert.assertEquals(read(archive, scroll), pageSource(30));
+            Assert.assertTrue(scroll.getCompressedBytes() < scroll.getPageSourceBytes(), "not compressed");
+
+            // Appending after a reopen continues behind the loaded records
+            archive.append("ListTest.testScroll", "By.id: com.example:id/row", pageSource(5));
+        }
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 4);
+            Assert.assertEquals(read(archive, archive.entries().get(3)), pageSource(5));
+        }
+    }
+
+    @Test(description = "A zeroed last header ends the scan and its space is reused")
+    public void testZeroedTail() throws IOException {
+        appendThree();
+        long lastOffset;
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            lastOffset = archive.entries().get(2).getOffset();
+        }
+        overwrite(lastOffset, new byte[4]);
+
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 2);
+            SnapshotArchive.Entry appended = archive.append("ListTest.testScroll", "By.id: x", pageSource(7));
+            Assert.assertEquals(appended.getOffset(), lastOffset, "torn tail not reused");
+        }
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 3);
+            Assert.assertEquals(read(archive, archive.entries().get(2)), pageSource(7));
+        }
+    }
+
+    @Test(description = "A record cut short by a crash ends the scan")
+    public void testTruncatedTail() throws IOException {
+        appendThree();
+        long lastOffset;
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            lastOffset = archive.entries().get(2).getOffset();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 10);
+        }
+
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 2);
+            Assert.assertEquals(read(archive, archive.entries().get(1)), pageSource(20));
+            Assert.assertEquals(archive.append("t", "l", pageSource(3)).getOffset(), lastOffset);
+        }
+    }
+
+    @Test(description = "A flipped body byte fails the CRC check")
+    public void testCorruptBody() throws IOException {
+        appendThree();
+        // The last record's body ends the file
+        long lastByte = Files.size(file) - 1;
+        byte[] original = new byte[1];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(ByteBuffer.wrap(original), lastByte);
+        }
+        overwrite(lastByte, new byte[]{(byte) (original[0] ^ 0x01)});
+
+        try (SnapshotArchive archive = SnapshotArchive.open(file)) {
+            Assert.assertEquals(archive.entries().size(), 3);
+            Assert.assertEquals(read(archive, archive.entries().get(1)), pageSource(20));
+            try {
+                archive.readPageSource(archive.entries().get(2));
+                Assert.fail("corrupt record was read");
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Corrupt snapshot record"), e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * UiSelectorEvaluatorTest - UiAutomator locators evaluated locally against a snapshot
+ *
+ * CompiledUiSelector runs UiSelector / UiScrollable chains against the
+ * captured screen, for the failed locator and the suggested selectors.
+ * Runs offline, no Appium server needed.
+ */
+public class UiSelectorEvaluatorTest {
+
+    private static final String PAGE_SOURCE = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">"
+            + "<android.widget.ScrollView index=\"0\" class=\"android.widget.ScrollView\" scrollable=\"true\""
+            + " bounds=\"[0,0][1080,600]\">"
+            + "<android.widget.LinearLayout index=\"0\" class=\"android.widget.LinearLayout\""
+            + " resource-id=\"com.example:id/row\" bounds=\"[0,0][1080,200]\">"
+            + "<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"Wi-Fi\""
+            + " bounds=\"[0,0][800,200]\"/>"
+            + "<android.widget.Switch index=\"1\" class=\"android.widget.Switch\" checked=\"true\""
+            + " content-desc=\"Wi-Fi switch\" bounds=\"[800,0][1080,200]\"/>"
+            + "</android.widget.LinearLayout>"
+            + "<android.widget.LinearLayout index=\"1\" class=\"android.widget.LinearLayout\""
+            + " resource-id=\"com.example:id/row\" bounds=\"[0,200][1080,400]\">"
+            + "<android.widget.TextView index=\"0\" class=\"android.widget.TextView\" text=\"Bluetooth\""
+            + " bounds=\"[0,200][800,400]\"/>"
+            + "<android.widget.Switch index=\"1\" class=\"android.widget.Switch\" checked=\"false\""
+            + " content-desc=\"Bluetooth switch\" bounds=\"[800,200][1080,400]\"/>"
+            + "</android.widget.LinearLayout>"
+            + "<android.widget.TextView index=\"2\" class=\"android.widget.TextView\" text=\"Say &quot;hi&quot;\""
+            + " bounds=\"[0,400][1080,600]\"/>"
+            + "</android.widget.ScrollView></hierarchy>";
+
+    private static int[] select(String uiSelector) throws Exception {
+        CompiledUiSelector compiled = Locator.parse("AppiumBy.androidUIAutomator: " + uiSelector).compiledUiSelector;
+        Assert.assertNotNull(compiled, "not compiled: " + uiSelector);
+        return compiled.select(HierarchySnapshot.parse(PAGE_SOURCE));
+    }
+
+    @Test(description = "Attribute methods, index, instance and childSelector select in document order")
+    public void testSelect() throws Exception {
+        Assert.assertEquals(select("new UiSelector().text(\"Wi-Fi\")"), new int[]{3});
+        Assert.assertEquals(select("new UiSelector().textContains(\"t\")"), new int[]{6});
+        Assert.assertEquals(select("new UiSelector().textMatches(\"Wi-.*|Blue.*\")"), new int[]{3, 6});
+        Assert.assertEquals(select("new UiSelector().resourceId(\"com.example:id/row\")"), new int[]{2, 5});
+        Assert.assertEquals(select("new UiSelector().description(\"Bluetooth switch\")"), new int[]{7});
+        Assert.assertEquals(select("new UiSelector().className(android.widget.Switch.class).checked(false)"),
+                new int[]{7});
+        Assert.assertEquals(select("new UiSelector().className(\"android.widget.TextView\").index(2)"), new int[]{8});
+        Assert.assertEquals(select("new UiSelector().className(\"android.widget.Switch\").instance(1)"), new int[]{7});
+        Assert.assertEquals(select("new UiSelector().resourceId(\"com.example:id/row\")"
+                + ".childSelector(new UiSelector().className(\"android.widget.Switch\"))"), new int[]{4, 7});
+        Assert.assertEquals(select("new UiSelector().resourceId(\"com.example:id/row\").instance(1)"
+                + ".childSelector(new UiSelector().index(0))"), new int[]{6});
+        Assert.assertEquals(select("new UiScrollable(new UiSelector().scrollable(true))"
+                + ".scrollIntoView(new UiSelector().text(\"Bluetooth\"))"), new int[]{6});
+        Assert.assertEquals(select("new UiSelector().text(\"NFC\")"), new int[0]);
+    }
+
+    @Test(description = "Methods the evaluator does not know leave the locator uncompiled")
+    public void testUnsupported() {
+        Assert.assertNull(Locator.parse("AppiumBy.androidUIAutomator: new UiSelector().fromParent("
+                + "new UiSelector().text(\"Wi-Fi\"))").compiledUiSelector);
+        Assert.assertNull(Locator.parse("AppiumBy.androidUIAutomator: new UiSelector().textMatches(\"(\")")
+                .compiledUiSelector);
+    }
+
+    @Test(description = "The failed locator is checked locally and the suggested UiSelectors are valid")
+    public void testLocalCheckAndSuggestions() throws Exception {
+        String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "AppiumBy.androidUIAutomator: new UiSelector().text(\"Say hi\")"));
+        Assert.assertTrue(output.contains("LOCAL UIAUTOMATOR CHECK"), "local check missing");
+        Assert.assertTrue(output.contains("matches no element on this screen"), "failed UiSelector matched");
+
+        // The quotes are escaped, so the suggestion parses and finds the element
+        String suggestion = "new UiSelector().text(\"Say \\\"hi\\\"\")";
+        Assert.assertTrue(output.contains(suggestion), "suggested UiSelector not escaped");
+        Assert.assertEquals(select(suggestion), new int[]{8});
+    }
+}
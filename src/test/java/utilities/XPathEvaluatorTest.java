@@ -0,0 +1,62 @@
+package utilities;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * XPathEvaluatorTest - XPath locators evaluated locally against a snapshot
+ *
+ * CompiledXPath runs the failed locator and the suggested XPath against the
+ * captured screen. Runs offline, no Appium server needed.
+ */
+public class XPathEvaluatorTest {
+
+    private static final String PAGE_SOURCE = "<?xml version='1.0' encoding='UTF-8' standalone='yes' ?>"
+            + "<hierarchy index=\"0\" class=\"hierarchy\" rotation=\"0\">"
+            + "<android.widget.LinearLayout index=\"0\" class=\"android.widget.LinearLayout\" bounds=\"[0,0][1080,400]\">"
+            + "<android.widget.Button index=\"0\" class=\"android.widget.Button\" text=\"OK\" enabled=\"false\""
+            + " bounds=\"[0,0][1080,100]\"/>"
+            + "<android.widget.Button index=\"1\" class=\"android.widget.Button\" text=\"OK\" enabled=\"true\""
+            + " bounds=\"[0,100][1080,200]\"/>"
+            + "<android.widget.TextView index=\"2\" class=\"android.widget.TextView\" text=\"Don't &quot;panic&quot;\""
+            + " bounds=\"[0,200][1080,300]\"/>"
+            + "<android.widget.TextView index=\"3\" class=\"android.widget.TextView\" text=\"Footer\""
+            + " bounds=\"[0,300][1080,400]\"/>"
+            + "</android.widget.LinearLayout></hierarchy>";
+
+    private static int[] select(String xpath) throws Exception {
+        return Locator.parse("By.xpath: " + xpath).compiledXPath.select(HierarchySnapshot.parse(PAGE_SOURCE));
+    }
+
+    @Test(description = "Axes, predicates, positions and functions select in document order")
+    public void testSelect() throws Exception {
+        Assert.assertEquals(select("//android.widget.Button"), new int[]{2, 3});
+        Assert.assertEquals(select("//android.widget.Button[@text='OK' and @enabled='true']"), new int[]{3});
+        Assert.assertEquals(select("(//*[@text='OK'])[last()]"), new int[]{3});
+        Assert.assertEquals(select("//android.widget.Button[2]/following-sibling::*[1]"), new int[]{4});
+        Assert.assertEquals(select("//*[starts-with(@class, 'android.widget.T') and not(contains(@text, 'panic'))]"),
+                new int[]{5});
+        Assert.assertEquals(select("//*[count(*) = 4]/.."), new int[]{0});
+        Assert.assertEquals(select("//android.widget.Switch"), new int[0]);
+    }
+
+    @Test(description = "The local check reports how many elements the failed XPath matches")
+    public void testLocalCheck() {
+        String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.xpath: //android.widget.Button[@text='Cancel']"));
+        Assert.assertTrue(output.contains("LOCAL XPATH CHECK"), "local check missing");
+        Assert.assertTrue(output.contains("matches no element on this screen"), "failed XPath matched");
+    }
+
+    @Test(description = "Suggested XPaths quote both kinds of quotes and pick one of several matches")
+    public void testSuggestedXpath() {
+        String output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.xpath: //*[@text=\"Don't panic\"]"));
+        Assert.assertTrue(output.contains("//android.widget.TextView[@text=concat(\"Don't \", '\"'"),
+                "text with both quotes not quoted with concat()");
+
+        output = InspectorTestSupport.captureOutput(() -> AndroidElementInspector.inspectPageSource(
+                PAGE_SOURCE, "By.xpath: //android.widget.Button[@text='OK' and @enabled='true' and @selected='true']"));
+        Assert.assertTrue(output.contains("(//android.widget.Button[@text=\"OK\"])[2]"), "duplicate match not indexed");
+    }
+}